@@ -0,0 +1,74 @@
+package ru.app.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.app.user.registration.db.routing.ReplicaPool;
+import ru.app.user.registration.db.routing.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC-пул объявлен явно: при наличии R2DBC ConnectionFactory автоконфигурация DataSource отключается,
+ * а JPA и UserJdbcRepo нужны в обоих режимах.
+ * При registration.replicas.enabled основным источником становится маршрутизирующий: readOnly-транзакции
+ * идут на реплики. R2DBC в реактивном режиме всегда работает с основной БД.
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class DataSourceConfig {
+
+    private static final String REPLICAS_PREFIX = "registration.replicas";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = REPLICAS_PREFIX, name = "enabled", havingValue = "true")
+    public ReplicaPool replicaPool(RegistrationProperties registrationProperties, DataSourceProperties properties) {
+
+        RegistrationProperties.Replicas settings = registrationProperties.getReplicas();
+        List<ReplicaPool.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < settings.getNodes().size(); i++) {
+            RegistrationProperties.Node node = settings.getNodes().get(i);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : properties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : properties.determinePassword())
+                    .build();
+            String name = "replica-" + (i + 1);
+            dataSource.setPoolName(name);
+            dataSource.setReadOnly(true);
+            dataSource.setConnectionTimeout(settings.getConnectionTimeout().toMillis());
+            // недоступная при старте реплика не мешает запуску: ее исключит первая проверка
+            dataSource.setInitializationFailTimeout(-1);
+            replicas.add(new ReplicaPool.Replica(name, dataSource));
+        }
+
+        ReplicaPool replicaPool = new ReplicaPool(replicas, settings.getBalancing(), settings.getFailureThreshold());
+        replicaPool.checkHealth();
+        return replicaPool;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = REPLICAS_PREFIX, name = "enabled", havingValue = "true")
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primaryDataSource, replicaPool));
+    }
+
+}
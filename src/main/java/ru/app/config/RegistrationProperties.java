@@ -0,0 +1,513 @@
+package ru.app.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.app.user.registration.enums.FileFormat;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "registration")
+public class RegistrationProperties {
+
+    private Schema schema = new Schema();
+
+    private Batch batch = new Batch();
+
+    private Statistics statistics = new Statistics();
+
+    private Cache cache = new Cache();
+
+    private Presence presence = new Presence();
+
+    private Replicas replicas = new Replicas();
+
+    private BulkImport bulkImport = new BulkImport();
+
+    private Export export = new Export();
+
+    private Limiter limiter = new Limiter();
+
+    private Events events = new Events();
+
+    private Search search = new Search();
+
+    private Lookup lookup = new Lookup();
+
+    private Sketches sketches = new Sketches();
+
+    @Getter
+    @Setter
+    public static class Schema {
+
+        /**
+         * Применять миграции Flyway при запуске. Если выключено, схема только сверяется с миграциями,
+         * а сами миграции применяются отдельным шагом развертывания.
+         */
+        private boolean migrateOnStart = true;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+
+        /**
+         * Максимальное количество пользователей в одном запросе пакетной регистрации.
+         */
+        private int maxSize = 50000;
+
+        /**
+         * Размер JDBC-пакета при вставке пользователей.
+         */
+        private int jdbcBatchSize = 500;
+
+        /**
+         * Сколько идентификаторов выбирается из последовательности за один запрос.
+         */
+        private int idBlockSize = 1000;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Statistics {
+
+        /**
+         * Источник общего числа пользователей и среднего возраста: счетчики в памяти (ENGINE)
+         * или агрегирующий запрос к БД (DATABASE). DATABASE нужен, если в users пишут несколько экземпляров.
+         */
+        private SummarySource summarySource = SummarySource.ENGINE;
+
+        /**
+         * Расписание ежесуточного перестроения счетчиков: возраст пользователей меняется с датой.
+         */
+        private String rebuildCron = "0 0 0 * * *";
+
+        /**
+         * Размер страницы списков пользователей, если limit не передан.
+         */
+        private int defaultPageSize = 100;
+
+        /**
+         * Максимально допустимый limit.
+         */
+        private int maxPageSize = 1000;
+
+        /**
+         * Сколько строк драйвер забирает из курсора за раз при потоковой выгрузке.
+         */
+        private int streamFetchSize = 1000;
+
+        /**
+         * Таймаут асинхронной потоковой выдачи, мс. Отрицательное значение отключает таймаут.
+         */
+        private long streamTimeout = -1;
+
+        private Snapshot snapshot = new Snapshot();
+
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+
+        /**
+         * Отдавать GET /statistics без limit и курсоров из заранее сериализованных снимков.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Период проверки снимков, по умолчанию в миллисекундах.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(5);
+
+        /**
+         * Пересчитывать снимки только если с прошлого пересчета были записи; иначе пересчет на каждом периоде.
+         */
+        private boolean onlyWhenChanged = true;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /**
+         * Максимальное количество профилей в кэше getUser.
+         */
+        private long maximumSize = 100000;
+
+        /**
+         * Время жизни записи после записи в кэш. Пустое значение отключает истечение по времени.
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Presence {
+
+        /**
+         * Режим отложенной записи статусов присутствия.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Интервал пакетной записи накопленных статусов в БД, по умолчанию в миллисекундах.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Максимум несохраненных пользователей; при превышении запись выполняет вызывающий поток.
+         */
+        private int capacity = 100000;
+
+        /**
+         * Количество пользователей в одном операторе записи.
+         */
+        private int flushBatchSize = 5000;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Replicas {
+
+        /**
+         * Направлять readOnly-транзакции на реплики, остальные запросы - на основную БД (spring.datasource).
+         */
+        private boolean enabled = false;
+
+        /**
+         * Подключения к репликам. Если username и password не заданы, берутся от основной БД.
+         */
+        private List<Node> nodes = new ArrayList<>();
+
+        /**
+         * Выбор реплики: по кругу или с наименьшей задержкой последней проверки.
+         */
+        private Balancing balancing = Balancing.ROUND_ROBIN;
+
+        /**
+         * Период проверки реплик, по умолчанию в миллисекундах.
+         */
+        private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+        /**
+         * Сколько проверок подряд должна не пройти реплика, чтобы ее исключили.
+         * Ошибка получения соединения на запросе исключает реплику сразу.
+         */
+        private int failureThreshold = 2;
+
+        /**
+         * Таймаут получения соединения из пула реплики; после него запрос уходит на основную БД.
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Сколько после createUser и changeStatus читать этого пользователя с основной БД. Ноль отключает.
+         */
+        private Duration readYourWritesWindow = Duration.ZERO;
+
+    }
+
+    @Getter
+    @Setter
+    public static class BulkImport {
+
+        /**
+         * Сколько строк файла проверяется и загружается за раз. В памяти одновременно не больше
+         * 2 * parallelism порций.
+         */
+        private int chunkSize = 5000;
+
+        /**
+         * Число потоков проверки строк.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Загрузка порции: COPY FROM STDIN или JDBC-пакеты по batch.jdbc-batch-size.
+         */
+        private LoadMethod loadMethod = LoadMethod.COPY;
+
+        /**
+         * Как часто писать в лог прогресс импорта.
+         */
+        private Duration progressInterval = Duration.ofSeconds(5);
+
+        /**
+         * Каталог для файлов отчета об отклоненных строках при импорте через HTTP.
+         */
+        private String reportDir = System.getProperty("java.io.tmpdir");
+
+        /**
+         * Файл для импорта из командной строки. Если задан, приложение импортирует его при старте и завершается.
+         */
+        private String file;
+
+        /**
+         * Формат файла из командной строки; по умолчанию определяется по расширению.
+         */
+        private FileFormat format;
+
+        /**
+         * Файл отчета об отклоненных строках для импорта из командной строки; по умолчанию рядом с файлом.
+         */
+        private String errorReport;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Export {
+
+        /**
+         * Сколько строк драйвер забирает из курсора за раз при полной выгрузке.
+         */
+        private int fetchSize = 10000;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Limiter {
+
+        /**
+         * Ограничение одновременных запросов к RegistrationController по классам эндпоинтов.
+         */
+        private boolean enabled = false;
+
+        private LimitAlgorithm algorithm = LimitAlgorithm.VEGAS;
+
+        /**
+         * Значение Retry-After в ответе 503, округляется вверх до секунд.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        /**
+         * Во сколько раз AIMD уменьшает лимит при превышении latency-threshold или ошибке 5xx.
+         */
+        private double backoffRatio = 0.9;
+
+        private Bulkhead read = new Bulkhead(50, 10, 500, Duration.ofMillis(50));
+
+        private Bulkhead write = new Bulkhead(20, 4, 100, Duration.ofMillis(200));
+
+        private Bulkhead statistics = new Bulkhead(4, 1, 20, Duration.ofMillis(500));
+
+        private Bulkhead bulk = new Bulkhead(2, 1, 2, Duration.ofMinutes(10));
+
+    }
+
+    @Getter
+    @Setter
+    public static class Events {
+
+        /**
+         * Размер кольцевого буфера смен статуса, степень двойки. Если рассылка отстала на целый буфер,
+         * самые старые события теряются, запись статуса при этом не ждет.
+         */
+        private int ringSize = 65536;
+
+        /**
+         * Сколько событий ждет отправки одному подписчику, прежде чем новые начнут отбрасываться.
+         */
+        private int subscriberQueueSize = 256;
+
+        /**
+         * Схлопывать события одного пользователя, еще не отправленные подписчику: уходит одно событие
+         * с исходным oldStatus и последним newStatus.
+         */
+        private boolean coalesce = true;
+
+        private int maxSubscribers = 10000;
+
+        /**
+         * Максимальное число userIds в одной подписке.
+         */
+        private int maxFilterSize = 1000;
+
+        /**
+         * Период комментария-пульса в потоке: по нему обнаруживаются отключившиеся клиенты. 0 - без пульса.
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+        /**
+         * Потоки, которыми события пишутся в SSE-ответы в сервлетном режиме. Пул отделен от пула потоковых
+         * выгрузок: зависшие подписчики не задерживают выгрузки, и наоборот.
+         */
+        private int sseThreads = 16;
+
+        /**
+         * Подписчик, которому событие не удалось записать за это время, отключается.
+         */
+        private Duration writeTimeout = Duration.ofSeconds(10);
+
+    }
+
+    @Getter
+    @Setter
+    public static class Search {
+
+        /**
+         * Бюджет времени на страницу поиска. По истечении отдается найденное к этому моменту с признаком partial.
+         */
+        private Duration timeout = Duration.ofMillis(200);
+
+        private int defaultPageSize = 20;
+
+        private int maxPageSize = 100;
+
+        /**
+         * Минимальная длина запроса нечеткого поиска: по более коротким триграммы ничего не отсекают.
+         */
+        private int minFuzzyLength = 3;
+
+        /**
+         * Порог word_similarity для нечеткого поиска, от 0 до 1.
+         */
+        private double fuzzyThreshold = 0.5;
+
+        private InMemory inMemory = new InMemory();
+
+    }
+
+    @Getter
+    @Setter
+    public static class InMemory {
+
+        /**
+         * Отвечать на поиск по началу из индекса в памяти вместо БД. Индекс строится после старта одним проходом
+         * по users и пополняется при регистрации; пока он строится, запросы идут в БД. Годится, если в users
+         * пишет только этот экземпляр.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Сколько новых записей копится в изменяемой части индекса до слияния с основной.
+         */
+        private int mergeThreshold = 50000;
+
+        /**
+         * Сколько строк читается из users за один запрос при построении индекса.
+         */
+        private int loadBatchSize = 10000;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Lookup {
+
+        /**
+         * Максимальное количество id в одном запросе чтения пользователей.
+         */
+        private int maxSize = 1000;
+
+        /**
+         * Сколько id читается из БД одним запросом.
+         */
+        private int chunkSize = 100;
+
+        /**
+         * Сколько порций одного запроса читается параллельно, включая вызывающий поток.
+         * Каждая порция занимает свое соединение из пула БД.
+         */
+        private int parallelism = 4;
+
+    }
+
+    @Getter
+    @Setter
+    public static class Sketches {
+
+        /**
+         * Вести скетчи возраста и почтовых доменов. Если выключено, таблица при старте не сканируется.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Параметр k скетча квантилей возраста: ошибка ранга около 2.3 / k, память около 3k значений.
+         */
+        private int quantileK = 200;
+
+        /**
+         * Точность HyperLogLog для числа доменов: 2^precision регистров, ошибка 1.04 / sqrt(2^precision).
+         */
+        private int domainPrecision = 14;
+
+        /**
+         * Расписание перестроения скетчей сканированием таблицы: учитывает записи других экземпляров сервиса.
+         */
+        private String rebuildCron = "0 0 0 * * *";
+
+        /**
+         * Размер выборки курсора при сканировании таблицы.
+         */
+        private int scanFetchSize = 10000;
+
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bulkhead {
+
+        private int initialLimit;
+
+        private int minLimit;
+
+        private int maxLimit;
+
+        /**
+         * Задержка, выше которой AIMD считает запрос признаком перегрузки. Vegas ее не использует.
+         */
+        private Duration latencyThreshold;
+
+    }
+
+    public enum LimitAlgorithm {
+        AIMD,
+        VEGAS
+    }
+
+    public enum LoadMethod {
+        COPY,
+        BATCH
+    }
+
+    @Getter
+    @Setter
+    public static class Node {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+    }
+
+    public enum Balancing {
+        ROUND_ROBIN,
+        LOWEST_LATENCY
+    }
+
+    public enum SummarySource {
+        ENGINE,
+        DATABASE
+    }
+
+}
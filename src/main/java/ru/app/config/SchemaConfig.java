@@ -0,0 +1,21 @@
+package ru.app.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SchemaConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(RegistrationProperties properties) {
+        return flyway -> {
+            if (properties.getSchema().isMigrateOnStart()) {
+                flyway.migrate();
+            } else {
+                flyway.validate();
+            }
+        };
+    }
+
+}
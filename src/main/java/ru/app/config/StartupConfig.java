@@ -0,0 +1,37 @@
+package ru.app.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Controller;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * При spring.main.lazy-initialization контроллеры и все, от чего они зависят, создаются при старте:
+     * иначе их создание легло бы на первый запрос. Отложенными остаются springdoc, actuator и прочее,
+     * что не участвует в обработке запросов к сервису.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerControllers() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && AnnotatedElementUtils.hasAnnotation(beanType, Controller.class);
+    }
+
+    /**
+     * Обучающий запуск AppCDS: после старта контекста и веб-сервера JVM завершается
+     * и записывает загруженные классы в архив -XX:ArchiveClassesAtExit.
+     */
+    @Bean
+    @Profile("cds-training")
+    public ApplicationListener<ContextRefreshedEvent> exitAfterRefresh() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+}
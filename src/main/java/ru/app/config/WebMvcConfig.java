@@ -0,0 +1,47 @@
+package ru.app.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.app.user.registration.controllers.limits.ConcurrencyLimitInterceptor;
+import ru.app.user.registration.controllers.limits.ConcurrencyLimiters;
+
+@EnableWebMvc
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final RegistrationProperties properties;
+    private final ObjectProvider<ConcurrencyLimiters> concurrencyLimiters;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        concurrencyLimiters.ifAvailable(limiters ->
+                registry.addInterceptor(new ConcurrencyLimitInterceptor(limiters)).addPathPatterns("/registration/**"));
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+
+        // Очередь пула не ограничена, поэтому потоки сверх core не создаются: параллельность задает core,
+        // простаивающие потоки завершаются.
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("registration-stream-");
+        executor.setCorePoolSize(16);
+        executor.setMaxPoolSize(16);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setDaemon(true);
+        executor.initialize();
+
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(properties.getStatistics().getStreamTimeout());
+    }
+
+}
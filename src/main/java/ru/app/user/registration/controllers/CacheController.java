@@ -0,0 +1,25 @@
+package ru.app.user.registration.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.app.user.registration.dto.CacheStatsDto;
+import ru.app.user.registration.services.cache.UserCache;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/registration/cache")
+public class CacheController {
+
+    private final UserCache userCache;
+
+    @GetMapping("/statistics")
+    @Operation(summary = "Статистика кэша пользователей: попадания, промахи, вытеснения")
+    public ResponseEntity<CacheStatsDto> getStats() {
+        return ResponseEntity.ok(userCache.getStats());
+    }
+
+}
@@ -0,0 +1,152 @@
+package ru.app.user.registration.controllers;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.SketchStatisticsDto;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.ReactiveRegistrationService;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.statistics.StatisticsSnapshot;
+import ru.app.user.registration.services.statistics.StatisticsSnapshots;
+import ru.app.user.registration.services.statistics.UserSketches;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Те же маршруты, что у RegistrationController, для реактивного режима.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/registration")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRegistrationController {
+
+    private final ReactiveRegistrationService registrationService;
+    private final StatisticsSnapshots statisticsSnapshots;
+    private final StatusEventBus statusEventBus;
+    private final RegistrationProperties properties;
+    private final UserSketches userSketches;
+
+    @PostMapping("/create")
+    @Operation(summary = "Добавление нового пользователя")
+    public Mono<UserDto> createUser(@RequestBody UserDto userDto) {
+        return registrationService.createUser(userDto);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Пакетное добавление пользователей с результатом по каждой позиции")
+    public Mono<List<UserBatchResultDto>> createUsers(@RequestBody List<UserDto> userDtos) {
+        return registrationService.createUsers(userDtos);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Получение информации о пользователе по id")
+    public Mono<UserDto> getUser(@PathVariable Long id) {
+        return registrationService.getUser(id);
+    }
+
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получение пользователей по списку id. Ответ в порядке запроса, для ненайденных found=false")
+    public Mono<List<UserLookupResultDto>> getUsers(@RequestParam List<Long> ids) {
+        return registrationService.getUsers(ids);
+    }
+
+    @PostMapping("/lookup")
+    @Operation(summary = "Получение пользователей по списку id в теле запроса, для списков, не помещающихся в URL")
+    public Mono<List<UserLookupResultDto>> lookupUsers(@RequestBody List<Long> ids) {
+        return registrationService.getUsers(ids);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Поиск пользователей по началу имени или почты (PREFIX) или с опечатками (FUZZY) без учета регистра. " +
+            "Страница ограничена по времени: partial - найдено не все, продолжать с курсора next")
+    public Mono<SearchResultDto> searchUsers(@RequestParam String q,
+                                             @RequestParam(defaultValue = "PREFIX") SearchMode mode,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String cursor) {
+        return registrationService.searchUsers(q, mode, limit, cursor);
+    }
+
+    @GetMapping("/status/{id}")
+    @Operation(summary = "Изменение статуса пользователя по id")
+    public Mono<StatusInfoDto> changeStatus(@PathVariable Long id, @RequestParam Status status) {
+        return registrationService.changeStatus(id, status);
+    }
+
+    @PostMapping("/status/batch")
+    @Operation(summary = "Пакетное изменение статусов. Для ненайденных пользователей статусы в ответе пустые")
+    public Mono<List<StatusInfoDto>> changeStatuses(@RequestBody List<StatusChangeDto> changes) {
+        return registrationService.changeStatuses(changes);
+    }
+
+    @GetMapping(value = "/status/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Подписка на смены статусов (SSE, событие status). userIds - только эти пользователи, " +
+            "без него - все. События одного пользователя, не отправленные медленному клиенту, схлопываются")
+    public Flux<ServerSentEvent<StatusInfoDto>> statusEvents(@RequestParam(required = false) Set<Long> userIds) {
+        return RegistrationController.statusEvents(statusEventBus.subscribe(userIds),
+                properties.getEvents().getHeartbeatInterval());
+    }
+
+    @GetMapping("/statistics")
+    @Operation(summary = "Статистика сервера. Списки пользователей постраничные: limit и курсоры statusAfter/ageAfter. " +
+            "Без limit и курсоров может отдаваться снимок с ETag, Last-Modified и возрастом в заголовке Age",
+            responses = @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = StatisticsDto.class))))
+    public Mono<ResponseEntity<?>> getStatistics(@RequestParam(required = false) String status,
+                                                 @RequestParam(required = false) Boolean isAdult,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) Long statusAfter,
+                                                 @RequestParam(required = false) Long ageAfter,
+                                                 @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (limit == null && statusAfter == null && ageAfter == null && RegistrationController.prefersJson(accept)) {
+            StatisticsSnapshot snapshot = statisticsSnapshots.get(status, isAdult);
+            if (snapshot != null) {
+                return Mono.just(RegistrationController.snapshotResponse(snapshot));
+            }
+        }
+        return registrationService.getStatistics(status, isAdult, limit, statusAfter, ageAfter)
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/statistics/sketches")
+    @Operation(summary = "Квантили возраста и число различных почтовых доменов по скетчам в памяти. " +
+            "ageQuantileRankError - ошибка ранга квантиля с вероятностью 99%, " +
+            "emailDomainsRelativeError - стандартная относительная ошибка числа доменов")
+    public Mono<SketchStatisticsDto> getSketchStatistics(@RequestParam(required = false) List<Double> quantiles) {
+        return Mono.fromCallable(() -> userSketches.getStatistics(quantiles));
+    }
+
+    @GetMapping(value = "/statistics/status/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Потоковая выгрузка пользователей по статусу в формате NDJSON")
+    public Flux<UserDto> streamUsersByStatus(@RequestParam String status) {
+        return registrationService.streamUsersByStatus(registrationService.validateAndGetStatus(status));
+    }
+
+    @GetMapping(value = "/statistics/age/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Потоковая выгрузка пользователей по возрастной группе в формате NDJSON")
+    public Flux<UserDto> streamUsersByAge(@RequestParam Boolean isAdult) {
+        return registrationService.streamUsersByAge(isAdult);
+    }
+
+}
@@ -1,45 +1,270 @@
 package ru.app.user.registration.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.controllers.events.StatusEventEmitters;
+import ru.app.user.registration.controllers.limits.Bulkhead;
+import ru.app.user.registration.dto.ImportResultDto;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.SketchStatisticsDto;
 import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
 import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
 import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.EndpointClass;
+import ru.app.user.registration.enums.FileFormat;
+import ru.app.user.registration.enums.SearchMode;
 import ru.app.user.registration.enums.Status;
 import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.exports.UserExporter;
+import ru.app.user.registration.services.imports.UserImporter;
+import ru.app.user.registration.services.statistics.StatisticsSnapshot;
+import ru.app.user.registration.services.statistics.StatisticsSnapshots;
+import ru.app.user.registration.services.statistics.UserSketches;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/registration")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RegistrationController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final MediaType APPLICATION_GZIP = MediaType.parseMediaType("application/gzip");
+
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
     private final RegistrationService registrationService;
+    private final StatisticsSnapshots statisticsSnapshots;
+    private final UserImporter userImporter;
+    private final UserExporter userExporter;
+    private final StatusEventBus statusEventBus;
+    private final RegistrationProperties properties;
+    private final UserSketches userSketches;
+    private final StatusEventEmitters statusEventEmitters;
 
+    @Bulkhead(EndpointClass.WRITE)
     @PostMapping("/create")
     @Operation(summary = "Добавление нового пользователя")
     public ResponseEntity<UserDto> createUser(@RequestBody UserDto userDto) {
         return ResponseEntity.ok(registrationService.createUser(userDto));
     }
 
+    @Bulkhead(EndpointClass.WRITE)
+    @PostMapping("/batch")
+    @Operation(summary = "Пакетное добавление пользователей с результатом по каждой позиции")
+    public ResponseEntity<List<UserBatchResultDto>> createUsers(@RequestBody List<UserDto> userDtos) {
+        return ResponseEntity.ok(registrationService.createUsers(userDtos));
+    }
+
+    @Bulkhead(EndpointClass.BULK)
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Потоковый импорт пользователей из CSV (заголовок с колонками name, email, bornDate) или NDJSON. " +
+            "Отклоненные строки записываются в файл отчета")
+    public ResponseEntity<ImportResultDto> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                       InputStream body) throws IOException {
+        FileFormat format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType) ? FileFormat.NDJSON : FileFormat.CSV;
+        return ResponseEntity.ok(userImporter.importUsers(body, format));
+    }
+
+    @Bulkhead(EndpointClass.BULK)
+    @GetMapping("/export")
+    @Operation(summary = "Потоковая выгрузка всех пользователей в CSV или NDJSON в порядке id. " +
+            "afterId - последний id предыдущей выгрузки для инкрементальной выгрузки, gzip - сжатие файла")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "CSV") FileFormat format,
+                                                             @RequestParam(defaultValue = "0") long afterId,
+                                                             @RequestParam(defaultValue = "false") boolean gzip) {
+        MediaType contentType = gzip ? APPLICATION_GZIP
+                : format == FileFormat.CSV ? MediaType.parseMediaType(TEXT_CSV_VALUE) : MediaType.APPLICATION_NDJSON;
+        String fileName = "users-after-" + afterId + format.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> {
+                    if (!gzip) {
+                        userExporter.exportUsers(format, afterId, out);
+                        return;
+                    }
+                    GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                    userExporter.exportUsers(format, afterId, gzipOut);
+                    gzipOut.finish();
+                });
+    }
+
+    @Bulkhead(EndpointClass.READ)
     @GetMapping("/{id}")
     @Operation(summary = "Получение информации о пользователе по id")
     public ResponseEntity<UserDto> getUser(@PathVariable Long id) {
         return ResponseEntity.ok(registrationService.getUser(id));
     }
 
+    @Bulkhead(EndpointClass.READ)
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получение пользователей по списку id. Ответ в порядке запроса, для ненайденных found=false")
+    public ResponseEntity<List<UserLookupResultDto>> getUsers(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(registrationService.getUsers(ids));
+    }
+
+    @Bulkhead(EndpointClass.READ)
+    @PostMapping("/lookup")
+    @Operation(summary = "Получение пользователей по списку id в теле запроса, для списков, не помещающихся в URL")
+    public ResponseEntity<List<UserLookupResultDto>> lookupUsers(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(registrationService.getUsers(ids));
+    }
+
+    @Bulkhead(EndpointClass.READ)
+    @GetMapping("/search")
+    @Operation(summary = "Поиск пользователей по началу имени или почты (PREFIX) или с опечатками (FUZZY) без учета регистра. " +
+            "Страница ограничена по времени: partial - найдено не все, продолжать с курсора next")
+    public ResponseEntity<SearchResultDto> searchUsers(@RequestParam String q,
+                                                       @RequestParam(defaultValue = "PREFIX") SearchMode mode,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(registrationService.searchUsers(q, mode, limit, cursor));
+    }
+
+    @Bulkhead(EndpointClass.WRITE)
     @GetMapping("/status/{id}")
     @Operation(summary = "Изменение статуса пользователя по id")
     public ResponseEntity<StatusInfoDto> changeStatus(@PathVariable Long id, @RequestParam Status status) {
         return ResponseEntity.ok(registrationService.changeStatus(id, status));
     }
 
+    @Bulkhead(EndpointClass.WRITE)
+    @PostMapping("/status/batch")
+    @Operation(summary = "Пакетное изменение статусов. Для ненайденных пользователей статусы в ответе пустые")
+    public ResponseEntity<List<StatusInfoDto>> changeStatuses(@RequestBody List<StatusChangeDto> changes) {
+        return ResponseEntity.ok(registrationService.changeStatuses(changes));
+    }
+
+    @GetMapping(value = "/status/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Подписка на смены статусов (SSE, событие status). userIds - только эти пользователи, " +
+            "без него - все. События одного пользователя, не отправленные медленному клиенту, схлопываются")
+    public SseEmitter statusEvents(@RequestParam(required = false) Set<Long> userIds) {
+        return statusEventEmitters.emit(
+                statusEvents(statusEventBus.subscribe(userIds), properties.getEvents().getHeartbeatInterval()));
+    }
+
+    /**
+     * Пульс-комментарий нужен, чтобы заметить отключившегося клиента у подписки на редко меняющихся пользователей.
+     */
+    static Flux<ServerSentEvent<StatusInfoDto>> statusEvents(Flux<StatusInfoDto> events, Duration heartbeat) {
+        Flux<ServerSentEvent<StatusInfoDto>> statuses = events
+                .map(event -> ServerSentEvent.builder(event).event("status").build());
+        if (heartbeat.isZero() || heartbeat.isNegative()) {
+            return statuses;
+        }
+        return Flux.merge(statuses, Flux.interval(heartbeat)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<StatusInfoDto>builder().comment("heartbeat").build()));
+    }
+
+    @Bulkhead(EndpointClass.STATISTICS)
     @GetMapping("/statistics")
-    @Operation(summary = "Статистика сервера")
-    public ResponseEntity<StatisticsDto> getStatistics(@RequestParam(required = false) String status,
-                                                       @RequestParam(required = false) Boolean isAdult) {
-        return ResponseEntity.ok(registrationService.getStatistics(status, isAdult));
+    @Operation(summary = "Статистика сервера. Списки пользователей постраничные: limit и курсоры statusAfter/ageAfter. " +
+            "Без limit и курсоров может отдаваться снимок с ETag, Last-Modified и возрастом в заголовке Age",
+            responses = @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = StatisticsDto.class))))
+    public ResponseEntity<?> getStatistics(@RequestParam(required = false) String status,
+                                           @RequestParam(required = false) Boolean isAdult,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) Long statusAfter,
+                                           @RequestParam(required = false) Long ageAfter,
+                                           @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (limit == null && statusAfter == null && ageAfter == null && prefersJson(accept)) {
+            StatisticsSnapshot snapshot = statisticsSnapshots.get(status, isAdult);
+            if (snapshot != null) {
+                return snapshotResponse(snapshot);
+            }
+        }
+        return ResponseEntity.ok(registrationService.getStatistics(status, isAdult, limit, statusAfter, ageAfter));
+    }
+
+    /**
+     * Снимки хранятся в JSON. Клиенту, который на первое место ставит другой формат (CBOR, Smile),
+     * ответ сериализуется заново выбранным конвертером.
+     */
+    static boolean prefersJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return true;
+        }
+        if (mediaTypes.isEmpty()) {
+            return true;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        return mediaTypes.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * If-None-Match и If-Modified-Since проверяет HttpEntityMethodProcessor по ETag и Last-Modified ответа.
+     */
+    static ResponseEntity<byte[]> snapshotResponse(StatisticsSnapshot snapshot) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(snapshot.getEtag())
+                .lastModified(snapshot.getLastModified())
+                .header(HttpHeaders.AGE, String.valueOf(snapshot.ageSeconds(Instant.now())))
+                .body(snapshot.getBody());
+    }
+
+    @Bulkhead(EndpointClass.STATISTICS)
+    @GetMapping("/statistics/sketches")
+    @Operation(summary = "Квантили возраста и число различных почтовых доменов по скетчам в памяти. " +
+            "ageQuantileRankError - ошибка ранга квантиля с вероятностью 99%, " +
+            "emailDomainsRelativeError - стандартная относительная ошибка числа доменов")
+    public ResponseEntity<SketchStatisticsDto> getSketchStatistics(@RequestParam(required = false) List<Double> quantiles) {
+        return ResponseEntity.ok(userSketches.getStatistics(quantiles));
+    }
+
+    @Bulkhead(EndpointClass.BULK)
+    @GetMapping(value = "/statistics/status/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Потоковая выгрузка пользователей по статусу в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> streamUsersByStatus(@RequestParam String status) {
+        Status incomingStatus = registrationService.validateAndGetStatus(status);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> registrationService.streamUsersByStatus(incomingStatus, out));
+    }
+
+    @Bulkhead(EndpointClass.BULK)
+    @GetMapping(value = "/statistics/age/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Потоковая выгрузка пользователей по возрастной группе в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> streamUsersByAge(@RequestParam Boolean isAdult) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> registrationService.streamUsersByAge(isAdult, out));
     }
 
 }
@@ -0,0 +1,105 @@
+package ru.app.user.registration.controllers.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.app.config.RegistrationProperties;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * SSE-ответы в сервлетном режиме. Запись в ответ блокирует поток, пока клиент не примет данные, поэтому
+ * события пишутся собственным пулом registration-sse-, а не общим пулом потоковых выгрузок.
+ * Подписчик получает следующее событие, только когда записано предыдущее; если запись не завершилась
+ * за events.write-timeout, подписка отменяется и ответ закрывается с ошибкой.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StatusEventEmitters {
+
+    private final Duration writeTimeout;
+    private final ThreadPoolTaskExecutor executor;
+    private final Scheduler scheduler;
+
+    public StatusEventEmitters(RegistrationProperties properties) {
+
+        RegistrationProperties.Events settings = properties.getEvents();
+        writeTimeout = settings.getWriteTimeout();
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("registration-sse-");
+        executor.setCorePoolSize(settings.getSseThreads());
+        executor.setMaxPoolSize(settings.getSseThreads());
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setDaemon(true);
+        executor.initialize();
+        scheduler = Schedulers.fromExecutorService(executor.getThreadPoolExecutor(), "registration-sse");
+    }
+
+    public SseEmitter emit(Flux<? extends ServerSentEvent<?>> events) {
+        // таймаут асинхронного запроса не нужен: подписка живет, пока клиент не отключится
+        return emit(new SseEmitter(-1L), events);
+    }
+
+    SseEmitter emit(SseEmitter emitter, Flux<? extends ServerSentEvent<?>> events) {
+
+        Disposable subscription = events
+                .concatMap(event -> Mono.fromRunnable(() -> send(emitter, event))
+                        .subscribeOn(scheduler)
+                        .timeout(writeTimeout), 1)
+                .subscribe(null, error -> {
+                    if (error instanceof TimeoutException) {
+                        log.warn("status events subscriber stalled for {}, closing", writeTimeout);
+                    }
+                    emitter.completeWithError(error);
+                }, emitter::complete);
+
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, ServerSentEvent<?> event) {
+
+        SseEmitter.SseEventBuilder builder = SseEmitter.event();
+        if (event.id() != null) {
+            builder.id(event.id());
+        }
+        if (event.event() != null) {
+            builder.name(event.event());
+        }
+        if (event.comment() != null) {
+            builder.comment(event.comment());
+        }
+        if (event.data() != null) {
+            builder.data(event.data(), MediaType.APPLICATION_JSON);
+        }
+        try {
+            emitter.send(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+}
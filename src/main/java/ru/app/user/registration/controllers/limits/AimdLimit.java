@@ -0,0 +1,35 @@
+package ru.app.user.registration.controllers.limits;
+
+import ru.app.config.RegistrationProperties;
+
+/**
+ * AIMD: лимит растет на единицу, пока запросы укладываются в latency-threshold и лимит используется
+ * хотя бы наполовину, и умножается на backoff-ratio при медленном ответе или ошибке 5xx.
+ */
+class AimdLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    AimdLimit(RegistrationProperties.Bulkhead bulkhead, double backoffRatio) {
+        this.minLimit = bulkhead.getMinLimit();
+        this.maxLimit = bulkhead.getMaxLimit();
+        this.latencyThresholdNanos = bulkhead.getLatencyThreshold().toNanos();
+        this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public int update(int limit, long rttNanos, int inFlight, boolean dropped) {
+
+        if (dropped || rttNanos > latencyThresholdNanos) {
+            return Math.max(minLimit, Math.min(limit - 1, (int) (limit * backoffRatio)));
+        }
+        if (inFlight * 2 >= limit) {
+            return Math.min(maxLimit, limit + 1);
+        }
+        return limit;
+    }
+
+}
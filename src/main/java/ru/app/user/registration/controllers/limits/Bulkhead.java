@@ -0,0 +1,19 @@
+package ru.app.user.registration.controllers.limits;
+
+import ru.app.user.registration.enums.EndpointClass;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Относит метод контроллера к классу эндпоинтов, лимит которого проверяет ConcurrencyLimitInterceptor.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    EndpointClass value();
+
+}
@@ -0,0 +1,54 @@
+package ru.app.user.registration.controllers.limits;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Проверяет лимит класса эндпоинта до вызова метода с @Bulkhead и освобождает место после ответа.
+ * Для потоковых ответов место держится до завершения асинхронной отдачи: повторный preHandle
+ * асинхронного диспатча видит уже занятое место, а afterCompletion вызывается после отдачи тела.
+ */
+@RequiredArgsConstructor
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = ConcurrencyLimitInterceptor.class.getName() + ".PERMIT";
+
+    private final ConcurrencyLimiters limiters;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(PERMIT) != null) {
+            return true;
+        }
+        Bulkhead bulkhead = ((HandlerMethod) handler).getMethodAnnotation(Bulkhead.class);
+        if (bulkhead != null) {
+            request.setAttribute(PERMIT, new Permit(limiters.acquire(bulkhead.value()), System.nanoTime()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null) {
+            request.removeAttribute(PERMIT);
+            permit.limiter.release(System.nanoTime() - permit.started, ex != null || response.getStatus() >= 500);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Permit {
+
+        private final ConcurrencyLimiter limiter;
+        private final long started;
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package ru.app.user.registration.controllers.limits;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.enums.EndpointClass;
+import ru.app.user.registration.exceptions.OverloadException;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Лимитеры по классам эндпоинтов. Лимит, число выполняющихся и отклоненных запросов публикуются как
+ * registration.limiter.limit, registration.limiter.in-flight и registration.limiter.rejected с тегом bulkhead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "registration.limiter", name = "enabled", havingValue = "true")
+public class ConcurrencyLimiters {
+
+    private final Map<EndpointClass, ConcurrencyLimiter> limiters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimiters(RegistrationProperties properties, MeterRegistry meterRegistry) {
+
+        RegistrationProperties.Limiter settings = properties.getLimiter();
+        retryAfterSeconds = Math.max(1, (settings.getRetryAfter().toMillis() + 999) / 1000);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            RegistrationProperties.Bulkhead bulkhead = bulkhead(settings, endpointClass);
+            LimitAlgorithm algorithm = settings.getAlgorithm() == RegistrationProperties.LimitAlgorithm.AIMD
+                    ? new AimdLimit(bulkhead, settings.getBackoffRatio())
+                    : new VegasLimit(bulkhead);
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter(algorithm, bulkhead.getInitialLimit());
+            limiters.put(endpointClass, limiter);
+
+            String tag = endpointClass.name().toLowerCase();
+            Gauge.builder("registration.limiter.limit", limiter, ConcurrencyLimiter::getLimit)
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            Gauge.builder("registration.limiter.in-flight", limiter, ConcurrencyLimiter::getInFlight)
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            rejections.put(endpointClass, meterRegistry.counter("registration.limiter.rejected", "bulkhead", tag));
+        }
+    }
+
+    /**
+     * Занимает место в лимите класса или отклоняет запрос с OverloadException.
+     */
+    public ConcurrencyLimiter acquire(EndpointClass endpointClass) {
+        ConcurrencyLimiter limiter = limiters.get(endpointClass);
+        if (!limiter.tryAcquire()) {
+            rejections.get(endpointClass).increment();
+            throw new OverloadException("Сервис перегружен, повторите запрос позже", retryAfterSeconds);
+        }
+        return limiter;
+    }
+
+    public ConcurrencyLimiter get(EndpointClass endpointClass) {
+        return limiters.get(endpointClass);
+    }
+
+    private static RegistrationProperties.Bulkhead bulkhead(RegistrationProperties.Limiter settings,
+                                                            EndpointClass endpointClass) {
+        switch (endpointClass) {
+            case READ:
+                return settings.getRead();
+            case WRITE:
+                return settings.getWrite();
+            case STATISTICS:
+                return settings.getStatistics();
+            default:
+                return settings.getBulk();
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package ru.app.user.registration.controllers.limits;
+
+/**
+ * Пересчет лимита по завершенному запросу. Вызывается под блокировкой лимитера.
+ */
+interface LimitAlgorithm {
+
+    /**
+     * @param limit    текущий лимит
+     * @param rttNanos время обработки запроса
+     * @param inFlight сколько запросов выполнялось вместе с этим, включая его
+     * @param dropped  запрос завершился ошибкой 5xx
+     */
+    int update(int limit, long rttNanos, int inFlight, boolean dropped);
+
+}
@@ -0,0 +1,65 @@
+package ru.app.user.registration.controllers.limits;
+
+import ru.app.config.RegistrationProperties;
+
+/**
+ * TCP Vegas: длина очереди оценивается как limit * (1 - rttNoLoad / rtt), где rttNoLoad - минимальное
+ * наблюдаемое время обработки. Короткая очередь увеличивает лимит, длинная уменьшает; пороги растут
+ * как log10(limit). Минимум периодически забывается, чтобы лимит следовал за изменением нагрузки на БД.
+ */
+class VegasLimit implements LimitAlgorithm {
+
+    /**
+     * Через сколько лимитов завершенных запросов минимум сбрасывается.
+     */
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private long rttNoLoad;
+    private int samplesUntilProbe;
+
+    VegasLimit(RegistrationProperties.Bulkhead bulkhead) {
+        this.minLimit = bulkhead.getMinLimit();
+        this.maxLimit = bulkhead.getMaxLimit();
+    }
+
+    @Override
+    public int update(int limit, long rttNanos, int inFlight, boolean dropped) {
+
+        double log = Math.max(1, Math.log10(limit));
+        if (dropped) {
+            return clamp(limit - log);
+        }
+        if (--samplesUntilProbe <= 0) {
+            samplesUntilProbe = PROBE_MULTIPLIER * limit;
+            rttNoLoad = rttNanos;
+            return limit;
+        }
+        if (rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+            return limit;
+        }
+        if (inFlight * 2 < limit) {
+            return limit;
+        }
+
+        double queue = Math.ceil(limit * (1 - (double) rttNoLoad / rttNanos));
+        if (queue <= log) {
+            return clamp(limit + 3 * log);
+        }
+        if (queue < 3 * log) {
+            return clamp(limit + log);
+        }
+        if (queue > 6 * log) {
+            return clamp(limit - log);
+        }
+        return limit;
+    }
+
+    private int clamp(double limit) {
+        return (int) Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+}
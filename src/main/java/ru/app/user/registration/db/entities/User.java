@@ -8,6 +8,8 @@ import lombok.experimental.FieldDefaults;
 import ru.app.user.registration.enums.Status;
 
 import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.Period;
 
 @Getter
 @Setter
@@ -22,9 +24,17 @@ public class User {
     Long id;
     String name;
     String bornDate;
-    Integer age;
+    @Column(name = "birth_date")
+    LocalDate birthDate;
     String email;
     Status newStatus = Status.UNDEFINED;
     Status oldStatus = Status.UNDEFINED;
 
+    /**
+     * Возраст на текущую дату. Не хранится: колонка age больше не заполняется и не читается.
+     */
+    public Integer getAge() {
+        return birthDate == null ? null : Period.between(birthDate, LocalDate.now()).getYears();
+    }
+
 }
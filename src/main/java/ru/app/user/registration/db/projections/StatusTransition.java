@@ -0,0 +1,17 @@
+package ru.app.user.registration.db.projections;
+
+/**
+ * Результат атомарной смены статуса: значения строки после обновления.
+ * Статусы хранятся порядковыми номерами {@link ru.app.user.registration.enums.Status}.
+ */
+public interface StatusTransition {
+
+    Long getId();
+
+    Integer getNewStatus();
+
+    Integer getOldStatus();
+
+    Integer getAge();
+
+}
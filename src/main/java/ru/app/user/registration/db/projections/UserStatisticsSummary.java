@@ -0,0 +1,11 @@
+package ru.app.user.registration.db.projections;
+
+public interface UserStatisticsSummary {
+
+    Long getTotal();
+
+    Long getMatched();
+
+    Double getAverageAge();
+
+}
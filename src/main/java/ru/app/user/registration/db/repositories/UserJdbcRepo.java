@@ -0,0 +1,544 @@
+package ru.app.user.registration.db.repositories;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.presence.PresenceEntry;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Операции над таблицей users, которые выполняются в обход Hibernate:
+ * пакетная вставка, COPY и выборки по множеству значений за один запрос.
+ * Время каждого метода пишется в метрику registration.jdbc с тегами class и method.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserJdbcRepo {
+
+    private static final String FIND_EXISTING_EMAILS = "select email from users where email = any(?)";
+
+    private static final String FIND_EXISTING_IDS = "select id from users where id = any(?)";
+
+    private static final String FIND_STATUSES = "select id, new_status from users where id = any(?)";
+
+    private static final String NEXT_IDS = "select nextval('users_id_seq') from generate_series(1, ?)";
+
+    private static final String INSERT_USER = "insert into users (id, name, born_date, birth_date, email, new_status, old_status) " +
+            "values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String COPY_USERS = "copy users (id, name, born_date, birth_date, email, new_status, old_status) " +
+            "from stdin with (format csv)";
+
+    private static final String AGE = "cast(date_part('year', age(current_date, birth_date)) as int)";
+
+    private static final String AGGREGATE_BY_STATUS_AND_AGE = "select new_status, coalesce(birth_date <= ?, false) as adult, " +
+            "count(*), coalesce(sum(" + AGE + "), 0) from users group by 1, 2";
+
+    private static final String USER_COLUMNS = "id, name, born_date, birth_date, email, new_status, old_status";
+
+    private static final String STREAM_BY_STATUS = "select " + USER_COLUMNS + " from users where new_status = ? order by id";
+
+    private static final String STREAM_ADULTS = "select " + USER_COLUMNS + " from users where birth_date <= ? order by id";
+
+    private static final String STREAM_TEENS = "select " + USER_COLUMNS + " from users where birth_date > ? order by id";
+
+    private static final String EXPORT_AFTER = "select " + USER_COLUMNS + " from users where id > ? order by id";
+
+    private static final String SHIFT_STATUSES = "with v as (select * from unnest(?::bigint[], ?::int[]) as v(id, status)), " +
+            "updated as (update users u set old_status = u.new_status, new_status = v.status from v " +
+            "where u.id = v.id and (u.new_status <> v.status or u.old_status <> v.status) " +
+            "returning u.id, u.new_status, u.old_status, u.birth_date) " +
+            "select id, new_status, old_status, cast(date_part('year', age(current_date, birth_date)) as int) from updated " +
+            "union all select u.id, v.status, v.status, cast(date_part('year', age(current_date, u.birth_date)) as int) " +
+            "from users u join v on u.id = v.id where not exists (select 1 from updated where updated.id = u.id)";
+
+    private static final String WRITE_STATUSES = "update users u set new_status = v.new_status, old_status = v.old_status " +
+            "from unnest(?::bigint[], ?::int[], ?::int[]) as v(id, new_status, old_status) where u.id = v.id";
+
+    private static final String FIND_BY_IDS = "select " + USER_COLUMNS + " from users where id = any(?) order by id";
+
+    private static final String SEARCH_LIMITS = "select set_config('statement_timeout', ?, true), " +
+            "set_config('pg_trgm.word_similarity_threshold', ?, true)";
+
+    private static final String SEARCH_BY_PREFIX = "select " + USER_COLUMNS + " from users " +
+            "where (lower(email) like ? or lower(name) like ?) and id > ? order by id limit ?";
+
+    private static final String SEARCH_FUZZY = "select " + USER_COLUMNS + " from users " +
+            "where ? <% lower(email) or ? <% lower(name) " +
+            "order by greatest(word_similarity(?, lower(email)), coalesce(word_similarity(?, lower(name)), 0)) desc, id " +
+            "limit ? offset ?";
+
+    private static final String FIND_SEARCH_TERMS = "select id, name, email from users " +
+            "where id > ? order by id limit ?";
+
+    private static final String SCAN_BIRTH_DATES_AND_EMAILS = "select birth_date, email from users";
+
+    private static final String QUERY_CANCELED = "57014";
+
+    private static final int SEARCH_FETCH_SIZE = 50;
+
+    private static final String METRIC = "registration.jdbc";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Timed(METRIC)
+    public Set<String> findExistingEmails(Collection<String> emails) {
+
+        Set<String> existing = new HashSet<>();
+        if (emails.isEmpty()) {
+            return existing;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_EXISTING_EMAILS);
+            ps.setArray(1, con.createArrayOf("varchar", emails.toArray()));
+            return ps;
+        }, rs -> {
+            existing.add(rs.getString(1));
+        });
+        return existing;
+    }
+
+    @Timed(METRIC)
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+
+        Set<Long> existing = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existing;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_EXISTING_IDS);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, rs -> {
+            existing.add(rs.getLong(1));
+        });
+        return existing;
+    }
+
+    @Timed(METRIC)
+    public Map<Long, Status> findStatuses(Collection<Long> ids) {
+
+        Map<Long, Status> statuses = new HashMap<>();
+        if (ids.isEmpty()) {
+            return statuses;
+        }
+
+        Status[] values = Status.values();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_STATUSES);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, rs -> {
+            statuses.put(rs.getLong(1), values[rs.getInt(2)]);
+        });
+        return statuses;
+    }
+
+    /**
+     * Выделяет {@code count} идентификаторов из той же последовательности, что и identity-колонка users.id,
+     * блоками по {@code blockSize} значений за один запрос.
+     */
+    @Timed(METRIC)
+    public long[] allocateIds(int count, int blockSize) {
+
+        long[] ids = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            int block = Math.min(blockSize, count - filled);
+            List<Long> next = jdbcTemplate.queryForList(NEXT_IDS, Long.class, block);
+            for (Long id : next) {
+                ids[filled++] = id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Вставляет пользователей с уже назначенными идентификаторами JDBC-пакетами по {@code batchSize} строк.
+     */
+    @Timed(METRIC)
+    public void insertAll(List<User> users, int batchSize) {
+
+        jdbcTemplate.batchUpdate(INSERT_USER, users, batchSize, (ps, user) -> {
+            ps.setLong(1, user.getId());
+            ps.setString(2, user.getName());
+            ps.setString(3, user.getBornDate());
+            ps.setObject(4, user.getBirthDate(), Types.DATE);
+            ps.setString(5, user.getEmail());
+            ps.setInt(6, user.getNewStatus().ordinal());
+            ps.setInt(7, user.getOldStatus().ordinal());
+        });
+    }
+
+    /**
+     * Загружает пользователей с уже назначенными идентификаторами одним оператором COPY FROM STDIN.
+     * Строки передаются в формате CSV: пустое поле без кавычек - NULL.
+     */
+    @Timed(METRIC)
+    public void copyAll(List<User> users) {
+
+        StringBuilder csv = new StringBuilder(users.size() * 96);
+        for (User user : users) {
+            csv.append(user.getId()).append(',');
+            appendCsv(csv, user.getName()).append(',');
+            appendCsv(csv, user.getBornDate()).append(',');
+            appendCsv(csv, user.getBirthDate() == null ? null : user.getBirthDate().toString()).append(',');
+            appendCsv(csv, user.getEmail()).append(',');
+            csv.append(user.getNewStatus().ordinal()).append(',')
+                    .append(user.getOldStatus().ordinal()).append('\n');
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                return con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_USERS, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        });
+    }
+
+    private static StringBuilder appendCsv(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+
+    @Timed(METRIC)
+    public void aggregateByStatusAndAge(LocalDate adultCutoff, AggregateHandler handler) {
+
+        Status[] statuses = Status.values();
+        jdbcTemplate.query(AGGREGATE_BY_STATUS_AND_AGE, rs -> {
+            handler.accept(statuses[rs.getInt(1)], rs.getBoolean(2), rs.getLong(3), rs.getLong(4));
+        }, adultCutoff);
+    }
+
+    /**
+     * Применяет переходы статусов одним оператором. Идентификаторы в {@code statuses} должны быть уникальны,
+     * обработчик вызывается для каждой найденной строки со значениями после обновления. Как и в
+     * {@link UserRepo#shiftStatus}, строки с обоими статусами, уже равными новому, не перезаписываются.
+     */
+    @Timed(METRIC)
+    public void shiftStatuses(Map<Long, Status> statuses, TransitionHandler handler) {
+
+        if (statuses.isEmpty()) {
+            return;
+        }
+
+        Long[] ids = new Long[statuses.size()];
+        Integer[] newStatuses = new Integer[statuses.size()];
+        int i = 0;
+        for (Map.Entry<Long, Status> entry : statuses.entrySet()) {
+            ids[i] = entry.getKey();
+            newStatuses[i] = entry.getValue().ordinal();
+            i++;
+        }
+
+        Status[] values = Status.values();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SHIFT_STATUSES);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("integer", newStatuses));
+            return ps;
+        }, rs -> {
+            int age = rs.getInt(4);
+            handler.accept(rs.getLong(1), values[rs.getInt(2)], values[rs.getInt(3)], rs.wasNull() ? null : age);
+        });
+    }
+
+    /**
+     * Записывает уже вычисленные пары статусов одним оператором.
+     */
+    @Timed(METRIC)
+    public void writeStatuses(Map<Long, PresenceEntry> entries) {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Long[] ids = new Long[entries.size()];
+        Integer[] newStatuses = new Integer[entries.size()];
+        Integer[] oldStatuses = new Integer[entries.size()];
+        int i = 0;
+        for (Map.Entry<Long, PresenceEntry> entry : entries.entrySet()) {
+            ids[i] = entry.getKey();
+            newStatuses[i] = entry.getValue().getNewStatus().ordinal();
+            oldStatuses[i] = entry.getValue().getOldStatus().ordinal();
+            i++;
+        }
+
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(WRITE_STATUSES);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("integer", newStatuses));
+            ps.setArray(3, con.createArrayOf("integer", oldStatuses));
+            return ps;
+        });
+    }
+
+    /**
+     * Построчно читает пользователей с указанным статусом через однонаправленный курсор.
+     * Для PostgreSQL курсор работает только внутри транзакции.
+     */
+    @Timed(METRIC)
+    public void streamByStatus(Status status, int fetchSize, Consumer<User> consumer) {
+        stream(STREAM_BY_STATUS, status.ordinal(), fetchSize, consumer);
+    }
+
+    @Timed(METRIC)
+    public void streamByAge(boolean adult, LocalDate adultCutoff, int fetchSize, Consumer<User> consumer) {
+        stream(adult ? STREAM_ADULTS : STREAM_TEENS, adultCutoff, fetchSize, consumer);
+    }
+
+    /**
+     * Все пользователи с id больше {@code afterId} в порядке id. Строки передаются обработчику без построения User,
+     * колонки те же, что у USER_COLUMNS. Для PostgreSQL курсор работает только внутри транзакции.
+     */
+    @Timed(METRIC)
+    public void exportAfter(long afterId, int fetchSize, RowCallbackHandler handler) {
+        query(EXPORT_AFTER, afterId, fetchSize, handler);
+    }
+
+    private void stream(String sql, Object parameter, int fetchSize, Consumer<User> consumer) {
+        query(sql, parameter, fetchSize, rs -> {
+            consumer.accept(mapUser(rs));
+        });
+    }
+
+    private void query(String sql, Object parameter, int fetchSize, RowCallbackHandler handler) {
+
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, parameter);
+            return ps;
+        };
+        jdbcTemplate.query(creator, handler);
+    }
+
+    private static User mapUser(ResultSet rs) throws SQLException {
+        User user = new User();
+        user.setId(rs.getLong("id"));
+        user.setName(rs.getString("name"));
+        user.setBornDate(rs.getString("born_date"));
+        user.setBirthDate(rs.getObject("birth_date", LocalDate.class));
+        user.setEmail(rs.getString("email"));
+        user.setNewStatus(Status.values()[rs.getInt("new_status")]);
+        user.setOldStatus(Status.values()[rs.getInt("old_status")]);
+        return user;
+    }
+
+    /**
+     * Пользователи с указанными id одним запросом, в порядке id. Ненайденные id пропускаются.
+     */
+    @Timed(METRIC)
+    public List<User> findByIds(Collection<Long> ids) {
+
+        List<User> users = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return users;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_BY_IDS);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, rs -> {
+            users.add(mapUser(rs));
+        });
+        return users;
+    }
+
+    /**
+     * Пользователи, у которых имя или почта в нижнем регистре начинаются с {@code prefix}, с id больше
+     * {@code afterId} в порядке id. Ограничения времени ставятся на текущую транзакцию, поэтому вызывается внутри нее.
+     *
+     * @return false, если запрос прерван по statement_timeout или по наступлении {@code deadlineNanos}
+     */
+    @Timed(METRIC)
+    public boolean searchByPrefix(String prefix, long afterId, int limit, long deadlineNanos, Consumer<User> consumer) {
+        String pattern = escapeLike(prefix) + '%';
+        return search(SEARCH_BY_PREFIX, new Object[]{pattern, pattern, afterId, limit}, 0, deadlineNanos, consumer);
+    }
+
+    /**
+     * Пользователи, у которых часть имени или почты в нижнем регистре похожа на {@code query} не меньше чем
+     * на {@code threshold} по word_similarity, от самых похожих. Вызывается внутри транзакции.
+     *
+     * @return false, если запрос прерван по statement_timeout или по наступлении {@code deadlineNanos}
+     */
+    @Timed(METRIC)
+    public boolean searchFuzzy(String query, double threshold, int offset, int limit, long deadlineNanos,
+                               Consumer<User> consumer) {
+        return search(SEARCH_FUZZY, new Object[]{query, query, query, query, limit, offset}, threshold, deadlineNanos,
+                consumer);
+    }
+
+    private boolean search(String sql, Object[] parameters, double threshold, long deadlineNanos,
+                           Consumer<User> consumer) {
+
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis < 1) {
+            return false;
+        }
+        jdbcTemplate.query(SEARCH_LIMITS, rs -> {
+        }, Long.toString(remainingMillis), Double.toString(threshold));
+
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(SEARCH_FETCH_SIZE);
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            return ps;
+        };
+        try {
+            jdbcTemplate.query(creator, rs -> {
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    throw BudgetExceeded.INSTANCE;
+                }
+                consumer.accept(mapUser(rs));
+            });
+            return true;
+        } catch (BudgetExceeded e) {
+            return false;
+        } catch (DataAccessException e) {
+            if (isQueryCanceled(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isQueryCanceled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && QUERY_CANCELED.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Страница троек (id, имя, почта) с id больше {@code afterId} для построения индекса поиска.
+     *
+     * @return последний прочитанный id или {@code afterId}, если строк больше нет
+     */
+    @Timed(METRIC)
+    public long findSearchTerms(long afterId, int limit, SearchTermsHandler handler) {
+
+        long[] last = {afterId};
+        jdbcTemplate.query(FIND_SEARCH_TERMS, rs -> {
+            last[0] = rs.getLong(1);
+            handler.accept(last[0], rs.getString(2), rs.getString(3));
+        }, afterId, limit);
+        return last[0];
+    }
+
+    /**
+     * Дата рождения и почта каждого пользователя, без сортировки, одним проходом по таблице.
+     * Для PostgreSQL курсор работает только внутри транзакции.
+     */
+    @Timed(METRIC)
+    public void scanBirthDatesAndEmails(int fetchSize, SketchInputHandler handler) {
+
+        PreparedStatementCreator creator = con -> {
+            PreparedStatement ps = con.prepareStatement(SCAN_BIRTH_DATES_AND_EMAILS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        };
+        jdbcTemplate.query(creator, (RowCallbackHandler) rs -> {
+            handler.accept(rs.getObject(1, LocalDate.class), rs.getString(2));
+        });
+    }
+
+    @FunctionalInterface
+    public interface AggregateHandler {
+
+        void accept(Status status, boolean adult, long count, long ageSum);
+
+    }
+
+    @FunctionalInterface
+    public interface TransitionHandler {
+
+        void accept(long id, Status newStatus, Status oldStatus, Integer age);
+
+    }
+
+    @FunctionalInterface
+    public interface SearchTermsHandler {
+
+        void accept(long id, String name, String email);
+
+    }
+
+    @FunctionalInterface
+    public interface SketchInputHandler {
+
+        void accept(LocalDate birthDate, String email);
+
+    }
+
+    /**
+     * Прерывает чтение курсора по истечении бюджета времени поиска.
+     */
+    private static final class BudgetExceeded extends RuntimeException {
+
+        private static final BudgetExceeded INSTANCE = new BudgetExceeded();
+
+        private BudgetExceeded() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package ru.app.user.registration.db.repositories;
+
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.enums.Status;
+
+import java.time.LocalDate;
+
+/**
+ * Аналог UserRepo поверх R2DBC для реактивного режима (spring.main.web-application-type=reactive).
+ * Запросы те же, что у UserRepo и UserJdbcRepo, строки отображаются в User вручную.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UserReactiveRepo {
+
+    private static final String USER_COLUMNS = "id, name, born_date, birth_date, email, new_status, old_status";
+
+    private static final String FIND_BY_ID = "select " + USER_COLUMNS + " from users where id = :id";
+
+    private static final String EXISTS_BY_EMAIL = "select exists(select 1 from users where email = :email)";
+
+    private static final String INSERT_USER = "insert into users (name, born_date, birth_date, email, new_status, old_status) " +
+            "values (:name, :bornDate, :birthDate, :email, :newStatus, :oldStatus) returning id";
+
+    private static final String SHIFT_STATUS = "with updated as (update users set old_status = new_status, " +
+            "new_status = :status where id = :id and (new_status <> :status or old_status <> :status) " +
+            "returning " + USER_COLUMNS + ") select " + USER_COLUMNS + " from updated " +
+            "union all select id, name, born_date, birth_date, email, :status, :status from users " +
+            "where id = :id and not exists (select 1 from updated)";
+
+    private static final String FIND_BY_STATUS = "select " + USER_COLUMNS + " from users " +
+            "where new_status = :status and id > :after order by id limit :limit";
+
+    private static final String FIND_ADULTS = "select " + USER_COLUMNS + " from users " +
+            "where birth_date <= :cutoff and id > :after order by id limit :limit";
+
+    private static final String FIND_TEENS = "select " + USER_COLUMNS + " from users " +
+            "where birth_date > :cutoff and id > :after order by id limit :limit";
+
+    private static final String STREAM_BY_STATUS = "select " + USER_COLUMNS + " from users where new_status = :status order by id";
+
+    private static final String STREAM_ADULTS = "select " + USER_COLUMNS + " from users where birth_date <= :cutoff order by id";
+
+    private static final String STREAM_TEENS = "select " + USER_COLUMNS + " from users where birth_date > :cutoff order by id";
+
+    private static final String SUMMARIZE = "select (select count(*) from users) as total, count(*) as matched, " +
+            "avg(date_part('year', age(current_date, u.birth_date))) as average_age from (" +
+            "select id, birth_date from users where :byStatus = true and new_status = :status " +
+            "union select id, birth_date from users where :byAdult = true and birth_date <= :cutoff " +
+            "union select id, birth_date from users where :byTeen = true and birth_date > :cutoff) u";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql(FIND_BY_ID)
+                .bind("id", id)
+                .map((row, metadata) -> mapUser(row))
+                .one();
+    }
+
+    public Mono<Boolean> existsByEmail(String email) {
+        return databaseClient.sql(EXISTS_BY_EMAIL)
+                .bind("email", email)
+                .map((row, metadata) -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    /**
+     * Вставляет пользователя и возвращает его же с идентификатором, выданным identity-колонкой.
+     */
+    public Mono<User> insert(User user) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(INSERT_USER);
+        spec = bindNullable(spec, "name", user.getName(), String.class);
+        spec = bindNullable(spec, "bornDate", user.getBornDate(), String.class);
+        spec = bindNullable(spec, "birthDate", user.getBirthDate(), LocalDate.class);
+        spec = bindNullable(spec, "email", user.getEmail(), String.class);
+        return spec.bind("newStatus", user.getNewStatus().ordinal())
+                .bind("oldStatus", user.getOldStatus().ordinal())
+                .map((row, metadata) -> row.get("id", Long.class))
+                .one()
+                .map(id -> {
+                    user.setId(id);
+                    return user;
+                });
+    }
+
+    /**
+     * Сдвигает new_status в old_status и выставляет новый статус, возвращает строку после обновления.
+     * Как и {@link UserRepo#shiftStatus}, не перезаписывает строку, в которой оба статуса уже равны status.
+     */
+    public Mono<User> shiftStatus(Long id, int status) {
+        return databaseClient.sql(SHIFT_STATUS)
+                .bind("id", id)
+                .bind("status", status)
+                .map((row, metadata) -> mapUser(row))
+                .one();
+    }
+
+    public Flux<User> findByNewStatus(Status status, long after, int limit) {
+        return databaseClient.sql(FIND_BY_STATUS)
+                .bind("status", status.ordinal())
+                .bind("after", after)
+                .bind("limit", limit)
+                .map((row, metadata) -> mapUser(row))
+                .all();
+    }
+
+    public Flux<User> findByAge(boolean adult, LocalDate adultCutoff, long after, int limit) {
+        return databaseClient.sql(adult ? FIND_ADULTS : FIND_TEENS)
+                .bind("cutoff", adultCutoff)
+                .bind("after", after)
+                .bind("limit", limit)
+                .map((row, metadata) -> mapUser(row))
+                .all();
+    }
+
+    /**
+     * Строки читаются порциями по {@code fetchSize} по мере запроса подписчика.
+     */
+    public Flux<User> streamByStatus(Status status, int fetchSize) {
+        return stream(STREAM_BY_STATUS, "status", status.ordinal(), fetchSize);
+    }
+
+    public Flux<User> streamByAge(boolean adult, LocalDate adultCutoff, int fetchSize) {
+        return stream(adult ? STREAM_ADULTS : STREAM_TEENS, "cutoff", adultCutoff, fetchSize);
+    }
+
+    private Flux<User> stream(String sql, String name, Object parameter, int fetchSize) {
+        return databaseClient.sql(sql)
+                .filter((statement, next) -> next.execute(statement.fetchSize(fetchSize)))
+                .bind(name, parameter)
+                .map((row, metadata) -> mapUser(row))
+                .all();
+    }
+
+    public Mono<UserStatisticsSummary> summarize(boolean byStatus, int status, boolean byAdult, boolean byTeen,
+                                                 LocalDate adultCutoff) {
+        return databaseClient.sql(SUMMARIZE)
+                .bind("byStatus", byStatus)
+                .bind("status", status)
+                .bind("byAdult", byAdult)
+                .bind("byTeen", byTeen)
+                .bind("cutoff", adultCutoff)
+                .map((row, metadata) -> (UserStatisticsSummary) new Summary(row.get("total", Long.class),
+                        row.get("matched", Long.class), row.get("average_age", Double.class)))
+                .one();
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                      String name, T value, Class<T> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static User mapUser(Row row) {
+        Status[] statuses = Status.values();
+        User user = new User();
+        user.setId(row.get("id", Long.class));
+        user.setName(row.get("name", String.class));
+        user.setBornDate(row.get("born_date", String.class));
+        user.setBirthDate(row.get("birth_date", LocalDate.class));
+        user.setEmail(row.get("email", String.class));
+        user.setNewStatus(statuses[row.get("new_status", Integer.class)]);
+        user.setOldStatus(statuses[row.get("old_status", Integer.class)]);
+        return user;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Summary implements UserStatisticsSummary {
+
+        private final Long total;
+        private final Long matched;
+        private final Double averageAge;
+
+        @Override
+        public Long getTotal() {
+            return total;
+        }
+
+        @Override
+        public Long getMatched() {
+            return matched;
+        }
+
+        @Override
+        public Double getAverageAge() {
+            return averageAge;
+        }
+
+    }
+
+}
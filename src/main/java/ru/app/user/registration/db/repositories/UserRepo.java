@@ -1,25 +1,65 @@
 package ru.app.user.registration.db.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.StatusTransition;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
 import ru.app.user.registration.enums.Status;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserRepo extends JpaRepository<User, Long> {
 
     User findByEmail(String email);
 
-    List<User> findAllByNewStatus(Status status);
+    List<User> findByNewStatusAndIdGreaterThanOrderByIdAsc(Status status, Long after, Pageable pageable);
 
-    @Query(value = "select * from users where users.age >= :age order by users.age asc", nativeQuery = true)
-    List<User> findAdults(@Param("age") Integer ageLimiter);
+    @Query(value = "select * from users where users.birth_date <= :cutoff and users.id > :after " +
+            "order by users.id asc limit :limit", nativeQuery = true)
+    List<User> findAdults(@Param("cutoff") LocalDate adultCutoff, @Param("after") Long after, @Param("limit") Integer limit);
 
-    @Query(value = "select * from users where users.age < :age order by users.age asc", nativeQuery = true)
-    List<User> findTeens(@Param("age") Integer ageLimiter);
+    @Query(value = "select * from users where users.birth_date > :cutoff and users.id > :after " +
+            "order by users.id asc limit :limit", nativeQuery = true)
+    List<User> findTeens(@Param("cutoff") LocalDate adultCutoff, @Param("after") Long after, @Param("limit") Integer limit);
+
+    /**
+     * Общее число пользователей, число и средний возраст пользователей, попавших хотя бы под один фильтр.
+     * Ветки union отбираются по индексам users_new_status_idx и users_birth_date_idx и схлопываются по id,
+     * возраст считается от даты рождения на текущую дату.
+     */
+    @Query(value = "select (select count(*) from users) as \"total\", count(*) as \"matched\", " +
+            "avg(date_part('year', age(current_date, u.birth_date))) as \"averageAge\" from (" +
+            "select id, birth_date from users where :byStatus = true and new_status = :status " +
+            "union select id, birth_date from users where :byAdult = true and birth_date <= :cutoff " +
+            "union select id, birth_date from users where :byTeen = true and birth_date > :cutoff) u",
+            nativeQuery = true)
+    UserStatisticsSummary summarize(@Param("byStatus") boolean byStatus, @Param("status") int status,
+                                    @Param("byAdult") boolean byAdult, @Param("byTeen") boolean byTeen,
+                                    @Param("cutoff") LocalDate adultCutoff);
+
+    /**
+     * Сдвигает new_status в old_status и выставляет новый статус одним оператором, без чтения строки.
+     * Строка, у которой оба статуса уже равны status, не перезаписывается: сдвиг ничего бы в ней не изменил.
+     * Для нее возвращается переход из status в status, пустой результат - только если пользователя нет.
+     * Без {@code @Modifying}: он выполняет запрос через executeUpdate, а строку из returning нужно прочитать.
+     */
+    @Transactional
+    @Query(value = "with updated as (update users set old_status = new_status, new_status = :status " +
+            "where id = :id and (new_status <> :status or old_status <> :status) " +
+            "returning id, new_status, old_status, birth_date) " +
+            "select id as \"id\", new_status as \"newStatus\", old_status as \"oldStatus\", " +
+            "cast(date_part('year', age(current_date, birth_date)) as int) as \"age\" from updated " +
+            "union all select id, :status, :status, cast(date_part('year', age(current_date, birth_date)) as int) " +
+            "from users where id = :id and not exists (select 1 from updated)",
+            nativeQuery = true)
+    Optional<StatusTransition> shiftStatus(@Param("id") Long id, @Param("status") int status);
 
 }
@@ -0,0 +1,44 @@
+package ru.app.user.registration.db.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+
+/**
+ * Пользователи, записанные за последние read-your-writes-window: их чтение идет на основную БД,
+ * чтобы отставание реплики не возвращало состояние до записи.
+ */
+@Component
+public class RecentWrites {
+
+    private static final long MAXIMUM_SIZE = 100_000;
+
+    private final Cache<Long, Boolean> written;
+
+    public RecentWrites(RegistrationProperties properties) {
+
+        RegistrationProperties.Replicas settings = properties.getReplicas();
+        if (!settings.isEnabled() || settings.getReadYourWritesWindow() == null
+                || settings.getReadYourWritesWindow().isZero()) {
+            written = null;
+            return;
+        }
+
+        written = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_SIZE)
+                .expireAfterWrite(settings.getReadYourWritesWindow())
+                .build();
+    }
+
+    public void record(Long id) {
+        if (written != null && id != null) {
+            written.put(id, Boolean.TRUE);
+        }
+    }
+
+    public boolean contains(Long id) {
+        return written != null && written.getIfPresent(id) != null;
+    }
+
+}
@@ -0,0 +1,137 @@
+package ru.app.user.registration.db.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.app.config.RegistrationProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Реплики для чтения и их состояние. Реплика исключается после failure-threshold неудачных проверок подряд
+ * или сразу при ошибке получения соединения на запросе, и возвращается после первой успешной проверки.
+ * Задержка проверки сглаживается (EWMA) и используется режимом LOWEST_LATENCY.
+ */
+@Slf4j
+public class ReplicaPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final List<Replica> replicas;
+    private final RegistrationProperties.Balancing balancing;
+    private final int failureThreshold;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaPool(List<Replica> replicas, RegistrationProperties.Balancing balancing, int failureThreshold) {
+        this.replicas = replicas;
+        this.balancing = balancing;
+        this.failureThreshold = failureThreshold;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Доступная реплика по выбранной стратегии или null, если доступных нет.
+     */
+    public Replica choose() {
+
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        if (balancing == RegistrationProperties.Balancing.LOWEST_LATENCY) {
+            Replica best = null;
+            for (Replica replica : replicas) {
+                if (replica.healthy && (best == null || replica.latencyNanos < best.latencyNanos)) {
+                    best = replica;
+                }
+            }
+            return best;
+        }
+
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public void eject(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Реплика {} исключена: {}", replica.name, cause.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{@'registration-ru.app.config.RegistrationProperties'.replicas.healthCheckInterval.toMillis()}")
+    public void checkHealth() {
+        replicas.forEach(this::check);
+    }
+
+    private void check(Replica replica) {
+
+        long start = System.nanoTime();
+        boolean valid;
+        String error = null;
+        try (Connection connection = replica.dataSource.getConnection()) {
+            valid = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            valid = false;
+            error = e.getMessage();
+        }
+        long latency = System.nanoTime() - start;
+
+        if (valid) {
+            replica.failures = 0;
+            replica.latencyNanos = replica.latencyNanos == 0 ? latency : (replica.latencyNanos * 3 + latency) / 4;
+            if (!replica.healthy) {
+                replica.healthy = true;
+                log.info("Реплика {} снова доступна", replica.name);
+            }
+        } else if (++replica.failures >= failureThreshold && replica.healthy) {
+            replica.healthy = false;
+            log.warn("Реплика {} исключена после {} неудачных проверок: {}", replica.name, replica.failures, error);
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> {
+            if (replica.dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) replica.dataSource).close();
+            }
+        });
+    }
+
+    @Getter
+    public static class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile boolean healthy = true;
+
+        private volatile long latencyNanos;
+
+        private int failures;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+    }
+
+}
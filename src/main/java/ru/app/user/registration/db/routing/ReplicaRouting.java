@@ -0,0 +1,32 @@
+package ru.app.user.registration.db.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Принудительная маршрутизация на основную БД для текущего потока.
+ * Действует только на соединения, которые еще не получены: внутри уже начатой на реплике
+ * транзакции переключиться нельзя.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private ReplicaRouting() {
+    }
+
+    public static <T> T onPrimary(Supplier<T> action) {
+
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_FORCED.set(previous);
+        }
+    }
+
+    static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get();
+    }
+
+}
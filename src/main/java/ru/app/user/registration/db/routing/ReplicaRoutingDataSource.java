@@ -0,0 +1,51 @@
+package ru.app.user.registration.db.routing;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Соединения readOnly-транзакций берутся с реплики, все остальные - с основной БД.
+ * Если доступных реплик нет или реплика не отдала соединение, чтение уходит на основную БД.
+ * Признак readOnly выставляется после начала транзакции, поэтому источник оборачивается
+ * в LazyConnectionDataSourceProxy: соединение запрашивается при первом операторе.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final ReplicaPool replicaPool;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaPool replicaPool) {
+        this.primary = primary;
+        this.replicaPool = replicaPool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        ReplicaPool.Replica replica = routesToReplica() ? replicaPool.choose() : null;
+        if (replica == null) {
+            return primary.getConnection();
+        }
+
+        try {
+            return replica.getDataSource().getConnection();
+        } catch (SQLException e) {
+            replicaPool.eject(replica, e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    private static boolean routesToReplica() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReplicaRouting.isPrimaryForced();
+    }
+
+}
@@ -0,0 +1,20 @@
+package ru.app.user.registration.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheStatsDto {
+
+    boolean enabled;
+    long hitCount;
+    long missCount;
+    long evictionCount;
+    double hitRate;
+    long estimatedSize;
+
+}
@@ -0,0 +1,34 @@
+package ru.app.user.registration.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ImportResultDto {
+
+    @Schema(description = "Прочитано строк с данными")
+    long read;
+
+    @Schema(description = "Загружено пользователей")
+    long imported;
+
+    @Schema(description = "Отклонено строк")
+    long rejected;
+
+    @Schema(description = "Длительность импорта, мс")
+    long durationMillis;
+
+    @Schema(description = "Скорость, строк в секунду")
+    long rowsPerSecond;
+
+    @Schema(description = "Файл отчета об отклоненных строках")
+    String errorReport;
+
+}
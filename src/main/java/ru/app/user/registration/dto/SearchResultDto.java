@@ -0,0 +1,29 @@
+package ru.app.user.registration.dto;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SearchResultDto {
+
+    List<UserDto> users;
+
+    /**
+     * Курсор следующей страницы; null - совпадений больше нет.
+     */
+    String next;
+
+    /**
+     * Бюджет времени исчерпан: страница может быть неполной, продолжать с курсора next.
+     */
+    boolean partial;
+
+}
@@ -0,0 +1,21 @@
+package ru.app.user.registration.dto;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SketchStatisticsDto {
+
+    Long ageCount;
+    Map<String, Integer> ageQuantiles;
+    Double ageQuantileRankError;
+    Long emailDomainsCount;
+    Double emailDomainsRelativeError;
+
+}
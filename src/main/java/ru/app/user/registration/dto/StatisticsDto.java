@@ -14,7 +14,9 @@ public class StatisticsDto {
 
     Long totalUsersCount;
     List<UserDto> usersByStatus;
+    Long usersByStatusNextCursor;
     List<UserDto> usersByAge;
+    Long usersByAgeNextCursor;
     Integer averageAge;
 
 }
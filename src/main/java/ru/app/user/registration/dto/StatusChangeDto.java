@@ -0,0 +1,21 @@
+package ru.app.user.registration.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import ru.app.user.registration.enums.Status;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StatusChangeDto {
+
+    @Schema(description = "Идентификатор пользователя")
+    Long userId;
+
+    @Schema(description = "Новый статус пользователя")
+    Status status;
+
+}
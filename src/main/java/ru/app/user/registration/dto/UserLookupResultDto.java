@@ -0,0 +1,19 @@
+package ru.app.user.registration.dto;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserLookupResultDto {
+
+    Long userId;
+    boolean found;
+    UserDto user;
+
+}
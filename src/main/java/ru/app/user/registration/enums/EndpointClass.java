@@ -0,0 +1,17 @@
+package ru.app.user.registration.enums;
+
+/**
+ * Класс эндпоинта для ограничения одновременных запросов: у каждого класса свой лимит,
+ * поэтому всплеск записей или тяжелой статистики не забирает ресурсы у чтения профилей.
+ */
+public enum EndpointClass {
+
+    READ,
+    WRITE,
+    STATISTICS,
+    /**
+     * Длинные передачи: импорт, выгрузка и потоковая статистика.
+     */
+    BULK
+
+}
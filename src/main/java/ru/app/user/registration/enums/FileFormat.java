@@ -0,0 +1,29 @@
+package ru.app.user.registration.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum FileFormat {
+
+    CSV(".csv"),
+    NDJSON(".ndjson");
+
+    private final String extension;
+
+    /**
+     * Формат по расширению файла или null, если расширение не распознано.
+     */
+    public static FileFormat byFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+        if (lower.endsWith(CSV.extension)) {
+            return CSV;
+        }
+        if (lower.endsWith(NDJSON.extension) || lower.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        return null;
+    }
+
+}
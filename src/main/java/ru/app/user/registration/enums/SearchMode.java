@@ -0,0 +1,15 @@
+package ru.app.user.registration.enums;
+
+public enum SearchMode {
+
+    /**
+     * Имя или почта начинаются с запроса.
+     */
+    PREFIX,
+
+    /**
+     * Запрос похож на часть имени или почты с точностью до опечаток (триграммы pg_trgm).
+     */
+    FUZZY
+
+}
@@ -1,12 +1,17 @@
 package ru.app.user.registration.exceptions;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
 import org.springframework.boot.web.servlet.error.DefaultErrorAttributes;
 import org.springframework.boot.web.servlet.error.ErrorAttributes;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -14,15 +19,19 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
 import java.util.Map;
 
 @Slf4j
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @RestControllerAdvice
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class GlobalException {
 
+    private static final String REJECTIONS = "registration.rejections";
+
+    private final MeterRegistry meterRegistry;
+
     @Bean
     public ErrorAttributes errorAttributes() {
         return new DefaultErrorAttributes() {
@@ -34,14 +43,25 @@ public class GlobalException {
         };
     }
 
+    @ExceptionHandler(OverloadException.class)
+    public ResponseEntity<ErrorMessage> handleOverload(OverloadException ex) {
+        countRejection(ex, ex.getHttpStatus());
+        return ResponseEntity.status(ex.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(new ErrorMessage(ex.getMessage()));
+    }
+
     @ExceptionHandler(RegistrationException.class)
-    public void handleCustomException(HttpServletResponse response, RegistrationException ex) throws IOException {
-        response.sendError(ex.getHttpStatus().value(), ex.getMessage());
+    public ResponseEntity<ErrorMessage> handleCustomException(RegistrationException ex) {
+        countRejection(ex, ex.getHttpStatus());
+        return ResponseEntity.status(ex.getHttpStatus())
+                .body(new ErrorMessage(ex.getMessage()));
     }
 
     @ExceptionHandler(MissingServletRequestParameterException.class)
     public ResponseEntity<ErrorMessage> handleMissingParams(MissingServletRequestParameterException ex) {
         String parameter = ex.getParameterName();
+        countRejection(ex, HttpStatus.NOT_FOUND);
 
         log.error( "{} parameter is missing", parameter);
         return ResponseEntity.status(404)
@@ -51,10 +71,16 @@ public class GlobalException {
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<ErrorMessage> handleMismatchParams(MethodArgumentTypeMismatchException ex) {
         String parameter = ex.getParameter().getParameterName();
+        countRejection(ex, HttpStatus.NOT_FOUND);
 
         log.error("wrong data for parameter: {}", parameter);
         return ResponseEntity.status(404)
                 .body(new ErrorMessage(String.format("Неверные данные для параметра %s", parameter)));
     }
 
+    private void countRejection(Exception ex, HttpStatus status) {
+        meterRegistry.counter(REJECTIONS, "exception", ex.getClass().getSimpleName(), "status", status.name())
+                .increment();
+    }
+
 }
@@ -0,0 +1,19 @@
+package ru.app.user.registration.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Запрос отклонен ограничителем нагрузки; клиенту отдается 503 с Retry-After.
+ */
+@Getter
+public class OverloadException extends RegistrationException {
+
+    private final long retryAfterSeconds;
+
+    public OverloadException(String message, long retryAfterSeconds) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,56 @@
+package ru.app.user.registration.exceptions;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * Обработчик ошибок реактивного режима, ответы совпадают с GlobalException.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveGlobalException {
+
+    private static final String REJECTIONS = "registration.rejections";
+
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(OverloadException.class)
+    public ResponseEntity<ErrorMessage> handleOverload(OverloadException ex) {
+        countRejection(ex, ex.getHttpStatus());
+        return ResponseEntity.status(ex.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(new ErrorMessage(ex.getMessage()));
+    }
+
+    @ExceptionHandler(RegistrationException.class)
+    public ResponseEntity<ErrorMessage> handleCustomException(RegistrationException ex) {
+        countRejection(ex, ex.getHttpStatus());
+        return ResponseEntity.status(ex.getHttpStatus())
+                .body(new ErrorMessage(ex.getMessage()));
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<ErrorMessage> handleInputException(ServerWebInputException ex) {
+        countRejection(ex, HttpStatus.NOT_FOUND);
+        String parameter = ex.getMethodParameter() == null ? null : ex.getMethodParameter().getParameterName();
+        return ResponseEntity.status(404)
+                .body(new ErrorMessage(String.format("Неверные данные для параметра %s", parameter)));
+    }
+
+    private void countRejection(Exception ex, HttpStatus status) {
+        meterRegistry.counter(REJECTIONS, "exception", ex.getClass().getSimpleName(), "status", status.name())
+                .increment();
+    }
+
+}
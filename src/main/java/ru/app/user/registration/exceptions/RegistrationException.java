@@ -1,14 +1,22 @@
 package ru.app.user.registration.exceptions;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.http.HttpStatus;
 
+/**
+ * Ошибка бизнес-проверки, которая отдается клиенту как есть. Стек вызовов не заполняется:
+ * он не нужен для ответа и был основной стоимостью отказа.
+ */
 @Getter
-@AllArgsConstructor
 public class RegistrationException extends RuntimeException {
 
     private final String message;
     private final HttpStatus httpStatus;
 
+    public RegistrationException(String message, HttpStatus httpStatus) {
+        super(message, null, false, false);
+        this.message = message;
+        this.httpStatus = httpStatus;
+    }
+
 }
@@ -0,0 +1,50 @@
+package ru.app.user.registration.mappers;
+
+import org.springframework.stereotype.Component;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+
+/**
+ * Прямое копирование полей между User и UserDto. Повторяет результат ObjectMapper.convertValue,
+ * который использовался раньше, без промежуточного буфера токенов и рефлексии.
+ */
+@Component
+public class UserMapper {
+
+    public UserDto toUserDto(User user) {
+        UserDto userDto = new UserDto();
+        userDto.setName(user.getName());
+        userDto.setBornDate(user.getBornDate());
+        userDto.setAge(user.getAge());
+        userDto.setEmail(user.getEmail());
+        userDto.setCurrentStatus(user.getNewStatus() == null ? null : user.getNewStatus().name());
+        return userDto;
+    }
+
+    /**
+     * Статусы и id не переносятся: новый пользователь всегда создается со статусом по умолчанию.
+     * Возраст не переносится: он вычисляется из даты рождения, которую выставляет сервис после проверки.
+     */
+    public User toUser(UserDto userDto) {
+        User user = new User();
+        user.setName(userDto.getName());
+        user.setBornDate(userDto.getBornDate());
+        user.setEmail(userDto.getEmail());
+        return user;
+    }
+
+    /**
+     * Копия DTO с другим текущим статусом; исходный объект может лежать в кэше и не меняется.
+     */
+    public UserDto withCurrentStatus(UserDto userDto, Status status) {
+        UserDto copy = new UserDto();
+        copy.setName(userDto.getName());
+        copy.setBornDate(userDto.getBornDate());
+        copy.setAge(userDto.getAge());
+        copy.setEmail(userDto.getEmail());
+        copy.setCurrentStatus(status.name());
+        return copy;
+    }
+
+}
@@ -0,0 +1,40 @@
+package ru.app.user.registration.services;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.enums.Status;
+
+import java.util.List;
+
+public interface ReactiveRegistrationService {
+
+    Mono<UserDto> createUser(UserDto userDto);
+
+    Mono<List<UserBatchResultDto>> createUsers(List<UserDto> userDtos);
+
+    Mono<UserDto> getUser(Long id);
+
+    Mono<List<UserLookupResultDto>> getUsers(List<Long> ids);
+
+    Mono<StatusInfoDto> changeStatus(Long id, Status status);
+
+    Mono<List<StatusInfoDto>> changeStatuses(List<StatusChangeDto> changes);
+
+    Mono<StatisticsDto> getStatistics(String status, Boolean isAdult, Integer limit, Long statusAfter, Long ageAfter);
+
+    Status validateAndGetStatus(String status);
+
+    Flux<UserDto> streamUsersByStatus(Status status);
+
+    Flux<UserDto> streamUsersByAge(boolean isAdult);
+
+    Mono<SearchResultDto> searchUsers(String query, SearchMode mode, Integer limit, String cursor);
+}
@@ -1,16 +1,26 @@
 package ru.app.user.registration.services;
 
+import ru.app.user.registration.dto.SearchResultDto;
 import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
 import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
 import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.SearchMode;
 import ru.app.user.registration.enums.Status;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.util.List;
 
 public interface RegistrationService {
 
     UserDto createUser(UserDto userDto);
 
+    List<UserBatchResultDto> createUsers(List<UserDto> userDtos);
+
     void validateEmail(String email);
 
     LocalDate validateAndGetDate(String date);
@@ -19,7 +29,21 @@ public interface RegistrationService {
 
     UserDto getUser(Long id);
 
+    List<UserLookupResultDto> getUsers(List<Long> ids);
+
     StatusInfoDto changeStatus(Long id, Status status);
 
+    List<StatusInfoDto> changeStatuses(List<StatusChangeDto> changes);
+
     StatisticsDto getStatistics(String status, Boolean isAdult);
+
+    StatisticsDto getStatistics(String status, Boolean isAdult, Integer limit, Long statusAfter, Long ageAfter);
+
+    Status validateAndGetStatus(String status);
+
+    void streamUsersByStatus(Status status, OutputStream out) throws IOException;
+
+    void streamUsersByAge(boolean isAdult, OutputStream out) throws IOException;
+
+    SearchResultDto searchUsers(String query, SearchMode mode, Integer limit, String cursor);
 }
@@ -0,0 +1,115 @@
+package ru.app.user.registration.services.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.CacheStatsDto;
+import ru.app.user.registration.dto.UserDto;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру кэш профилей для getUser. Вытеснение Caffeine (W-TinyLFU),
+ * при registration.cache.enabled=false все вызовы идут мимо кэша.
+ * <p>
+ * Профиль, прочитанный из БД, кладется в кэш, только если с начала чтения запись не инвалидировали:
+ * иначе чтение, начатое до смены статуса, вернуло бы в кэш старый статус до вытеснения.
+ */
+@Component
+public class UserCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Cache<Long, UserDto> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public UserCache(RegistrationProperties properties) {
+
+        RegistrationProperties.Cache settings = properties.getCache();
+        if (!settings.isEnabled()) {
+            cache = null;
+            return;
+        }
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .recordStats();
+        if (settings.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(settings.getExpireAfterWrite());
+        }
+        cache = builder.build();
+    }
+
+    /**
+     * Промах загружается вне блокировки кэша: параллельные промахи по одному id читают БД каждый сам.
+     */
+    public UserDto get(Long id, Function<Long, UserDto> loader) {
+
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        UserDto cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = generation(id);
+        UserDto loaded = loader.apply(id);
+        putIfAbsent(id, loaded, generation);
+        return loaded;
+    }
+
+    public UserDto getIfPresent(Long id) {
+        return cache == null ? null : cache.getIfPresent(id);
+    }
+
+    /**
+     * Поколение записи id, растет при каждом {@link #invalidate}. Берется до чтения профиля из БД.
+     */
+    public long generation(Long id) {
+        return id == null ? 0 : generations.get(stripe(id));
+    }
+
+    /**
+     * Кладет профиль, если записи нет и ее не инвалидировали с момента {@link #generation}. Проверка поколения
+     * идет под блокировкой записи, а invalidate увеличивает поколение до удаления, поэтому профиль, прочитанный
+     * до изменения, либо не попадет в кэш, либо будет из него удален.
+     */
+    public void putIfAbsent(Long id, UserDto userDto, long generation) {
+        if (cache != null && id != null) {
+            cache.asMap().compute(id, (key, present) ->
+                    present != null || generations.get(stripe(key)) != generation ? present : userDto);
+        }
+    }
+
+    public void invalidate(Long id) {
+        if (cache != null && id != null) {
+            generations.incrementAndGet(stripe(id));
+            cache.invalidate(id);
+        }
+    }
+
+    private static int stripe(Long id) {
+        return (int) (id ^ (id >>> 32)) & (GENERATION_STRIPES - 1);
+    }
+
+    public CacheStatsDto getStats() {
+
+        CacheStatsDto statsDto = new CacheStatsDto();
+        statsDto.setEnabled(cache != null);
+        if (cache == null) {
+            return statsDto;
+        }
+
+        CacheStats stats = cache.stats();
+        statsDto.setHitCount(stats.hitCount());
+        statsDto.setMissCount(stats.missCount());
+        statsDto.setEvictionCount(stats.evictionCount());
+        statsDto.setHitRate(stats.hitRate());
+        statsDto.setEstimatedSize(cache.estimatedSize());
+        return statsDto;
+    }
+
+}
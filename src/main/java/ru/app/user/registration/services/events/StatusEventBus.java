@@ -0,0 +1,183 @@
+package ru.app.user.registration.services.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.exceptions.OverloadException;
+import ru.app.user.registration.exceptions.RegistrationException;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Рассылка смен статуса подписчикам. {@link #publish} кладет событие в кольцевой буфер без блокировок и сразу
+ * возвращается, поэтому запись статуса не ждет ни рассылки, ни клиентов. Отдельный поток разбирает буфер
+ * и раскладывает события по ограниченным очередям подписчиков, найденным по индексу userId.
+ * Счетчики: registration.events.published, registration.events.dropped (reason=lapped - рассылка отстала
+ * на весь буфер, reason=overflow - переполнена очередь подписчика), registration.events.coalesced;
+ * число подписчиков - registration.events.subscribers.
+ */
+@Slf4j
+@Component
+public class StatusEventBus {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RegistrationProperties.Events settings;
+    private final StatusEventRing ring;
+
+    private final Set<StatusSubscription> unfiltered = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, Set<StatusSubscription>> byUserId = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter coalesced;
+
+    private final Thread dispatcher;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    public StatusEventBus(RegistrationProperties properties, MeterRegistry meterRegistry) {
+
+        settings = properties.getEvents();
+        ring = new StatusEventRing(settings.getRingSize());
+
+        published = meterRegistry.counter("registration.events.published");
+        dropped = meterRegistry.counter("registration.events.dropped", "reason", "overflow");
+        coalesced = meterRegistry.counter("registration.events.coalesced");
+        FunctionCounter.builder("registration.events.dropped", ring, StatusEventRing::lost)
+                .tag("reason", "lapped")
+                .register(meterRegistry);
+        Gauge.builder("registration.events.subscribers", subscribers, AtomicInteger::get)
+                .register(meterRegistry);
+
+        dispatcher = new Thread(this::dispatch, "status-events-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Публикует смену статуса. Без подписчиков ничего не делает.
+     */
+    public void publish(StatusInfoDto event) {
+
+        if (subscribers.get() == 0) {
+            return;
+        }
+        ring.offer(event);
+        published.increment();
+        if (sleeping) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Поток смен статуса указанных пользователей, пустой или null userIds - всех пользователей.
+     * Подписка регистрируется при подписке на поток и снимается при его отмене.
+     */
+    public Flux<StatusInfoDto> subscribe(Collection<Long> userIds) {
+
+        Set<Long> filter = userIds == null ? Set.of() : Set.copyOf(userIds);
+        if (filter.size() > settings.getMaxFilterSize()) {
+            String errMessage = String.format("Превышено максимальное число пользователей в подписке %s. Передано: %s",
+                    settings.getMaxFilterSize(), filter.size());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        if (subscribers.get() >= settings.getMaxSubscribers()) {
+            throw new OverloadException("Превышено число подписчиков, повторите подписку позже",
+                    Math.max(1, settings.getHeartbeatInterval().getSeconds()));
+        }
+
+        return Flux.create(sink -> {
+            StatusSubscription subscription = new StatusSubscription(filter, sink,
+                    settings.getSubscriberQueueSize(), settings.isCoalesce(), dropped, coalesced);
+            register(subscription);
+            sink.onRequest(n -> subscription.drain());
+            sink.onDispose(() -> unregister(subscription));
+        });
+    }
+
+    public int getSubscribers() {
+        return subscribers.get();
+    }
+
+    private void register(StatusSubscription subscription) {
+
+        if (subscription.getUserIds().isEmpty()) {
+            unfiltered.add(subscription);
+        } else {
+            subscription.getUserIds().forEach(userId ->
+                    byUserId.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscription));
+        }
+        subscribers.incrementAndGet();
+    }
+
+    private void unregister(StatusSubscription subscription) {
+
+        if (subscription.getUserIds().isEmpty()) {
+            unfiltered.remove(subscription);
+        } else {
+            subscription.getUserIds().forEach(userId -> byUserId.computeIfPresent(userId, (id, set) -> {
+                set.remove(subscription);
+                return set.isEmpty() ? null : set;
+            }));
+        }
+        subscribers.decrementAndGet();
+    }
+
+    private void dispatch() {
+
+        while (running) {
+            StatusInfoDto event = ring.poll();
+            if (event == null && !ring.isEmpty()) {
+                // номер занят, но писатель еще не заполнил ячейку
+                Thread.yield();
+                continue;
+            }
+            if (event == null) {
+                sleeping = true;
+                if (ring.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            try {
+                deliver(event, unfiltered);
+                Set<StatusSubscription> filtered = byUserId.get(event.getUserId());
+                if (filtered != null) {
+                    deliver(event, filtered);
+                }
+            } catch (RuntimeException e) {
+                log.error("Не удалось разослать смену статуса пользователя {}", event.getUserId(), e);
+            }
+        }
+    }
+
+    private static void deliver(StatusInfoDto event, Set<StatusSubscription> subscriptions) {
+        for (StatusSubscription subscription : subscriptions) {
+            subscription.offer(event);
+            subscription.drain();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+    }
+
+}
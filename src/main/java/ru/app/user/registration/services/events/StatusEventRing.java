@@ -0,0 +1,89 @@
+package ru.app.user.registration.services.events;
+
+import ru.app.user.registration.dto.StatusInfoDto;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кольцевой буфер без блокировок: много писателей, один читатель.
+ * Писатель занимает номер инкрементом головы и кладет событие в ячейку номер & mask, никогда не ожидая
+ * читателя. Если читатель отстал на весь буфер, ячейка уже перезаписана более новым событием:
+ * читатель пропускает потерянный участок и учитывает его в {@link #lost()}.
+ */
+final class StatusEventRing {
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    /**
+     * Номер следующего события для читателя; меняется только потоком читателя.
+     */
+    private long next;
+
+    StatusEventRing(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Размер кольцевого буфера должен быть степенью двойки: " + size);
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    void offer(StatusInfoDto event) {
+
+        long sequence = head.getAndIncrement();
+        int index = (int) (sequence & mask);
+        Slot slot = new Slot(sequence, event);
+        Slot current = slots.get(index);
+        // писатель, занявший номер кругом раньше, не должен затереть более новое событие
+        while ((current == null || current.sequence < sequence) && !slots.compareAndSet(index, current, slot)) {
+            current = slots.get(index);
+        }
+    }
+
+    /**
+     * Следующее событие или null, если новых нет или писатель еще не заполнил занятую ячейку.
+     */
+    StatusInfoDto poll() {
+
+        while (true) {
+            if (next >= head.get()) {
+                return null;
+            }
+            Slot slot = slots.get((int) (next & mask));
+            if (slot == null || slot.sequence < next) {
+                return null;
+            }
+            if (slot.sequence == next) {
+                next++;
+                return slot.event;
+            }
+            long resumeFrom = Math.max(next + 1, head.get() - slots.length());
+            lost.addAndGet(resumeFrom - next);
+            next = resumeFrom;
+        }
+    }
+
+    boolean isEmpty() {
+        return next >= head.get();
+    }
+
+    long lost() {
+        return lost.get();
+    }
+
+    private static final class Slot {
+
+        private final long sequence;
+        private final StatusInfoDto event;
+
+        private Slot(long sequence, StatusInfoDto event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+
+    }
+
+}
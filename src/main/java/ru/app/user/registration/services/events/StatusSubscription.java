@@ -0,0 +1,115 @@
+package ru.app.user.registration.services.events;
+
+import io.micrometer.core.instrument.Counter;
+import reactor.core.publisher.FluxSink;
+import ru.app.user.registration.dto.StatusInfoDto;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченная очередь событий одного подписчика. Пополняется потоком рассылки, а отдается в поток
+ * подписчика только в пределах запрошенного им количества: медленный клиент копит события здесь,
+ * а не в буферах Reactor. При схлопывании в очереди стоят id пользователей, а последнее событие по
+ * каждому хранится в pending; иначе в очереди сами события. В полную очередь новое событие не попадает.
+ */
+final class StatusSubscription {
+
+    private final Set<Long> userIds;
+    private final FluxSink<StatusInfoDto> sink;
+    private final boolean coalesce;
+
+    private final Queue<StatusInfoDto> events;
+    private final Queue<Long> order;
+    private final ConcurrentHashMap<Long, StatusInfoDto> pending;
+
+    private final Counter dropped;
+    private final Counter coalesced;
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    StatusSubscription(Set<Long> userIds, FluxSink<StatusInfoDto> sink, int capacity, boolean coalesce,
+                       Counter dropped, Counter coalesced) {
+        this.userIds = userIds;
+        this.sink = sink;
+        this.coalesce = coalesce;
+        this.dropped = dropped;
+        this.coalesced = coalesced;
+        this.events = coalesce ? null : new ArrayBlockingQueue<>(capacity);
+        this.order = coalesce ? new ArrayBlockingQueue<>(capacity) : null;
+        this.pending = coalesce ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Пустое множество - подписка на всех пользователей.
+     */
+    Set<Long> getUserIds() {
+        return userIds;
+    }
+
+    /**
+     * Вызывается только потоком рассылки.
+     */
+    void offer(StatusInfoDto event) {
+
+        if (!coalesce) {
+            if (!events.offer(event)) {
+                dropped.increment();
+            }
+            return;
+        }
+
+        Long userId = event.getUserId();
+        boolean[] added = new boolean[1];
+        pending.compute(userId, (id, queued) -> {
+            if (queued == null) {
+                added[0] = true;
+                return event;
+            }
+            coalesced.increment();
+            return StatusInfoDto.builder()
+                    .userId(id)
+                    .oldStatus(queued.getOldStatus())
+                    .newStatus(event.getNewStatus())
+                    .build();
+        });
+        if (added[0] && !order.offer(userId)) {
+            pending.remove(userId);
+            dropped.increment();
+        }
+    }
+
+    private StatusInfoDto poll() {
+        if (!coalesce) {
+            return events.poll();
+        }
+        Long userId = order.poll();
+        return userId == null ? null : pending.remove(userId);
+    }
+
+    /**
+     * Отдает накопленные события, пока подписчик их запрашивает. Вызывается и потоком рассылки, и потоком
+     * запроса подписчика; одновременно отдает только один из них, второй лишь отмечает, что нужен повтор.
+     */
+    void drain() {
+
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!sink.isCancelled() && sink.requestedFromDownstream() > 0) {
+                StatusInfoDto event = poll();
+                if (event == null) {
+                    break;
+                }
+                sink.next(event);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+}
@@ -0,0 +1,133 @@
+package ru.app.user.registration.services.exports;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.FileFormat;
+import ru.app.user.registration.enums.Status;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Полная выгрузка users в порядке id через однонаправленный курсор: значения колонок пишутся в поток
+ * напрямую, без сущностей и UserDto. Последний выгруженный id служит водяным знаком для следующей
+ * инкрементальной выгрузки. CSV выгрузки принимается импортом: колонки name, email и bornDate совпадают.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserExporter {
+
+    private static final String CSV_HEADER = "id,name,bornDate,birthDate,email,newStatus,oldStatus\n";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final ObjectMapper mapper;
+    private final RegistrationProperties properties;
+
+    @Transactional(readOnly = true)
+    public void exportUsers(FileFormat format, long afterId, OutputStream out) throws IOException {
+
+        int fetchSize = properties.getExport().getFetchSize();
+        try {
+            if (format == FileFormat.CSV) {
+                exportCsv(afterId, fetchSize, out);
+            } else {
+                exportNdjson(afterId, fetchSize, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportCsv(long afterId, int fetchSize, OutputStream out) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(CSV_HEADER);
+        userJdbcRepo.exportAfter(afterId, fetchSize, writing(rs -> {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writeQuoted(writer, rs.getString(2));
+            writer.write(',');
+            writeQuoted(writer, rs.getString(3));
+            writer.write(',');
+            String birthDate = rs.getString(4);
+            if (birthDate != null) {
+                writer.write(birthDate);
+            }
+            writer.write(',');
+            writeQuoted(writer, rs.getString(5));
+            writer.write(',');
+            writer.write(STATUSES[rs.getInt(6)].name());
+            writer.write(',');
+            writer.write(STATUSES[rs.getInt(7)].name());
+            writer.write('\n');
+        }));
+        writer.flush();
+    }
+
+    private void exportNdjson(long afterId, int fetchSize, OutputStream out) throws IOException {
+
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            userJdbcRepo.exportAfter(afterId, fetchSize, writing(rs -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", rs.getLong(1));
+                generator.writeStringField("name", rs.getString(2));
+                generator.writeStringField("bornDate", rs.getString(3));
+                generator.writeStringField("birthDate", rs.getString(4));
+                generator.writeStringField("email", rs.getString(5));
+                generator.writeStringField("newStatus", STATUSES[rs.getInt(6)].name());
+                generator.writeStringField("oldStatus", STATUSES[rs.getInt(7)].name());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }));
+        }
+    }
+
+    /**
+     * Пустое поле без кавычек - NULL, пустая строка пишется как "".
+     */
+    private static void writeQuoted(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write('"');
+        writer.write(value.indexOf('"') < 0 ? value : value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static RowCallbackHandler writing(RowWriter rowWriter) {
+        return rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+    }
+
+}
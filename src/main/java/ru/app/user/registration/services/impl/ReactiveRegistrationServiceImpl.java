@@ -0,0 +1,267 @@
+package ru.app.user.registration.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.db.repositories.UserReactiveRepo;
+import ru.app.user.registration.db.routing.RecentWrites;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.ReactiveRegistrationService;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.presence.PresenceEntry;
+import ru.app.user.registration.services.presence.PresenceTable;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Реализация для реактивного режима: одиночные операции и статистика идут через R2DBC без блокировок.
+ * Пакетные операции опираются на JDBC-пакеты RegistrationService и выполняются на boundedElastic.
+ * Записи отмечаются в RecentWrites: делегированные RegistrationService чтения читают их с основной БД.
+ * При включенной таблице присутствия (registration.presence) смена статуса тоже идет через RegistrationService,
+ * а getUser показывает статус из таблицы, как и в servlet-режиме.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRegistrationServiceImpl implements ReactiveRegistrationService {
+
+    private final UserReactiveRepo userReactiveRepo;
+    private final RegistrationService registrationService;
+    private final UserMapper userMapper;
+    private final RegistrationProperties properties;
+    private final UserStatisticsEngine statisticsEngine;
+    private final UserCache userCache;
+    private final RegistrationValidator registrationValidator;
+    private final StatusEventBus statusEventBus;
+    private final UserSearcher userSearcher;
+    private final PresenceTable presenceTable;
+    private final RecentWrites recentWrites;
+    private final UserSketches userSketches;
+
+    @Override
+    public Mono<UserDto> createUser(UserDto userDto) {
+
+        return Mono.defer(() -> {
+            String email = userDto.getEmail();
+            registrationValidator.validateEmail(email).orElseThrow();
+            LocalDate birthDate = registrationValidator.validateBirthDate(userDto.getBornDate(), LocalDate.now())
+                    .orElseThrow();
+
+            User user = userMapper.toUser(userDto);
+            user.setBirthDate(birthDate);
+
+            return userReactiveRepo.existsByEmail(email)
+                    .flatMap(exists -> {
+                        if (exists) {
+                            String errMessage = String.format("Пользователь с почтой %s уже существует", email);
+                            return Mono.error(new RegistrationException(errMessage, HttpStatus.CONFLICT));
+                        }
+                        return userReactiveRepo.insert(user);
+                    })
+                    .map(save -> {
+                        recentWrites.record(save.getId());
+                        statisticsEngine.onUserCreated(save.getId(), save.getNewStatus(), save.getAge());
+                        userSearcher.onUserCreated(save);
+                        userSketches.onUserCreated(save);
+                        long generation = userCache.generation(save.getId());
+                        UserDto savedDto = userMapper.toUserDto(save);
+                        userCache.putIfAbsent(save.getId(), savedDto, generation);
+                        return savedDto;
+                    });
+        });
+    }
+
+    @Override
+    public Mono<List<UserBatchResultDto>> createUsers(List<UserDto> userDtos) {
+        return Mono.fromCallable(() -> registrationService.createUsers(userDtos))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<UserDto> getUser(Long id) {
+
+        UserDto cached = userCache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(withPresence(id, cached));
+        }
+
+        return Mono.defer(() -> {
+            long generation = userCache.generation(id);
+            return userReactiveRepo.findById(id)
+                    .switchIfEmpty(Mono.error(() -> userNotFound(id)))
+                    .map(user -> {
+                        UserDto userDto = userMapper.toUserDto(user);
+                        userCache.putIfAbsent(id, userDto, generation);
+                        return withPresence(id, userDto);
+                    });
+        });
+    }
+
+    private UserDto withPresence(Long id, UserDto userDto) {
+        PresenceEntry presence = presenceTable.isEnabled() ? presenceTable.get(id) : null;
+        return presence == null ? userDto : userMapper.withCurrentStatus(userDto, presence.getNewStatus());
+    }
+
+    @Override
+    public Mono<StatusInfoDto> changeStatus(Long id, Status status) {
+
+        if (presenceTable.isEnabled()) {
+            return Mono.fromCallable(() -> registrationService.changeStatus(id, status))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+
+        return userReactiveRepo.shiftStatus(id, status.ordinal())
+                .switchIfEmpty(Mono.error(() -> userNotFound(id)))
+                .map(user -> {
+                    recentWrites.record(id);
+                    userCache.invalidate(id);
+                    statisticsEngine.onStatusChanged(id, user.getOldStatus(), user.getNewStatus(), user.getAge());
+                    StatusInfoDto statusInfo = StatusInfoDto.builder()
+                            .userId(id)
+                            .newStatus(user.getNewStatus())
+                            .oldStatus(user.getOldStatus())
+                            .build();
+                    if (user.getNewStatus() != user.getOldStatus()) {
+                        statusEventBus.publish(statusInfo);
+                    }
+                    return statusInfo;
+                });
+    }
+
+    @Override
+    public Mono<List<UserLookupResultDto>> getUsers(List<Long> ids) {
+        return Mono.fromCallable(() -> registrationService.getUsers(ids))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<SearchResultDto> searchUsers(String query, SearchMode mode, Integer limit, String cursor) {
+        return Mono.fromCallable(() -> registrationService.searchUsers(query, mode, limit, cursor))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<List<StatusInfoDto>> changeStatuses(List<StatusChangeDto> changes) {
+        return Mono.fromCallable(() -> registrationService.changeStatuses(changes))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static RegistrationException userNotFound(Long id) {
+        return new RegistrationException(String.format("Пользователь с id %s не найден", id), HttpStatus.NOT_FOUND);
+    }
+
+    @Override
+    public Mono<StatisticsDto> getStatistics(String status, Boolean isAdult, Integer limit, Long statusAfter, Long ageAfter) {
+
+        return Mono.defer(() -> {
+            int pageSize = validateAndGetPageSize(limit);
+            Status incomingStatus = status == null || status.isEmpty() ? null : validateAndGetStatus(status);
+            LocalDate adultCutoff = UserStatisticsEngine.adultCutoff();
+
+            Mono<List<User>> usersByStatus = incomingStatus == null ? Mono.just(List.of())
+                    : userReactiveRepo.findByNewStatus(incomingStatus, statusAfter == null ? 0L : statusAfter, pageSize + 1)
+                    .collectList();
+            Mono<List<User>> usersByAge = isAdult == null ? Mono.just(List.of())
+                    : userReactiveRepo.findByAge(isAdult, adultCutoff, ageAfter == null ? 0L : ageAfter, pageSize + 1)
+                    .collectList();
+
+            Mono<StatisticsDto> pages = Mono.zip(usersByStatus, usersByAge)
+                    .map(lists -> {
+                        StatisticsDto statisticsDto = new StatisticsDto();
+                        statisticsDto.setUsersByStatus(toUserDtos(lists.getT1(), pageSize));
+                        statisticsDto.setUsersByStatusNextCursor(nextCursor(lists.getT1(), pageSize));
+                        statisticsDto.setUsersByAge(toUserDtos(lists.getT2(), pageSize));
+                        statisticsDto.setUsersByAgeNextCursor(nextCursor(lists.getT2(), pageSize));
+                        return statisticsDto;
+                    });
+
+            if (properties.getStatistics().getSummarySource() == RegistrationProperties.SummarySource.ENGINE) {
+                return pages.map(statisticsDto -> {
+                    statisticsDto.setTotalUsersCount(statisticsEngine.totalCount());
+                    statisticsDto.setAverageAge(statisticsEngine.averageAge(incomingStatus, isAdult));
+                    return statisticsDto;
+                });
+            }
+
+            Mono<UserStatisticsSummary> summary = userReactiveRepo.summarize(
+                    incomingStatus != null, incomingStatus != null ? incomingStatus.ordinal() : -1,
+                    Boolean.TRUE.equals(isAdult), Boolean.FALSE.equals(isAdult), adultCutoff);
+            return Mono.zip(pages, summary)
+                    .map(result -> {
+                        StatisticsDto statisticsDto = result.getT1();
+                        statisticsDto.setTotalUsersCount(result.getT2().getTotal());
+                        Double averageAge = result.getT2().getAverageAge();
+                        statisticsDto.setAverageAge(averageAge == null ? 0 : averageAge.intValue());
+                        return statisticsDto;
+                    });
+        });
+    }
+
+    private List<UserDto> toUserDtos(List<User> page, int pageSize) {
+        return page.stream()
+                .limit(pageSize)
+                .map(userMapper::toUserDto)
+                .collect(Collectors.toList());
+    }
+
+    private static Long nextCursor(List<User> page, int pageSize) {
+        return page.size() > pageSize ? page.get(pageSize - 1).getId() : null;
+    }
+
+    private int validateAndGetPageSize(Integer limit) {
+
+        RegistrationProperties.Statistics statistics = properties.getStatistics();
+        if (limit == null) {
+            return statistics.getDefaultPageSize();
+        }
+        if (limit < 1 || limit > statistics.getMaxPageSize()) {
+            String errMessage = String.format("Параметр limit должен быть от 1 до %s", statistics.getMaxPageSize());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        return limit;
+    }
+
+    @Override
+    public Status validateAndGetStatus(String status) {
+        return registrationService.validateAndGetStatus(status);
+    }
+
+    @Override
+    public Flux<UserDto> streamUsersByStatus(Status status) {
+        return userReactiveRepo.streamByStatus(status, properties.getStatistics().getStreamFetchSize())
+                .map(userMapper::toUserDto);
+    }
+
+    @Override
+    public Flux<UserDto> streamUsersByAge(boolean isAdult) {
+        return userReactiveRepo.streamByAge(isAdult, UserStatisticsEngine.adultCutoff(),
+                        properties.getStatistics().getStreamFetchSize())
+                .map(userMapper::toUserDto);
+    }
+
+}
@@ -1,29 +1,62 @@
 package ru.app.user.registration.services.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.validator.routines.EmailValidator;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.app.config.RegistrationProperties;
 import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.StatusTransition;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
 import ru.app.user.registration.db.repositories.UserRepo;
+import ru.app.user.registration.db.routing.RecentWrites;
+import ru.app.user.registration.db.routing.ReplicaRouting;
+import ru.app.user.registration.dto.SearchResultDto;
 import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
 import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
 import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.enums.SearchMode;
 import ru.app.user.registration.enums.Status;
 import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
 import ru.app.user.registration.services.RegistrationService;
-
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.lookup.UserLookup;
+import ru.app.user.registration.services.presence.PresenceEntry;
+import ru.app.user.registration.services.presence.PresenceTable;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+import ru.app.user.registration.services.validation.ValidationResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.Period;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -32,7 +65,19 @@ import java.util.stream.Collectors;
 public class RegistrationServiceImpl implements RegistrationService {
 
     private final UserRepo userRepo;
+    private final UserJdbcRepo userJdbcRepo;
     private final ObjectMapper mapper;
+    private final UserMapper userMapper;
+    private final RegistrationProperties properties;
+    private final UserStatisticsEngine statisticsEngine;
+    private final UserCache userCache;
+    private final PresenceTable presenceTable;
+    private final RegistrationValidator registrationValidator;
+    private final RecentWrites recentWrites;
+    private final StatusEventBus statusEventBus;
+    private final UserSearcher userSearcher;
+    private final UserLookup userLookup;
+    private final UserSketches userSketches;
 
     @Override
     public UserDto createUser(UserDto userDto) {
@@ -40,158 +85,499 @@ public class RegistrationServiceImpl implements RegistrationService {
         String email = userDto.getEmail();
         validateEmail(email);
 
-        User userByEmail = userRepo.findByEmail(email);
+        User userByEmail = ReplicaRouting.onPrimary(() -> userRepo.findByEmail(email));
         if (userByEmail != null) {
             String errMessage = String.format("Пользователь с почтой %s уже существует", email);
             throw new RegistrationException(errMessage, HttpStatus.CONFLICT);
         }
 
-        int age = getAge(userDto.getBornDate());
-
+        LocalDate birthDate = validateAndGetBirthDate(userDto.getBornDate());
 
-        User user = mapper.convertValue(userDto, User.class);
-        user.setAge(age);
+        User user = userMapper.toUser(userDto);
+        user.setBirthDate(birthDate);
 
         User save = userRepo.save(user);
-        return convertToUserDto(save);
+        long generation = userCache.generation(save.getId());
+        recentWrites.record(save.getId());
+        statisticsEngine.onUserCreated(save.getId(), save.getNewStatus(), save.getAge());
+        userSearcher.onUserCreated(save);
+        userSketches.onUserCreated(save);
+
+        UserDto savedDto = convertToUserDto(save);
+        userCache.putIfAbsent(save.getId(), savedDto, generation);
+        return savedDto;
     }
 
     @Override
-    public void validateEmail(String email) {
+    @Transactional
+    public List<UserBatchResultDto> createUsers(List<UserDto> userDtos) {
+
+        RegistrationProperties.Batch batch = properties.getBatch();
+        if (userDtos.size() > batch.getMaxSize()) {
+            String errMessage = String.format("Превышен максимальный размер пакета %s. Передано пользователей: %s",
+                    batch.getMaxSize(), userDtos.size());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
 
-        if (!EmailValidator.getInstance().isValid(email)) {
-            String errMessage = String.format("Неверный формат почты %s. Пример почты: name@example.com", email);
-            throw new RegistrationException(errMessage, HttpStatus.CONFLICT);
+        LocalDate today = LocalDate.now();
+        UserBatchResultDto[] results = new UserBatchResultDto[userDtos.size()];
+        Map<String, Integer> indexByEmail = new HashMap<>();
+        Map<Integer, User> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserDto userDto = userDtos.get(i);
+            if (userDto == null) {
+                results[i] = failed(i, null, "Отсутствуют данные пользователя");
+                continue;
+            }
+
+            String email = userDto.getEmail();
+            ValidationResult<String> emailResult = registrationValidator.validateEmail(email);
+            if (!emailResult.isValid()) {
+                results[i] = failed(i, userDto, emailResult.getError().getMessage());
+                continue;
+            }
+
+            ValidationResult<LocalDate> dateResult = registrationValidator.validateBirthDate(userDto.getBornDate(), today);
+            if (!dateResult.isValid()) {
+                results[i] = failed(i, userDto, dateResult.getError().getMessage());
+                continue;
+            }
+            LocalDate birthDate = dateResult.getValue();
+
+            Integer firstIndex = indexByEmail.putIfAbsent(email, i);
+            if (firstIndex != null) {
+                String errMessage = String.format("Почта %s повторяется в пакете, см. позицию %s", email, firstIndex);
+                results[i] = failed(i, userDto, errMessage);
+                continue;
+            }
+
+            User user = userMapper.toUser(userDto);
+            user.setBirthDate(birthDate);
+            candidates.put(i, user);
+        }
+
+        Set<String> existingEmails = userJdbcRepo.findExistingEmails(indexByEmail.keySet());
+
+        List<User> toInsert = new ArrayList<>(candidates.size());
+        List<Integer> insertedIndexes = new ArrayList<>(candidates.size());
+        candidates.forEach((i, user) -> {
+            if (existingEmails.contains(user.getEmail())) {
+                String errMessage = String.format("Пользователь с почтой %s уже существует", user.getEmail());
+                results[i] = failed(i, userDtos.get(i), errMessage);
+            } else {
+                toInsert.add(user);
+                insertedIndexes.add(i);
+            }
+        });
+
+        if (!toInsert.isEmpty()) {
+            long[] ids = userJdbcRepo.allocateIds(toInsert.size(), batch.getIdBlockSize());
+            long[] generations = new long[ids.length];
+            for (int j = 0; j < toInsert.size(); j++) {
+                toInsert.get(j).setId(ids[j]);
+                generations[j] = userCache.generation(ids[j]);
+            }
+            userJdbcRepo.insertAll(toInsert, batch.getJdbcBatchSize());
+            toInsert.forEach(user -> recentWrites.record(user.getId()));
+
+            for (int j = 0; j < toInsert.size(); j++) {
+                int i = insertedIndexes.get(j);
+                results[i] = UserBatchResultDto.builder()
+                        .index(i)
+                        .userId(ids[j])
+                        .created(true)
+                        .user(convertToUserDto(toInsert.get(j)))
+                        .build();
+            }
+            // до фиксации пользователей нет в БД: откат оставил бы их в счетчиках, индексах и кэше
+            afterCommit(() -> {
+                for (int j = 0; j < toInsert.size(); j++) {
+                    User user = toInsert.get(j);
+                    statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+                    userSearcher.onUserCreated(user);
+                    userSketches.onUserCreated(user);
+                    userCache.putIfAbsent(ids[j], results[insertedIndexes.get(j)].getUser(), generations[j]);
+                }
+            });
         }
 
+        return Arrays.asList(results);
+    }
+
+    private UserBatchResultDto failed(int index, UserDto userDto, String error) {
+        return UserBatchResultDto.builder()
+                .index(index)
+                .created(false)
+                .user(userDto)
+                .error(error)
+                .build();
+    }
+
+    @Override
+    public void validateEmail(String email) {
+        registrationValidator.validateEmail(email).orElseThrow();
     }
 
     @Override
     public LocalDate validateAndGetDate(String date) {
+        return registrationValidator.validateDate(date).orElseThrow();
+    }
+
+    @Override
+    public int getAge(String date) {
 
-        if (date == null || date.isEmpty()) {
-            throw new RegistrationException("Отсутствует дата", HttpStatus.CONFLICT);
+        LocalDate bornDate = validateAndGetBirthDate(date);
+        return Period.between(bornDate, LocalDate.now()).getYears();
+    }
+
+    private LocalDate validateAndGetBirthDate(String date) {
+        return registrationValidator.validateBirthDate(date, LocalDate.now()).orElseThrow();
+    }
+
+    /**
+     * Промах кэша читается в readOnly-транзакции репозитория, то есть с реплики, если они включены;
+     * недавно записанный пользователь читается с основной БД.
+     */
+    @Override
+    public UserDto getUser(Long id) {
+
+        UserDto userDto = userCache.get(id, userId -> recentWrites.contains(userId)
+                ? ReplicaRouting.onPrimary(() -> convertToUserDto(getUserFromDB(userId)))
+                : convertToUserDto(getUserFromDB(userId)));
+
+        PresenceEntry presence = presenceTable.isEnabled() ? presenceTable.get(id) : null;
+        return presence == null ? userDto : userMapper.withCurrentStatus(userDto, presence.getNewStatus());
+
+    }
+
+    /**
+     * Ответ в порядке запроса, на каждый переданный id - элемент с found=false, если пользователя нет.
+     * Сначала читается кэш, промахи дочитываются одним запросом на порцию id; недавно записанные
+     * пользователи - с основной БД.
+     */
+    @Override
+    public List<UserLookupResultDto> getUsers(List<Long> ids) {
+
+        int maxSize = properties.getLookup().getMaxSize();
+        if (ids.size() > maxSize) {
+            String errMessage = String.format("Превышено максимальное количество id %s. Передано: %s", maxSize, ids.size());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
         }
 
-        try {
-            return LocalDate.parse(date, DateTimeFormatter.ofPattern("dd.MM.yyyy"));
+        Map<Long, UserDto> found = new HashMap<>();
+        List<Long> recentMisses = new ArrayList<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                throw new RegistrationException("Передан пустой id", HttpStatus.BAD_REQUEST);
+            }
+            UserDto cached = userCache.getIfPresent(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else if (recentWrites.contains(id)) {
+                recentMisses.add(id);
+            } else {
+                misses.add(id);
+            }
+        }
 
-        } catch (DateTimeParseException e) {
-            log.error(e.getMessage());
-            String errMessage = String.format("Неверный формат даты %s . Пример формата даты: 31.12.2001", date);
-            throw new RegistrationException(errMessage, HttpStatus.CONFLICT);
+        Map<Long, Long> generations = new HashMap<>();
+        recentMisses.forEach(id -> generations.put(id, userCache.generation(id)));
+        misses.forEach(id -> generations.put(id, userCache.generation(id)));
+        Consumer<User> loaded = user -> {
+            UserDto userDto = convertToUserDto(user);
+            userCache.putIfAbsent(user.getId(), userDto, generations.get(user.getId()));
+            found.put(user.getId(), userDto);
+        };
+        if (!recentMisses.isEmpty()) {
+            userLookup.findUsers(recentMisses, true).values().forEach(loaded);
+        }
+        if (!misses.isEmpty()) {
+            userLookup.findUsers(misses, false).values().forEach(loaded);
         }
 
+        return ids.stream()
+                .map(id -> {
+                    UserDto userDto = found.get(id);
+                    if (userDto == null) {
+                        return UserLookupResultDto.builder().userId(id).found(false).build();
+                    }
+                    PresenceEntry presence = presenceTable.isEnabled() ? presenceTable.get(id) : null;
+                    return UserLookupResultDto.builder()
+                            .userId(id)
+                            .found(true)
+                            .user(presence == null ? userDto : userMapper.withCurrentStatus(userDto, presence.getNewStatus()))
+                            .build();
+                })
+                .collect(Collectors.toList());
     }
 
     @Override
-    public int getAge(String date) {
+    public StatusInfoDto changeStatus(Long id, Status status) {
 
-        LocalDate bornDate = validateAndGetDate(date);
-        LocalDate today = LocalDate.now();
-        if (bornDate.isAfter(today)) {
-            String errMessage = String.format("Дата рождения не может превышать текущую дату. Введенная дата: %s", date);
-            throw new RegistrationException(errMessage, HttpStatus.CONFLICT);
+        if (presenceTable.isEnabled()) {
+            PresenceEntry previous = presenceTable.change(id, status, this::loadPresence);
+            return applyTransition(id, status, previous.getNewStatus(), previous.getAge());
         }
 
-        return Period.between(bornDate, today).getYears();
+        StatusTransition transition = userRepo.shiftStatus(id, status.ordinal()).orElseThrow(() -> userNotFound(id));
+        recentWrites.record(id);
+        userCache.invalidate(id);
+
+        Status[] statuses = Status.values();
+        return applyTransition(transition.getId(), statuses[transition.getNewStatus()],
+                statuses[transition.getOldStatus()], transition.getAge());
+
     }
 
     @Override
-    public UserDto getUser(Long id) {
+    public List<StatusInfoDto> changeStatuses(List<StatusChangeDto> changes) {
+
+        int maxSize = properties.getBatch().getMaxSize();
+        if (changes.size() > maxSize) {
+            String errMessage = String.format("Превышен максимальный размер пакета %s. Передано изменений: %s",
+                    maxSize, changes.size());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+
+        Map<Long, Status> lastStatusById = new LinkedHashMap<>();
+        for (StatusChangeDto change : changes) {
+            if (change == null || change.getUserId() == null || change.getStatus() == null) {
+                throw new RegistrationException("Для каждого изменения нужны userId и status", HttpStatus.BAD_REQUEST);
+            }
+            lastStatusById.put(change.getUserId(), change.getStatus());
+        }
 
-        User user = getUserFromDB(id);
+        Map<Long, StatusInfoDto> applied = new HashMap<>();
+        if (presenceTable.isEnabled()) {
+            changePresences(lastStatusById, applied);
+        } else {
+            userJdbcRepo.shiftStatuses(lastStatusById, (id, newStatus, oldStatus, age) -> {
+                recentWrites.record(id);
+                userCache.invalidate(id);
+                applied.put(id, applyTransition(id, newStatus, oldStatus, age));
+            });
+        }
+
+        return changes.stream()
+                .map(change -> applied.getOrDefault(change.getUserId(),
+                        StatusInfoDto.builder().userId(change.getUserId()).build()))
+                .collect(Collectors.toList());
+    }
 
-        return convertToUserDto(user);
+    private void changePresences(Map<Long, Status> lastStatusById, Map<Long, StatusInfoDto> applied) {
 
+        List<Long> notInTable = lastStatusById.keySet().stream()
+                .filter(id -> presenceTable.get(id) == null)
+                .collect(Collectors.toList());
+        Map<Long, PresenceEntry> stored = new HashMap<>();
+        ReplicaRouting.onPrimary(() -> userRepo.findAllById(notInTable))
+                .forEach(user -> stored.put(user.getId(), toPresence(user)));
+
+        lastStatusById.forEach((id, status) -> {
+            if (presenceTable.get(id) == null && !stored.containsKey(id)) {
+                return;
+            }
+            PresenceEntry previous = presenceTable.change(id, status,
+                    userId -> stored.containsKey(userId) ? stored.get(userId) : loadPresence(userId));
+            applied.put(id, applyTransition(id, status, previous.getNewStatus(), previous.getAge()));
+        });
     }
 
-    @Override
-    public StatusInfoDto changeStatus(Long id, Status status) {
+    private PresenceEntry loadPresence(Long id) {
+        return ReplicaRouting.onPrimary(() -> toPresence(getUserFromDB(id)));
+    }
+
+    private static PresenceEntry toPresence(User user) {
+        return new PresenceEntry(user.getNewStatus(), user.getOldStatus(), user.getAge());
+    }
 
-        User user = getUserFromDB(id);
-        user.setOldStatus(user.getNewStatus());
-        user.setNewStatus(status);
+    private StatusInfoDto applyTransition(Long id, Status newStatus, Status oldStatus, Integer age) {
 
-        User updatedUser = userRepo.save(user);
+        statisticsEngine.onStatusChanged(id, oldStatus, newStatus, age);
 
-        return StatusInfoDto.builder()
-                .userId(updatedUser.getId())
-                .newStatus(updatedUser.getNewStatus())
-                .oldStatus(updatedUser.getOldStatus())
+        StatusInfoDto statusInfo = StatusInfoDto.builder()
+                .userId(id)
+                .newStatus(newStatus)
+                .oldStatus(oldStatus)
                 .build();
+        if (newStatus != oldStatus) {
+            publishAfterCommit(statusInfo);
+        }
+        return statusInfo;
+    }
+
+    /**
+     * Подписчики узнают о смене статуса только после фиксации транзакции, в которой она записана.
+     */
+    private void publishAfterCommit(StatusInfoDto statusInfo) {
+        afterCommit(() -> statusEventBus.publish(statusInfo));
+    }
 
+    private static void afterCommit(Runnable action) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private User getUserFromDB(Long id) {
-        return userRepo.findById(id).orElseThrow(() ->
-                new RegistrationException(String.format("Пользователь с id %s не найден", id), HttpStatus.NOT_FOUND));
+        return userRepo.findById(id).orElseThrow(() -> userNotFound(id));
+    }
+
+    private static RegistrationException userNotFound(Long id) {
+        return new RegistrationException(String.format("Пользователь с id %s не найден", id), HttpStatus.NOT_FOUND);
     }
 
     @Override
     public StatisticsDto getStatistics(String status, Boolean isAdult) {
+        return getStatistics(status, isAdult, null, null, null);
+    }
 
-        List<User> usersByStatus = new ArrayList<>();
-        if (status != null && !status.isEmpty()) {
-
-            Status incomingStatus;
-            if (status.equalsIgnoreCase(Status.ONLINE.name())) {
-                incomingStatus = Status.ONLINE;
-
-            } else if (status.equalsIgnoreCase(Status.OFFLINE.name())) {
-                incomingStatus = Status.OFFLINE;
+    @Override
+    @Transactional(readOnly = true)
+    public StatisticsDto getStatistics(String status, Boolean isAdult, Integer limit, Long statusAfter, Long ageAfter) {
 
-            } else {
-                throw new RegistrationException(String.format("Передан неверный статус %s", status), HttpStatus.BAD_REQUEST);
-            }
+        int pageSize = validateAndGetPageSize(limit);
+        StatisticsDto statisticsDto = new StatisticsDto();
 
-            usersByStatus = userRepo.findAllByNewStatus(incomingStatus);
+        Status incomingStatus = null;
+        List<User> usersByStatus = new ArrayList<>();
+        if (status != null && !status.isEmpty()) {
+            incomingStatus = validateAndGetStatus(status);
+            long after = statusAfter == null ? 0L : statusAfter;
+            usersByStatus = userRepo.findByNewStatusAndIdGreaterThanOrderByIdAsc(incomingStatus, after,
+                    PageRequest.of(0, pageSize + 1));
+            statisticsDto.setUsersByStatusNextCursor(nextCursor(usersByStatus, pageSize));
         }
 
         List<User> usersByAge = new ArrayList<>();
         if (isAdult != null) {
-            final int ageLimiter = 18;
+            final LocalDate adultCutoff = UserStatisticsEngine.adultCutoff();
+            long after = ageAfter == null ? 0L : ageAfter;
             if (isAdult) {
-                usersByAge = userRepo.findAdults(ageLimiter);
+                usersByAge = userRepo.findAdults(adultCutoff, after, pageSize + 1);
             } else {
-                usersByAge = userRepo.findTeens(ageLimiter);
+                usersByAge = userRepo.findTeens(adultCutoff, after, pageSize + 1);
             }
+            statisticsDto.setUsersByAgeNextCursor(nextCursor(usersByAge, pageSize));
         }
 
         List<UserDto> usersByStatusDto = usersByStatus.stream()
+                .limit(pageSize)
                 .map(this::convertToUserDto)
                 .collect(Collectors.toList());
 
         List<UserDto> usersByAgeDto = usersByAge.stream()
+                .limit(pageSize)
                 .map(this::convertToUserDto)
                 .collect(Collectors.toList());
 
-        Set<UserDto> extractedUsers = new HashSet<>(usersByStatusDto);
-        extractedUsers.addAll(usersByAgeDto);
+        statisticsDto.setUsersByStatus(usersByStatusDto);
+        statisticsDto.setUsersByAge(usersByAgeDto);
+        fillSummary(statisticsDto, incomingStatus, isAdult);
+        return statisticsDto;
 
-        long extractedUsersSize = extractedUsers.size();
-        AtomicInteger ageSum = new AtomicInteger();
+    }
 
-        extractedUsers.forEach(user -> ageSum.getAndAdd(user.getAge()));
+    private void fillSummary(StatisticsDto statisticsDto, Status status, Boolean isAdult) {
 
-        int averageAge = 0;
-        if (extractedUsersSize != 0) {
-            averageAge = (int) (ageSum.get() / extractedUsersSize);
+        if (properties.getStatistics().getSummarySource() == RegistrationProperties.SummarySource.ENGINE) {
+            statisticsDto.setTotalUsersCount(statisticsEngine.totalCount());
+            statisticsDto.setAverageAge(statisticsEngine.averageAge(status, isAdult));
+            return;
         }
 
-        StatisticsDto statisticsDto = new StatisticsDto();
-        statisticsDto.setTotalUsersCount(userRepo.count());
-        statisticsDto.setUsersByStatus(usersByStatusDto);
-        statisticsDto.setUsersByAge(usersByAgeDto);
-        statisticsDto.setAverageAge(averageAge);
-        return statisticsDto;
+        UserStatisticsSummary summary = userRepo.summarize(
+                status != null, status != null ? status.ordinal() : -1,
+                Boolean.TRUE.equals(isAdult), Boolean.FALSE.equals(isAdult),
+                UserStatisticsEngine.adultCutoff());
+        statisticsDto.setTotalUsersCount(summary.getTotal());
+        statisticsDto.setAverageAge(summary.getAverageAge() == null ? 0 : summary.getAverageAge().intValue());
+    }
+
+    @Override
+    public Status validateAndGetStatus(String status) {
+
+        if (Status.ONLINE.name().equalsIgnoreCase(status)) {
+            return Status.ONLINE;
+        }
+        if (Status.OFFLINE.name().equalsIgnoreCase(status)) {
+            return Status.OFFLINE;
+        }
+        throw new RegistrationException(String.format("Передан неверный статус %s", status), HttpStatus.BAD_REQUEST);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsersByStatus(Status status, OutputStream out) throws IOException {
+        int fetchSize = properties.getStatistics().getStreamFetchSize();
+        writeNdjson(out, fetchSize, consumer -> userJdbcRepo.streamByStatus(status, fetchSize, consumer));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsersByAge(boolean isAdult, OutputStream out) throws IOException {
+        int fetchSize = properties.getStatistics().getStreamFetchSize();
+        writeNdjson(out, fetchSize,
+                consumer -> userJdbcRepo.streamByAge(isAdult, UserStatisticsEngine.adultCutoff(), fetchSize, consumer));
+    }
+
+    @Override
+    public SearchResultDto searchUsers(String query, SearchMode mode, Integer limit, String cursor) {
+        return userSearcher.search(query, mode == null ? SearchMode.PREFIX : mode, limit, cursor);
+    }
+
+    private void writeNdjson(OutputStream out, int flushEvery, Consumer<Consumer<User>> source) throws IOException {
+
+        ObjectWriter writer = mapper.writerFor(UserDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            int[] written = {0};
+            source.accept(user -> {
+                try {
+                    writer.writeValue(generator, convertToUserDto(user));
+                    generator.writeRaw('\n');
+                    if (++written[0] % flushEvery == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int validateAndGetPageSize(Integer limit) {
+
+        RegistrationProperties.Statistics statistics = properties.getStatistics();
+        if (limit == null) {
+            return statistics.getDefaultPageSize();
+        }
+        if (limit < 1 || limit > statistics.getMaxPageSize()) {
+            String errMessage = String.format("Параметр limit должен быть от 1 до %s", statistics.getMaxPageSize());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        return limit;
+    }
 
+    private static Long nextCursor(List<User> page, int pageSize) {
+        return page.size() > pageSize ? page.get(pageSize - 1).getId() : null;
     }
 
     private UserDto convertToUserDto(User user) {
-        UserDto userDto = mapper.convertValue(user, UserDto.class);
-        userDto.setCurrentStatus(user.getNewStatus().name());
-        return userDto;
+        return userMapper.toUserDto(user);
     }
 
 }
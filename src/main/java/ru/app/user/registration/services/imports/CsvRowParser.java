@@ -0,0 +1,111 @@
+package ru.app.user.registration.services.imports;
+
+import org.springframework.http.HttpStatus;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.exceptions.RegistrationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Строки CSV с заголовком. Колонки ищутся по имени без учета регистра: email и bornDate (или born_date)
+ * обязательны, name - нет. Поля в двойных кавычках могут содержать запятые и удвоенные кавычки,
+ * переводы строк внутри полей не поддерживаются.
+ */
+final class CsvRowParser implements ImportRowParser {
+
+    private static final char BOM = '\uFEFF';
+
+    private final int nameColumn;
+    private final int emailColumn;
+    private final int bornDateColumn;
+
+    CsvRowParser(String header) {
+
+        if (header == null) {
+            throw new RegistrationException("Файл пуст: нет заголовка CSV", HttpStatus.BAD_REQUEST);
+        }
+
+        List<String> columns = split(!header.isEmpty() && header.charAt(0) == BOM ? header.substring(1) : header);
+        nameColumn = indexOf(columns, "name");
+        emailColumn = required(columns, "email", indexOf(columns, "email"));
+        int bornDate = indexOf(columns, "bornDate");
+        bornDateColumn = required(columns, "bornDate", bornDate >= 0 ? bornDate : indexOf(columns, "born_date"));
+    }
+
+    @Override
+    public UserDto parse(String line) {
+
+        List<String> fields = split(line);
+        UserDto userDto = new UserDto();
+        userDto.setName(field(fields, nameColumn));
+        userDto.setEmail(field(fields, emailColumn));
+        userDto.setBornDate(field(fields, bornDateColumn));
+        return userDto;
+    }
+
+    static List<String> split(String line) {
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("незакрытая кавычка");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Значение в кавычках для CSV-отчета.
+     */
+    static String quote(String value) {
+        return value == null ? "" : '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0 || column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int indexOf(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int required(List<String> columns, String name, int index) {
+        if (index < 0) {
+            String errMessage = String.format("В заголовке CSV нет колонки %s. Заголовок: %s", name, String.join(",", columns));
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,15 @@
+package ru.app.user.registration.services.imports;
+
+import ru.app.user.registration.dto.UserDto;
+
+import java.io.IOException;
+
+/**
+ * Разбор одной строки файла импорта. Реализации не хранят состояния и вызываются из нескольких потоков.
+ */
+@FunctionalInterface
+interface ImportRowParser {
+
+    UserDto parse(String line) throws IOException;
+
+}
@@ -0,0 +1,56 @@
+package ru.app.user.registration.services.imports;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.ImportResultDto;
+import ru.app.user.registration.enums.FileFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Импорт из командной строки:
+ * java -jar application.jar --spring.main.web-application-type=none --registration.bulk-import.file=users.csv
+ * После импорта приложение завершается; код выхода 0, если все строки загружены, иначе 1.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "registration.bulk-import", name = "file")
+public class UserImportRunner implements ApplicationRunner {
+
+    private final UserImporter userImporter;
+    private final RegistrationProperties properties;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+
+        RegistrationProperties.BulkImport settings = properties.getBulkImport();
+        Path file = Path.of(settings.getFile());
+        FileFormat format = settings.getFormat() != null
+                ? settings.getFormat()
+                : FileFormat.byFileName(file.getFileName().toString());
+        if (format == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Не удалось определить формат файла %s, задайте registration.bulk-import.format", file));
+        }
+        Path errorReport = settings.getErrorReport() != null
+                ? Path.of(settings.getErrorReport())
+                : file.resolveSibling(file.getFileName() + ".errors.csv");
+
+        ImportResultDto result;
+        try (InputStream in = Files.newInputStream(file)) {
+            result = userImporter.importUsers(in, format, errorReport);
+        }
+        System.exit(SpringApplication.exit(context, () -> result.getRejected() == 0 ? 0 : 1));
+    }
+
+}
@@ -0,0 +1,318 @@
+package ru.app.user.registration.services.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.ImportResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.FileFormat;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+import ru.app.user.registration.services.validation.ValidationResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Потоковый импорт пользователей из CSV или NDJSON.
+ * Файл читается порциями по chunk-size строк; порции проверяются параллельно теми же правилами,
+ * что и при регистрации, а загружаются по одной в порядке файла: проверка почт по БД, выделение id
+ * из последовательности, COPY или JDBC-пакеты. Каждая порция фиксируется сразу, поэтому повтор почты
+ * из уже загруженной порции отклоняется проверкой по БД, а повтор внутри порции - при проверке порции.
+ * В памяти одновременно не больше 2 * parallelism порций, отклоненные строки пишутся в отчет.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserImporter {
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final UserMapper userMapper;
+    private final ObjectMapper mapper;
+    private final RegistrationProperties properties;
+    private final UserStatisticsEngine statisticsEngine;
+    private final RegistrationValidator registrationValidator;
+    private final UserSearcher userSearcher;
+    private final UserSketches userSketches;
+
+    /**
+     * Импорт с отчетом в новом файле каталога report-dir.
+     */
+    public ImportResultDto importUsers(InputStream in, FileFormat format) throws IOException {
+        Path reportDir = Path.of(properties.getBulkImport().getReportDir());
+        return importUsers(in, format, Files.createTempFile(reportDir, "import-errors-", ".csv"));
+    }
+
+    public ImportResultDto importUsers(InputStream in, FileFormat format, Path errorReport) throws IOException {
+
+        RegistrationProperties.BulkImport settings = properties.getBulkImport();
+        int parallelism = Math.max(1, settings.getParallelism());
+        ExecutorService validators = Executors.newFixedThreadPool(parallelism, validatorThreads());
+        Progress progress = new Progress(settings.getProgressInterval());
+        LocalDate today = LocalDate.now();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             BufferedWriter report = Files.newBufferedWriter(errorReport, StandardCharsets.UTF_8)) {
+
+            report.write("line,error,row\n");
+            long lineNumber = 0;
+            ImportRowParser parser;
+            if (format == FileFormat.CSV) {
+                parser = new CsvRowParser(reader.readLine());
+                lineNumber++;
+            } else {
+                ObjectReader userReader = mapper.readerFor(UserDto.class);
+                parser = userReader::readValue;
+            }
+
+            Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            Chunk chunk = new Chunk(settings.getChunkSize());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(lineNumber, line);
+                if (chunk.isFull()) {
+                    Chunk full = chunk;
+                    inFlight.add(validators.submit(() -> validate(full, parser, today)));
+                    chunk = new Chunk(settings.getChunkSize());
+                    if (inFlight.size() >= 2 * parallelism) {
+                        load(await(inFlight.poll()), report, progress);
+                    }
+                }
+            }
+            if (chunk.size > 0) {
+                Chunk last = chunk;
+                inFlight.add(validators.submit(() -> validate(last, parser, today)));
+            }
+            while (!inFlight.isEmpty()) {
+                load(await(inFlight.poll()), report, progress);
+            }
+        } finally {
+            validators.shutdownNow();
+        }
+
+        ImportResultDto result = progress.result(errorReport);
+        log.info("Импорт завершен: прочитано {}, загружено {}, отклонено {} за {} мс ({} строк/с), отчет {}",
+                result.getRead(), result.getImported(), result.getRejected(), result.getDurationMillis(),
+                result.getRowsPerSecond(), errorReport);
+        return result;
+    }
+
+    private Chunk validate(Chunk chunk, ImportRowParser parser, LocalDate today) {
+
+        Map<String, Long> firstLineByEmail = new HashMap<>();
+        for (int i = 0; i < chunk.size; i++) {
+            UserDto userDto;
+            try {
+                userDto = parser.parse(chunk.rows[i]);
+            } catch (IOException | IllegalArgumentException e) {
+                chunk.errors[i] = "Не удалось разобрать строку: " + e.getMessage();
+                continue;
+            }
+            if (userDto == null) {
+                chunk.errors[i] = "Отсутствуют данные пользователя";
+                continue;
+            }
+
+            String email = userDto.getEmail();
+            ValidationResult<String> emailResult = registrationValidator.validateEmail(email);
+            if (!emailResult.isValid()) {
+                chunk.errors[i] = emailResult.getError().getMessage();
+                continue;
+            }
+            ValidationResult<LocalDate> dateResult = registrationValidator.validateBirthDate(userDto.getBornDate(), today);
+            if (!dateResult.isValid()) {
+                chunk.errors[i] = dateResult.getError().getMessage();
+                continue;
+            }
+
+            Long firstLine = firstLineByEmail.putIfAbsent(email, chunk.lines[i]);
+            if (firstLine != null) {
+                chunk.errors[i] = String.format("Почта %s повторяется в файле, см. строку %s", email, firstLine);
+                continue;
+            }
+
+            User user = userMapper.toUser(userDto);
+            user.setBirthDate(dateResult.getValue());
+            chunk.users[i] = user;
+        }
+        return chunk;
+    }
+
+    private void load(Chunk chunk, BufferedWriter report, Progress progress) throws IOException {
+
+        List<String> emails = new ArrayList<>(chunk.size);
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.users[i] != null) {
+                emails.add(chunk.users[i].getEmail());
+            }
+        }
+        Set<String> existingEmails = userJdbcRepo.findExistingEmails(emails);
+
+        List<User> toInsert = new ArrayList<>(emails.size());
+        for (int i = 0; i < chunk.size; i++) {
+            User user = chunk.users[i];
+            if (user != null && existingEmails.contains(user.getEmail())) {
+                chunk.errors[i] = String.format("Пользователь с почтой %s уже существует", user.getEmail());
+            } else if (user != null) {
+                toInsert.add(user);
+            }
+        }
+
+        if (!toInsert.isEmpty()) {
+            RegistrationProperties.Batch batch = properties.getBatch();
+            long[] ids = userJdbcRepo.allocateIds(toInsert.size(), batch.getIdBlockSize());
+            for (int j = 0; j < toInsert.size(); j++) {
+                toInsert.get(j).setId(ids[j]);
+            }
+            if (properties.getBulkImport().getLoadMethod() == RegistrationProperties.LoadMethod.COPY) {
+                userJdbcRepo.copyAll(toInsert);
+            } else {
+                userJdbcRepo.insertAll(toInsert, batch.getJdbcBatchSize());
+            }
+            toInsert.forEach(user -> {
+                statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+                userSearcher.onUserCreated(user);
+                userSketches.onUserCreated(user);
+            });
+        }
+
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.errors[i] != null) {
+                report.write(chunk.lines[i] + "," + CsvRowParser.quote(chunk.errors[i]) + ","
+                        + CsvRowParser.quote(chunk.rows[i]) + "\n");
+            }
+        }
+        progress.add(chunk.size, toInsert.size());
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Импорт прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadFactory validatorThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "import-validator-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Порция строк файла: номера строк, исходный текст и результат проверки по каждой строке.
+     */
+    private static final class Chunk {
+
+        final long[] lines;
+        final String[] rows;
+        final User[] users;
+        final String[] errors;
+        int size;
+
+        Chunk(int capacity) {
+            lines = new long[capacity];
+            rows = new String[capacity];
+            users = new User[capacity];
+            errors = new String[capacity];
+        }
+
+        void add(long line, String row) {
+            lines[size] = line;
+            rows[size] = row;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == rows.length;
+        }
+
+    }
+
+    private static final class Progress {
+
+        private final long started = System.nanoTime();
+        private final long intervalNanos;
+        private long nextLog;
+        private long read;
+        private long imported;
+
+        Progress(Duration interval) {
+            intervalNanos = interval.toNanos();
+            nextLog = started + intervalNanos;
+        }
+
+        void add(int chunkRead, int chunkImported) {
+
+            read += chunkRead;
+            imported += chunkImported;
+            long now = System.nanoTime();
+            if (now >= nextLog) {
+                nextLog = now + intervalNanos;
+                log.info("Импорт: прочитано {}, загружено {}, отклонено {}, {} строк/с",
+                        read, imported, read - imported, rowsPerSecond(now));
+            }
+        }
+
+        long rowsPerSecond(long now) {
+            long elapsed = Math.max(1, now - started);
+            return read * 1_000_000_000L / elapsed;
+        }
+
+        ImportResultDto result(Path errorReport) {
+            long now = System.nanoTime();
+            return ImportResultDto.builder()
+                    .read(read)
+                    .imported(imported)
+                    .rejected(read - imported)
+                    .durationMillis((now - started) / 1_000_000)
+                    .rowsPerSecond(rowsPerSecond(now))
+                    .errorReport(errorReport.toString())
+                    .build();
+        }
+
+    }
+
+}
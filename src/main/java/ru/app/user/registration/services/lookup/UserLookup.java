@@ -0,0 +1,144 @@
+package ru.app.user.registration.services.lookup;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.db.routing.ReplicaRouting;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Чтение многих пользователей по id. Id делятся на порции по registration.lookup.chunk-size, каждая порция
+ * читается одним запросом в readOnly-транзакции, то есть с реплики, если они включены. Порции разбирают
+ * вызывающий поток и до parallelism - 1 потоков общего пула; если пул занят другими запросами,
+ * вызывающий поток дочитывает все порции сам и не ждет очереди пула.
+ */
+@Service
+public class UserLookup {
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final RegistrationProperties.Lookup settings;
+    private final TransactionTemplate readOnly;
+    private final ExecutorService readers;
+
+    public UserLookup(UserJdbcRepo userJdbcRepo, PlatformTransactionManager transactionManager,
+                      RegistrationProperties properties) {
+        this.userJdbcRepo = userJdbcRepo;
+        this.settings = properties.getLookup();
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        AtomicInteger counter = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(Math.max(1, settings.getParallelism() - 1), runnable -> {
+            Thread thread = new Thread(runnable, "user-lookup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Найденные пользователи по id; ненайденных id в результате нет. {@code onPrimary} - читать с основной БД.
+     */
+    public Map<Long, User> findUsers(List<Long> ids, boolean onPrimary) {
+
+        Map<Long, User> found = new HashMap<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+
+        int chunkSize = Math.max(1, settings.getChunkSize());
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+        }
+
+        Chunks pending = new Chunks(chunks, onPrimary);
+        int helpers = Math.min(chunks.size(), Math.max(1, settings.getParallelism())) - 1;
+        List<Future<?>> started = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i++) {
+            started.add(readers.submit(pending::read));
+        }
+        pending.read();
+        pending.await();
+        started.forEach(future -> future.cancel(false));
+
+        for (int i = 0; i < chunks.size(); i++) {
+            pending.results.get(i).forEach(user -> found.put(user.getId(), user));
+        }
+        return found;
+    }
+
+    private List<User> readChunk(List<Long> ids, boolean onPrimary) {
+        return onPrimary
+                ? ReplicaRouting.onPrimary(() -> readOnly.execute(status -> userJdbcRepo.findByIds(ids)))
+                : readOnly.execute(status -> userJdbcRepo.findByIds(ids));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.shutdownNow();
+    }
+
+    /**
+     * Порции одного запроса. Каждую порцию забирает ровно один поток; первая ошибка сохраняется,
+     * остальные порции после нее не читаются.
+     */
+    private final class Chunks {
+
+        private final List<List<Long>> chunks;
+        private final boolean onPrimary;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReferenceArray<List<User>> results;
+        private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        private final CountDownLatch done;
+
+        private Chunks(List<List<Long>> chunks, boolean onPrimary) {
+            this.chunks = chunks;
+            this.onPrimary = onPrimary;
+            this.results = new AtomicReferenceArray<>(chunks.size());
+            this.done = new CountDownLatch(chunks.size());
+        }
+
+        private void read() {
+            int index;
+            while ((index = next.getAndIncrement()) < chunks.size()) {
+                try {
+                    if (error.get() == null) {
+                        results.set(index, readChunk(chunks.get(index), onPrimary));
+                    }
+                } catch (RuntimeException e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Чтение пользователей прервано", e);
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.app.user.registration.services.presence;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.app.user.registration.enums.Status;
+
+/**
+ * Неизменяемое состояние присутствия пользователя. Сравнивается по ссылке:
+ * запись удаляется из таблицы после сброса, только если ее не успели заменить.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class PresenceEntry {
+
+    private final Status newStatus;
+    private final Status oldStatus;
+    private final Integer age;
+
+}
@@ -0,0 +1,137 @@
+package ru.app.user.registration.services.presence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.cache.UserCache;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Таблица несохраненных статусов присутствия (режим registration.presence.enabled).
+ * Смена статуса сразу видна через таблицу, а в users пишется пакетно раз в flush-interval:
+ * повторные переключения одного пользователя между сбросами схлопываются в итоговое состояние.
+ * Если несохраненных записей больше capacity, вызывающий поток сам выполняет сброс.
+ */
+@Slf4j
+@Component
+public class PresenceTable {
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final UserCache userCache;
+    private final RegistrationProperties.Presence settings;
+
+    private final ConcurrentHashMap<Long, PresenceEntry> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public PresenceTable(UserJdbcRepo userJdbcRepo, RegistrationProperties properties, UserCache userCache) {
+        this.userJdbcRepo = userJdbcRepo;
+        this.userCache = userCache;
+        this.settings = properties.getPresence();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public PresenceEntry get(Long id) {
+        return pending.get(id);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Записывает новый статус и возвращает состояние до изменения.
+     * {@code stored} загружает сохраненное в БД состояние, если пользователя еще нет в таблице.
+     */
+    public PresenceEntry change(Long id, Status status, Function<Long, PresenceEntry> stored) {
+
+        PresenceEntry base = pending.get(id);
+        if (base == null) {
+            if (pending.size() >= settings.getCapacity()) {
+                flush();
+            }
+            base = stored.apply(id);
+        }
+
+        PresenceEntry loaded = base;
+        PresenceEntry[] previous = new PresenceEntry[1];
+        pending.compute(id, (key, current) -> {
+            PresenceEntry from = current != null ? current : loaded;
+            previous[0] = from;
+            return new PresenceEntry(status, from.getNewStatus(), from.getAge());
+        });
+        return previous[0];
+    }
+
+    @Scheduled(fixedDelayString = "#{@'registration-ru.app.config.RegistrationProperties'.presence.flushInterval.toMillis()}")
+    public void scheduledFlush() {
+        if (isEnabled() && !pending.isEmpty()) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("presence flush failed, {} entries stay pending: {}", pending.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Пишет накопленные статусы в users пакетами по flush-batch-size. Запись удаляется из таблицы,
+     * только если за время сброса ее не заменило новое переключение.
+     */
+    public void flush() {
+
+        flushLock.lock();
+        try {
+            Iterator<Map.Entry<Long, PresenceEntry>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map<Long, PresenceEntry> chunk = new HashMap<>();
+                while (iterator.hasNext() && chunk.size() < settings.getFlushBatchSize()) {
+                    Map.Entry<Long, PresenceEntry> entry = iterator.next();
+                    chunk.put(entry.getKey(), entry.getValue());
+                }
+
+                userJdbcRepo.writeStatuses(chunk);
+                chunk.forEach((id, entry) -> {
+                    if (pending.remove(id, entry)) {
+                        userCache.invalidate(id);
+                    }
+                });
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        log.info("draining {} pending presence entries", pending.size());
+        for (int attempt = 0; attempt < 3 && !pending.isEmpty(); attempt++) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("presence drain attempt {} failed: {}", attempt + 1, e.getMessage());
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.error("{} presence entries were not written on shutdown", pending.size());
+        }
+    }
+
+}
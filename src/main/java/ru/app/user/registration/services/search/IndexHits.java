@@ -0,0 +1,19 @@
+package ru.app.user.registration.services.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class IndexHits {
+
+    /**
+     * По возрастанию.
+     */
+    private final List<Long> ids;
+
+    private final boolean partial;
+
+}
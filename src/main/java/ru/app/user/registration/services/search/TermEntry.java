@@ -0,0 +1,28 @@
+package ru.app.user.registration.services.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Пара (слово в UTF-8, id) изменяемой части индекса. Порядок тот же, что в {@link TermSegment}.
+ */
+@Getter
+@RequiredArgsConstructor
+final class TermEntry implements Comparable<TermEntry> {
+
+    private final byte[] term;
+    private final long id;
+
+    boolean startsWith(byte[] prefix) {
+        return term.length >= prefix.length && Arrays.equals(term, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    @Override
+    public int compareTo(TermEntry other) {
+        int byTerm = Arrays.compareUnsigned(term, other.term);
+        return byTerm != 0 ? byTerm : Long.compare(id, other.id);
+    }
+
+}
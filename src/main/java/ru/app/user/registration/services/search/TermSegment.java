@@ -0,0 +1,132 @@
+package ru.app.user.registration.services.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Неизменяемый отсортированный список пар (слово, id) в трех массивах: байты всех слов в UTF-8 подряд,
+ * смещения начала каждого слова и id. Порядок - по байтам слова без знака (он совпадает с порядком кодовых
+ * точек), затем по id, поэтому все слова с общим началом лежат одним отрезком и находятся двоичным поиском.
+ * На пару уходит около 12 байт сверх самого слова, против сотен байт у узлов дерева из объектов.
+ */
+final class TermSegment {
+
+    static final TermSegment EMPTY = new TermSegment(new byte[0], new int[]{0}, new long[0]);
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final long[] ids;
+
+    private TermSegment(byte[] data, int[] offsets, long[] ids) {
+        this.data = data;
+        this.offsets = offsets;
+        this.ids = ids;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Индекс первого слова, не меньшего {@code prefix}.
+     */
+    int lowerBound(byte[] prefix) {
+        int low = 0;
+        int high = ids.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    boolean startsWith(int index, byte[] prefix) {
+        int from = offsets[index];
+        return offsets[index + 1] - from >= prefix.length
+                && Arrays.equals(data, from, from + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private int compare(int index, byte[] term) {
+        return Arrays.compareUnsigned(data, offsets[index], offsets[index + 1], term, 0, term.length);
+    }
+
+    private int compare(int index, TermEntry entry) {
+        int byTerm = compare(index, entry.getTerm());
+        return byTerm != 0 ? byTerm : Long.compare(ids[index], entry.getId());
+    }
+
+    /**
+     * Сливает сегмент с отсортированными записями; совпадающие пары остаются в одном экземпляре.
+     */
+    static TermSegment merge(TermSegment base, Iterable<TermEntry> sorted, int sortedSize) {
+
+        Builder builder = new Builder(base.size() + sortedSize, base.data.length + sortedSize * 16);
+        Iterator<TermEntry> entries = sorted.iterator();
+        TermEntry entry = entries.hasNext() ? entries.next() : null;
+        int i = 0;
+        while (i < base.size() || entry != null) {
+            int order = i == base.size() ? 1 : entry == null ? -1 : base.compare(i, entry);
+            if (order <= 0) {
+                builder.add(base.data, base.offsets[i], base.offsets[i + 1], base.ids[i]);
+                i++;
+            }
+            if (order >= 0) {
+                if (order > 0) {
+                    builder.add(entry.getTerm(), 0, entry.getTerm().length, entry.getId());
+                }
+                entry = entries.hasNext() ? entries.next() : null;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Строит сегмент из неотсортированных записей.
+     */
+    static TermSegment of(TermEntry[] entries, int size) {
+        TermEntry[] sorted = Arrays.copyOf(entries, size);
+        Arrays.sort(sorted);
+        return merge(EMPTY, Arrays.asList(sorted), size);
+    }
+
+    private static final class Builder {
+
+        private byte[] data;
+        private int[] offsets;
+        private long[] ids;
+        private int size;
+        private int length;
+
+        private Builder(int capacity, int dataCapacity) {
+            data = new byte[Math.max(16, dataCapacity)];
+            offsets = new int[capacity + 1];
+            ids = new long[capacity];
+        }
+
+        private void add(byte[] source, int from, int to, long id) {
+            int termLength = to - from;
+            if (length + termLength > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + termLength));
+            }
+            System.arraycopy(source, from, data, length, termLength);
+            length += termLength;
+            ids[size] = id;
+            offsets[++size] = length;
+        }
+
+        private TermSegment build() {
+            return new TermSegment(Arrays.copyOf(data, length), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(ids, size));
+        }
+
+    }
+
+}
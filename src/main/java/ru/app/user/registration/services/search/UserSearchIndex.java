@@ -0,0 +1,220 @@
+package ru.app.user.registration.services.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс поиска по началу имени и почты в памяти. Основная часть - компактный {@link TermSegment},
+ * новые пользователи попадают в изменяемую часть и сливаются с основной в фоне, когда их накопится
+ * merge-threshold. Во время слияния отложенная часть остается видна поиску, а новые записи идут в свежую.
+ * Строится после старта одним проходом по users и готов отвечать только после этого.
+ */
+@Slf4j
+@Component
+public class UserSearchIndex {
+
+    private static final int DEADLINE_CHECK_EVERY = 4096;
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final RegistrationProperties.InMemory settings;
+
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+
+    private volatile Parts parts = new Parts(TermSegment.EMPTY, null, new ConcurrentSkipListSet<>());
+    private volatile boolean ready;
+
+    public UserSearchIndex(UserJdbcRepo userJdbcRepo, RegistrationProperties properties) {
+        this.userJdbcRepo = userJdbcRepo;
+        this.settings = properties.getSearch().getInMemory();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        if (settings.isEnabled()) {
+            maintenance.execute(this::build);
+        }
+    }
+
+    /**
+     * Перестраивает основную часть из users. Записи, добавленные во время прохода, остаются в изменяемой части.
+     */
+    public void build() {
+
+        long started = System.nanoTime();
+        List<TermEntry> entries = new ArrayList<>();
+        long afterId = 0L;
+        while (true) {
+            long last = userJdbcRepo.findSearchTerms(afterId, settings.getLoadBatchSize(), (id, name, email) -> {
+                if (name != null) {
+                    entries.add(new TermEntry(encode(name), id));
+                }
+                if (email != null) {
+                    entries.add(new TermEntry(encode(email), id));
+                }
+            });
+            if (last == afterId) {
+                break;
+            }
+            afterId = last;
+        }
+
+        TermSegment base = TermSegment.of(entries.toArray(new TermEntry[0]), entries.size());
+        swapLock.writeLock().lock();
+        try {
+            parts = new Parts(base, parts.frozen, parts.active);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("search index built: {} terms in {} ms", base.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public void add(long id, String name, String email) {
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            NavigableSet<TermEntry> active = parts.active;
+            if (name != null) {
+                active.add(new TermEntry(encode(name), id));
+            }
+            if (email != null) {
+                active.add(new TermEntry(encode(email), id));
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (pending.addAndGet(2) >= settings.getMergeThreshold() && mergeScheduled.compareAndSet(false, true)) {
+            maintenance.execute(this::merge);
+        }
+    }
+
+    private void merge() {
+
+        Parts frozen;
+        swapLock.writeLock().lock();
+        try {
+            Parts current = parts;
+            frozen = new Parts(current.base, current.active, new ConcurrentSkipListSet<>());
+            parts = frozen;
+            pending.set(0);
+        } finally {
+            swapLock.writeLock().unlock();
+            mergeScheduled.set(false);
+        }
+
+        TermSegment merged = TermSegment.merge(frozen.base, frozen.frozen, frozen.frozen.size());
+        swapLock.writeLock().lock();
+        try {
+            parts = new Parts(merged, null, parts.active);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * До {@code limit} наименьших id больше {@code afterId}, у которых имя или почта начинаются с {@code prefix}
+     * (в нижнем регистре), по возрастанию. Если {@code deadlineNanos} наступил раньше, чем просмотрены все
+     * совпадения, результат помечается неполным и может пропускать совпадения с меньшими id.
+     */
+    public IndexHits findByPrefix(String prefix, long afterId, int limit, long deadlineNanos) {
+
+        byte[] term = encode(prefix);
+        Parts current = parts;
+        TreeSet<Long> ids = new TreeSet<>();
+        int scanned = 0;
+
+        TermSegment base = current.base;
+        for (int i = base.lowerBound(term); i < base.size() && base.startsWith(i, term); i++) {
+            collect(ids, base.id(i), afterId, limit);
+            if (++scanned % DEADLINE_CHECK_EVERY == 0 && System.nanoTime() - deadlineNanos > 0) {
+                return new IndexHits(new ArrayList<>(ids), true);
+            }
+        }
+        for (NavigableSet<TermEntry> delta : current.deltas()) {
+            for (TermEntry entry : delta.tailSet(new TermEntry(term, Long.MIN_VALUE))) {
+                if (!entry.startsWith(term)) {
+                    break;
+                }
+                collect(ids, entry.getId(), afterId, limit);
+            }
+        }
+        return new IndexHits(new ArrayList<>(ids), false);
+    }
+
+    private static byte[] encode(String value) {
+        return value.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void collect(TreeSet<Long> ids, long id, long afterId, int limit) {
+        if (id <= afterId) {
+            return;
+        }
+        if (ids.size() < limit) {
+            ids.add(id);
+        } else if (id < ids.last() && ids.add(id)) {
+            ids.pollLast();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+
+    /**
+     * Основная часть, отложенная на время слияния (или null) и изменяемая часть. Заменяется целиком.
+     */
+    private static final class Parts {
+
+        private final TermSegment base;
+        private final NavigableSet<TermEntry> frozen;
+        private final NavigableSet<TermEntry> active;
+
+        private Parts(TermSegment base, NavigableSet<TermEntry> frozen, NavigableSet<TermEntry> active) {
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+        }
+
+        private List<NavigableSet<TermEntry>> deltas() {
+            return frozen == null ? List.of(active) : List.of(frozen, active);
+        }
+
+    }
+
+}
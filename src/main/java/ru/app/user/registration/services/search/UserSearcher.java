@@ -0,0 +1,127 @@
+package ru.app.user.registration.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск пользователей по началу имени или почты (курсор - последний выданный id) и нечеткий поиск
+ * по триграммам (курсор - смещение). Страница укладывается в registration.search.timeout: запрос к БД
+ * ограничен statement_timeout, а чтение строк прерывается по истечении бюджета. Поиск по началу
+ * обслуживается индексом в памяти, если он включен и построен.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserSearcher {
+
+    private static final int MAX_QUERY_LENGTH = 255;
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final UserSearchIndex searchIndex;
+    private final UserMapper userMapper;
+    private final RegistrationProperties properties;
+
+    @Transactional(readOnly = true)
+    public SearchResultDto search(String query, SearchMode mode, Integer limit, String cursor) {
+
+        long deadline = System.nanoTime() + properties.getSearch().getTimeout().toNanos();
+        String normalized = validateAndGetQuery(query, mode);
+        int pageSize = validateAndGetPageSize(limit);
+        long after = validateAndGetCursor(cursor, mode);
+
+        List<User> users = new ArrayList<>(pageSize + 1);
+        boolean complete;
+        if (mode == SearchMode.FUZZY) {
+            complete = userJdbcRepo.searchFuzzy(normalized, properties.getSearch().getFuzzyThreshold(),
+                    Math.toIntExact(after), pageSize + 1, deadline, users::add);
+        } else if (searchIndex.isReady()) {
+            IndexHits hits = searchIndex.findByPrefix(normalized, after, pageSize + 1, deadline);
+            users.addAll(userJdbcRepo.findByIds(hits.getIds()));
+            complete = !hits.isPartial();
+        } else {
+            complete = userJdbcRepo.searchByPrefix(normalized, after, pageSize + 1, deadline, users::add);
+        }
+
+        boolean more = users.size() > pageSize;
+        List<User> page = more ? users.subList(0, pageSize) : users;
+
+        String next = null;
+        if (more || !complete) {
+            next = Long.toString(mode == SearchMode.FUZZY
+                    ? after + page.size()
+                    : page.isEmpty() ? after : page.get(page.size() - 1).getId());
+        }
+        return SearchResultDto.builder()
+                .users(page.stream().map(userMapper::toUserDto).collect(Collectors.toList()))
+                .next(next)
+                .partial(!complete)
+                .build();
+    }
+
+    /**
+     * Вызывается после регистрации пользователя.
+     */
+    public void onUserCreated(User user) {
+        searchIndex.add(user.getId(), user.getName(), user.getEmail());
+    }
+
+    private String validateAndGetQuery(String query, SearchMode mode) {
+
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            throw new RegistrationException("Параметр q не должен быть пустым", HttpStatus.BAD_REQUEST);
+        }
+        if (normalized.length() > MAX_QUERY_LENGTH) {
+            String errMessage = String.format("Параметр q не должен быть длиннее %s символов", MAX_QUERY_LENGTH);
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        int minFuzzyLength = properties.getSearch().getMinFuzzyLength();
+        if (mode == SearchMode.FUZZY && normalized.length() < minFuzzyLength) {
+            String errMessage = String.format("Для нечеткого поиска нужно не меньше %s символов", minFuzzyLength);
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        return normalized;
+    }
+
+    private int validateAndGetPageSize(Integer limit) {
+
+        RegistrationProperties.Search search = properties.getSearch();
+        if (limit == null) {
+            return search.getDefaultPageSize();
+        }
+        if (limit < 1 || limit > search.getMaxPageSize()) {
+            String errMessage = String.format("Параметр limit должен быть от 1 до %s", search.getMaxPageSize());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        return limit;
+    }
+
+    private static long validateAndGetCursor(String cursor, SearchMode mode) {
+
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            long after = Long.parseLong(cursor);
+            if (after >= 0 && (mode != SearchMode.FUZZY || after <= Integer.MAX_VALUE)) {
+                return after;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new RegistrationException(String.format("Передан неверный курсор %s", cursor), HttpStatus.BAD_REQUEST);
+    }
+
+}
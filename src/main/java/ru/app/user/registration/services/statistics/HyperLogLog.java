@@ -0,0 +1,137 @@
+package ru.app.user.registration.services.statistics;
+
+/**
+ * Оценка числа различных строк HyperLogLog (Flajolet и др.) на 2^precision однобайтовых регистрах.
+ * Стандартная относительная ошибка - {@link #relativeError(int)}, то есть 1.04 / sqrt(2^precision):
+ * при precision = 14 это 0.81% на 16 КБ, на малых количествах оценка почти точна. Повторное добавление той же
+ * строки оценку не меняет, объединение через {@link #merge} - поэлементный максимум регистров.
+ */
+public final class HyperLogLog {
+
+    private static final int MIN_PRECISION = 4;
+
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format("precision должно быть от %s до %s: %s",
+                    MIN_PRECISION, MAX_PRECISION, precision));
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public void add(String value) {
+
+        long hash = hash(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // единица после значимых бит ограничивает ранг, если остальные биты нулевые
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        synchronized (registers) {
+            if (registers[index] < rank) {
+                registers[index] = rank;
+            }
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(String.format("Разная точность: %s и %s", precision, other.precision));
+        }
+        byte[] otherRegisters;
+        synchronized (other.registers) {
+            otherRegisters = other.registers.clone();
+        }
+        synchronized (registers) {
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] < otherRegisters[i]) {
+                    registers[i] = otherRegisters[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Улучшенная оценка Ertl (2017) по гистограмме значений регистров: в отличие от исходной формулы с переходом
+     * на линейный подсчет, не смещена и на переходе между малыми и большими количествами.
+     */
+    public long estimate() {
+
+        int m = registers.length;
+        int maxRank = Long.SIZE - precision + 1;
+        int[] histogram = new int[maxRank + 1];
+        synchronized (registers) {
+            for (byte register : registers) {
+                histogram[register]++;
+            }
+        }
+
+        double z = m * tau(1 - (double) histogram[maxRank] / m);
+        for (int rank = maxRank - 1; rank >= 1; rank--) {
+            z = 0.5 * (z + histogram[rank]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m * m / (2 * Math.log(2) * z));
+    }
+
+    private static double sigma(double x) {
+
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    /**
+     * FNV-1a по символам и перемешивание fmix64 из MurmurHash3: у String.hashCode только 32 бита.
+     */
+    static long hash(String value) {
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,203 @@
+package ru.app.user.registration.services.statistics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Скетч квантилей KLL (Karnin, Lang, Liberty) над значениями long. Значения копятся в уровнях, значение уровня h
+ * весит 2^h. Переполненный уровень сортируется, и каждое второе значение со случайным сдвигом переходит на уровень
+ * выше. Емкость уровня убывает как k * (2/3)^глубина, но не меньше {@link #MIN_LEVEL_CAPACITY}, поэтому память
+ * около 3k значений при любом числе добавленных.
+ * <p>
+ * Ошибка ранга для одного квантиля - не больше {@link #normalizedRankError(int)} с вероятностью 99%
+ * (оценка для KLL с теми же параметрами из Apache DataSketches): при k = 200 это около 1.3%.
+ * Два скетча объединяются через {@link #merge}, результат такой же точности, как у скетча по всем значениям.
+ */
+public final class KllSketch {
+
+    private static final double CAPACITY_DECAY = 2.0 / 3;
+
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private final SplittableRandom random;
+
+    private long[][] levels = {new long[MIN_LEVEL_CAPACITY]};
+    private int[] sizes = new int[1];
+    private long count;
+    private int retained;
+    private int maxRetained;
+
+    public KllSketch(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    KllSketch(int k, SplittableRandom random) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k должно быть не меньше " + MIN_LEVEL_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.random = random;
+        this.maxRetained = capacity(0);
+    }
+
+    /**
+     * Нормированная ошибка ранга одного квантиля с вероятностью 99%.
+     */
+    public static double normalizedRankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public synchronized void update(long value) {
+        append(0, value);
+        count++;
+        retained++;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Добавляет в этот скетч все значения другого; другой скетч не меняется.
+     */
+    public void merge(KllSketch other) {
+
+        long[][] otherLevels;
+        int[] otherSizes;
+        long otherCount;
+        synchronized (other) {
+            otherSizes = other.sizes.clone();
+            otherLevels = new long[otherSizes.length][];
+            for (int h = 0; h < otherSizes.length; h++) {
+                otherLevels[h] = Arrays.copyOf(other.levels[h], otherSizes[h]);
+            }
+            otherCount = other.count;
+        }
+
+        synchronized (this) {
+            while (levels.length < otherLevels.length) {
+                addLevel();
+            }
+            for (int h = 0; h < otherLevels.length; h++) {
+                for (long value : otherLevels[h]) {
+                    append(h, value);
+                }
+                retained += otherLevels[h].length;
+            }
+            count += otherCount;
+            while (retained >= maxRetained) {
+                compress();
+            }
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Значения для долей {@code fractions} (от 0 до 1): для каждой доли q - наименьшее значение, не больше
+     * которого оценочно q всех значений. Для пустого скетча - null.
+     */
+    public long[] quantiles(double... fractions) {
+
+        long[] values;
+        long[] weights;
+        long total;
+        synchronized (this) {
+            if (count == 0) {
+                return null;
+            }
+            values = new long[retained];
+            weights = new long[retained];
+            int i = 0;
+            for (int h = 0; h < levels.length; h++) {
+                for (int j = 0; j < sizes[h]; j++) {
+                    values[i] = levels[h][j];
+                    weights[i++] = 1L << h;
+                }
+            }
+            total = count;
+        }
+
+        sortByValue(values, weights);
+        long[] quantiles = new long[fractions.length];
+        for (int q = 0; q < fractions.length; q++) {
+            double target = fractions[q] * total;
+            long cumulative = 0;
+            int i = 0;
+            while (i < values.length - 1 && cumulative + weights[i] < target) {
+                cumulative += weights[i++];
+            }
+            quantiles[q] = values[i];
+        }
+        return quantiles;
+    }
+
+    private void append(int h, long value) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    /**
+     * Уплотняет самый нижний переполненный уровень. При нечетном размере одно значение остается на месте,
+     * поэтому суммарный вес значений всегда равен count.
+     */
+    private void compress() {
+
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == levels.length) {
+                addLevel();
+            }
+            long[] level = levels[h];
+            int size = sizes[h];
+            int kept = size % 2;
+            Arrays.sort(level, kept, size);
+            int offset = random.nextBoolean() ? 1 : 0;
+            for (int i = kept + offset; i < size; i += 2) {
+                append(h + 1, level[i]);
+            }
+            sizes[h] = kept;
+            retained -= (size - kept) / 2;
+            return;
+        }
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new long[MIN_LEVEL_CAPACITY];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        maxRetained = 0;
+        for (int h = 0; h < levels.length; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    private int capacity(int h) {
+        int depth = levels.length - h - 1;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private static void sortByValue(long[] values, long[] weights) {
+
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(values[a], values[b]));
+        long[] sortedValues = new long[values.length];
+        long[] sortedWeights = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+
+}
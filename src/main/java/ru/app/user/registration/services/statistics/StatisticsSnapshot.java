@@ -0,0 +1,33 @@
+package ru.app.user.registration.services.statistics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Готовый ответ GET /statistics для одного сочетания (status, isAdult). Тело не меняется после создания.
+ * lastModified - когда содержимое изменилось в последний раз, refreshedAt - когда оно было проверено.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StatisticsSnapshot {
+
+    private final byte[] body;
+
+    private final String etag;
+
+    private final Instant lastModified;
+
+    private final Instant refreshedAt;
+
+    public long ageSeconds(Instant now) {
+        return Math.max(0, Duration.between(refreshedAt, now).getSeconds());
+    }
+
+    StatisticsSnapshot refreshed(Instant now) {
+        return new StatisticsSnapshot(body, etag, lastModified, now);
+    }
+
+}
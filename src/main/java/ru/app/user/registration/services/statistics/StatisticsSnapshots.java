@@ -0,0 +1,121 @@
+package ru.app.user.registration.services.statistics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.RegistrationService;
+
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+/**
+ * Снимки статистики по всем сочетаниям (status, isAdult) для запросов без limit и курсоров
+ * (режим registration.statistics.snapshot.enabled). Пересчитываются в фоне; при only-when-changed
+ * пересчет пропускается, если счетчик изменений UserStatisticsEngine не сдвинулся.
+ * ETag вычисляется по содержимому, поэтому не меняется, пока не меняется ответ.
+ */
+@Component
+public class StatisticsSnapshots {
+
+    private static final Status[] STATUSES = {null, Status.ONLINE, Status.OFFLINE};
+
+    private static final Boolean[] AGE_GROUPS = {null, Boolean.TRUE, Boolean.FALSE};
+
+    private final RegistrationService registrationService;
+    private final UserStatisticsEngine statisticsEngine;
+    private final ObjectMapper mapper;
+    private final RegistrationProperties.Snapshot settings;
+
+    private volatile StatisticsSnapshot[] snapshots;
+
+    private long refreshedAtChange = -1;
+
+    public StatisticsSnapshots(RegistrationService registrationService, UserStatisticsEngine statisticsEngine,
+                               ObjectMapper mapper, RegistrationProperties properties) {
+        this.registrationService = registrationService;
+        this.statisticsEngine = statisticsEngine;
+        this.mapper = mapper;
+        this.settings = properties.getStatistics().getSnapshot();
+    }
+
+    /**
+     * Снимок для переданных параметров или null, если режим выключен или первый пересчет еще не прошел.
+     * Неверный статус отклоняется так же, как в getStatistics.
+     */
+    public StatisticsSnapshot get(String status, Boolean isAdult) {
+
+        StatisticsSnapshot[] current = snapshots;
+        if (!settings.isEnabled() || current == null) {
+            return null;
+        }
+
+        Status incomingStatus = status == null || status.isEmpty() ? null : registrationService.validateAndGetStatus(status);
+        return current[index(incomingStatus, isAdult)];
+    }
+
+    @Scheduled(fixedDelayString = "#{@'registration-ru.app.config.RegistrationProperties'.statistics.snapshot.refreshInterval.toMillis()}")
+    public void scheduledRefresh() {
+        if (settings.isEnabled()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Счетчик изменений читается до пересчета: запись, пришедшая во время пересчета, вызовет еще один.
+     */
+    public synchronized void refresh() {
+
+        Instant now = Instant.now();
+        long change = statisticsEngine.changeCount();
+        StatisticsSnapshot[] previous = snapshots;
+
+        if (previous != null && settings.isOnlyWhenChanged() && change == refreshedAtChange) {
+            StatisticsSnapshot[] touched = new StatisticsSnapshot[previous.length];
+            for (int i = 0; i < previous.length; i++) {
+                touched[i] = previous[i].refreshed(now);
+            }
+            snapshots = touched;
+            return;
+        }
+
+        StatisticsSnapshot[] rebuilt = new StatisticsSnapshot[STATUSES.length * AGE_GROUPS.length];
+        for (Status status : STATUSES) {
+            for (Boolean isAdult : AGE_GROUPS) {
+                int index = index(status, isAdult);
+                byte[] body = serialize(status, isAdult);
+                String etag = etag(body);
+                boolean unchanged = previous != null && previous[index].getEtag().equals(etag);
+                rebuilt[index] = unchanged
+                        ? previous[index].refreshed(now)
+                        : new StatisticsSnapshot(body, etag, now, now);
+            }
+        }
+        snapshots = rebuilt;
+        refreshedAtChange = change;
+    }
+
+    private byte[] serialize(Status status, Boolean isAdult) {
+        try {
+            return mapper.writeValueAsBytes(
+                    registrationService.getStatistics(status == null ? null : status.name(), isAdult));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String etag(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\"";
+    }
+
+    private static int index(Status status, Boolean isAdult) {
+        int statusIndex = status == null ? 0 : status == Status.ONLINE ? 1 : 2;
+        int ageIndex = isAdult == null ? 0 : isAdult ? 1 : 2;
+        return statusIndex * AGE_GROUPS.length + ageIndex;
+    }
+
+}
@@ -0,0 +1,214 @@
+package ru.app.user.registration.services.statistics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.SketchStatisticsDto;
+import ru.app.user.registration.exceptions.RegistrationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Скетчи по всем пользователям: квантили возраста ({@link KllSketch} по датам рождения, поэтому с течением
+ * времени перестраивать их не нужно) и число различных почтовых доменов ({@link HyperLogLog}).
+ * Обновляются сервисом после фиксации регистрации, при старте и по registration.sketches.rebuild-cron строятся
+ * заново одним проходом по таблице.
+ */
+@Slf4j
+@Component
+public class UserSketches {
+
+    private static final List<Double> DEFAULT_QUANTILES = List.of(0.25, 0.5, 0.75, 0.9, 0.99);
+
+    private static final int MAX_QUANTILES = 100;
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final RegistrationProperties.Sketches settings;
+    private final TransactionTemplate readOnly;
+
+    private volatile Sketches current;
+
+    /**
+     * Регистрации с начала перестроения; вне перестроения null.
+     */
+    private volatile Queue<User> captured;
+
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    public UserSketches(UserJdbcRepo userJdbcRepo, PlatformTransactionManager transactionManager,
+                        RegistrationProperties properties) {
+        this.userJdbcRepo = userJdbcRepo;
+        this.settings = properties.getSketches();
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        // проверка пропущенных проходом регистраций должна видеть тот же снимок, что и проход
+        this.readOnly.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.current = newSketches();
+    }
+
+    /**
+     * Регистрации, пришедшие с начала перестроения, копятся отдельно. В конце прохода, в той же транзакции
+     * и под блокировкой замены, из них выбираются пользователи, которых снимок прохода не содержит, - только они
+     * добавляются к построенным скетчам. Так каждый пользователь учитывается один раз, а регистрации во время
+     * замены попадают уже в новые скетчи.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${registration.sketches.rebuild-cron:0 0 0 * * *}")
+    public synchronized void rebuild() {
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Queue<User> capture = new ConcurrentLinkedQueue<>();
+        captured = capture;
+        Sketches scanned = newSketches();
+        try {
+            readOnly.executeWithoutResult(status -> {
+                userJdbcRepo.scanBirthDatesAndEmails(settings.getScanFetchSize(),
+                        (birthDate, email) -> scanned.add(birthDate, domain(email)));
+
+                Lock lock = swapLock.writeLock();
+                lock.lock();
+                try {
+                    Set<Long> ids = capture.stream().map(User::getId).collect(Collectors.toSet());
+                    Set<Long> seen = userJdbcRepo.findExistingIds(ids);
+                    capture.stream()
+                            .filter(user -> !seen.contains(user.getId()))
+                            .forEach(user -> scanned.add(user.getBirthDate(), domain(user.getEmail())));
+                    current = scanned;
+                } finally {
+                    captured = null;
+                    lock.unlock();
+                }
+            });
+        } finally {
+            captured = null;
+        }
+
+        log.info("user sketches rebuilt, users with birth date: {}", scanned.birthDates.getCount());
+    }
+
+    /**
+     * Вне перестроения без блокировки; во время него регистрация пишется и в текущие скетчи, и в накопленные.
+     */
+    public void onUserCreated(User user) {
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Sketches sketches = current;
+        if (captured == null) {
+            sketches.add(user.getBirthDate(), domain(user.getEmail()));
+            return;
+        }
+        Lock lock = swapLock.readLock();
+        lock.lock();
+        try {
+            current.add(user.getBirthDate(), domain(user.getEmail()));
+            Queue<User> capture = captured;
+            if (capture != null) {
+                capture.add(user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Квантили возраста в полных годах для долей {@code quantiles} (по умолчанию 0.25, 0.5, 0.75, 0.9, 0.99)
+     * и число различных почтовых доменов вместе с границами ошибок.
+     */
+    public SketchStatisticsDto getStatistics(List<Double> quantiles) {
+
+        if (!settings.isEnabled()) {
+            throw new RegistrationException("Скетчи статистики отключены", HttpStatus.NOT_FOUND);
+        }
+        List<Double> fractions = quantiles == null || quantiles.isEmpty() ? DEFAULT_QUANTILES : quantiles;
+        if (fractions.size() > MAX_QUANTILES) {
+            String errMessage = String.format("Превышено максимальное количество квантилей %s. Передано: %s",
+                    MAX_QUANTILES, fractions.size());
+            throw new RegistrationException(errMessage, HttpStatus.BAD_REQUEST);
+        }
+        double[] birthDateFractions = new double[fractions.size()];
+        for (int i = 0; i < fractions.size(); i++) {
+            Double fraction = fractions.get(i);
+            if (fraction == null || fraction < 0 || fraction > 1) {
+                throw new RegistrationException(String.format("Квантиль должен быть от 0 до 1: %s", fraction),
+                        HttpStatus.BAD_REQUEST);
+            }
+            // чем раньше дата рождения, тем больше возраст
+            birthDateFractions[i] = 1 - fraction;
+        }
+
+        Sketches sketches = current;
+        long[] birthDays = sketches.birthDates.quantiles(birthDateFractions);
+        LocalDate today = LocalDate.now();
+        Map<String, Integer> ageQuantiles = new LinkedHashMap<>();
+        for (int i = 0; birthDays != null && i < birthDays.length; i++) {
+            ageQuantiles.put(BigDecimal.valueOf(fractions.get(i)).stripTrailingZeros().toPlainString(),
+                    Period.between(LocalDate.ofEpochDay(birthDays[i]), today).getYears());
+        }
+
+        SketchStatisticsDto statisticsDto = new SketchStatisticsDto();
+        statisticsDto.setAgeCount(sketches.birthDates.getCount());
+        statisticsDto.setAgeQuantiles(ageQuantiles);
+        statisticsDto.setAgeQuantileRankError(KllSketch.normalizedRankError(settings.getQuantileK()));
+        statisticsDto.setEmailDomainsCount(sketches.domains.estimate());
+        statisticsDto.setEmailDomainsRelativeError(HyperLogLog.relativeError(settings.getDomainPrecision()));
+        return statisticsDto;
+    }
+
+    private static String domain(String email) {
+        if (email == null || email.lastIndexOf('@') < 0) {
+            return null;
+        }
+        return email.substring(email.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private Sketches newSketches() {
+        return new Sketches(new KllSketch(settings.getQuantileK()), new HyperLogLog(settings.getDomainPrecision()));
+    }
+
+    private static final class Sketches {
+
+        private final KllSketch birthDates;
+        private final HyperLogLog domains;
+
+        private Sketches(KllSketch birthDates, HyperLogLog domains) {
+            this.birthDates = birthDates;
+            this.domains = domains;
+        }
+
+        private void add(LocalDate birthDate, String domain) {
+            if (birthDate != null) {
+                birthDates.update(birthDate.toEpochDay());
+            }
+            if (domain != null) {
+                domains.add(domain);
+            }
+        }
+
+    }
+
+}
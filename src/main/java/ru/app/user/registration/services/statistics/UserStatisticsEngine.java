@@ -0,0 +1,244 @@
+package ru.app.user.registration.services.statistics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.presence.PresenceTable;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счетчики пользователей и суммы возрастов по ячейкам (статус, совершеннолетие).
+ * Ячейки не пересекаются, поэтому объединение фильтров по статусу и возрасту считается без дублей.
+ * Обновляется сервисом после фиксации записи, при старте восстанавливается одним агрегирующим запросом.
+ * Возраст зависит от текущей даты, поэтому ячейки также перестраиваются раз в сутки.
+ */
+@Slf4j
+@Component
+public class UserStatisticsEngine {
+
+    public static final int ADULT_AGE = 18;
+
+    private final UserJdbcRepo userJdbcRepo;
+    private final PresenceTable presenceTable;
+    private final TransactionTemplate readOnly;
+
+    private volatile Cell[] cells = newCells();
+
+    /**
+     * Последнее состояние пользователей, изменившихся с начала перестроения; вне перестроения null.
+     */
+    private volatile Map<Long, Change> captured;
+
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private final LongAdder changes = new LongAdder();
+
+    public UserStatisticsEngine(UserJdbcRepo userJdbcRepo, PresenceTable presenceTable,
+                                PlatformTransactionManager transactionManager) {
+        this.userJdbcRepo = userJdbcRepo;
+        this.presenceTable = presenceTable;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        // статусы изменившихся пользователей должны читаться из того же снимка, что и агрегат
+        this.readOnly.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Агрегат строится в новые ячейки, а последнее состояние пользователей, изменившихся с начала перестроения,
+     * копится отдельно. В конце, в той же транзакции и под блокировкой замены, для них читается статус из снимка
+     * агрегата, и каждый переносится из ячейки снимка в свою текущую. Так каждый пользователь учитывается один раз,
+     * а изменения во время замены попадают уже в новые ячейки.
+     * Несохраненные статусы присутствия уже учтены в счетчиках, поэтому перед агрегатом они сбрасываются в БД.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${registration.statistics.rebuild-cron:0 0 0 * * *}")
+    public synchronized void rebuild() {
+
+        Map<Long, Change> capture = new ConcurrentHashMap<>();
+        captured = capture;
+        Cell[] rebuilt = newCells();
+        try {
+            if (presenceTable.isEnabled()) {
+                presenceTable.flush();
+            }
+            readOnly.executeWithoutResult(status -> {
+                userJdbcRepo.aggregateByStatusAndAge(adultCutoff(), (userStatus, adult, count, ageSum) -> {
+                    Cell cell = rebuilt[index(userStatus, adult)];
+                    cell.count.add(count);
+                    cell.ageSum.add(ageSum);
+                });
+
+                Lock lock = swapLock.writeLock();
+                lock.lock();
+                try {
+                    Map<Long, Status> stored = userJdbcRepo.findStatuses(capture.keySet());
+                    capture.forEach((id, change) -> {
+                        Status storedStatus = stored.get(id);
+                        int from = storedStatus == null ? -1 : index(storedStatus, isAdultCell(change.to));
+                        move(rebuilt, from, change.to, change.age);
+                    });
+                    cells = rebuilt;
+                } finally {
+                    captured = null;
+                    lock.unlock();
+                }
+            });
+        } finally {
+            captured = null;
+        }
+        changes.increment();
+
+        log.info("user statistics rebuilt, total users: {}", totalCount());
+    }
+
+    public void onUserCreated(Long id, Status status, Integer age) {
+        apply(id, -1, index(status, isAdult(age)), ageOrZero(age));
+    }
+
+    public void onStatusChanged(Long id, Status oldStatus, Status newStatus, Integer age) {
+
+        if (oldStatus == newStatus) {
+            return;
+        }
+
+        boolean adult = isAdult(age);
+        apply(id, index(oldStatus, adult), index(newStatus, adult), ageOrZero(age));
+    }
+
+    /**
+     * Переносит пользователя из ячейки {@code from} (-1 - новый пользователь) в ячейку {@code to}.
+     * Вне перестроения без блокировки; во время него запоминается и итоговая ячейка пользователя.
+     */
+    private void apply(Long id, int from, int to, int age) {
+
+        Cell[] current = cells;
+        if (captured == null) {
+            move(current, from, to, age);
+        } else {
+            Lock lock = swapLock.readLock();
+            lock.lock();
+            try {
+                move(cells, from, to, age);
+                Map<Long, Change> capture = captured;
+                if (capture != null) {
+                    capture.put(id, new Change(to, age));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        changes.increment();
+    }
+
+    private static void move(Cell[] target, int from, int to, int age) {
+        if (from >= 0) {
+            target[from].count.decrement();
+            target[from].ageSum.add(-age);
+        }
+        target[to].count.increment();
+        target[to].ageSum.add(age);
+    }
+
+    /**
+     * Счетчик изменений: растет при каждой записи и перестроении. По нему видно, были ли записи с прошлой проверки.
+     */
+    public long changeCount() {
+        return changes.sum();
+    }
+
+    public long totalCount() {
+        long total = 0;
+        for (Cell cell : cells) {
+            total += cell.count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Средний возраст пользователей, попавших хотя бы под один из переданных фильтров.
+     * Без фильтров возвращает 0.
+     */
+    public int averageAge(Status status, Boolean isAdult) {
+
+        if (status == null && isAdult == null) {
+            return 0;
+        }
+
+        Cell[] current = cells;
+        long count = 0;
+        long ageSum = 0;
+        for (Status cellStatus : Status.values()) {
+            for (boolean adult : new boolean[]{false, true}) {
+                boolean matches = cellStatus == status || (isAdult != null && isAdult == adult);
+                if (matches) {
+                    Cell cell = current[index(cellStatus, adult)];
+                    count += cell.count.sum();
+                    ageSum += cell.ageSum.sum();
+                }
+            }
+        }
+
+        return count == 0 ? 0 : (int) (ageSum / count);
+    }
+
+    /**
+     * Пользователь совершеннолетний, если родился не позже этой даты.
+     */
+    public static LocalDate adultCutoff() {
+        return LocalDate.now().minusYears(ADULT_AGE);
+    }
+
+    public static boolean isAdult(Integer age) {
+        return age != null && age >= ADULT_AGE;
+    }
+
+    private static int ageOrZero(Integer age) {
+        return age == null ? 0 : age;
+    }
+
+    private static int index(Status status, boolean adult) {
+        return status.ordinal() * 2 + (adult ? 1 : 0);
+    }
+
+    private static boolean isAdultCell(int index) {
+        return index % 2 == 1;
+    }
+
+    private static Cell[] newCells() {
+        Cell[] cells = new Cell[Status.values().length * 2];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell();
+        }
+        return cells;
+    }
+
+    private static final class Cell {
+        final LongAdder count = new LongAdder();
+        final LongAdder ageSum = new LongAdder();
+    }
+
+    private static final class Change {
+
+        final int to;
+        final int age;
+
+        Change(int to, int age) {
+            this.to = to;
+            this.age = age;
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package ru.app.user.registration.services.validation;
+
+import org.apache.commons.validator.routines.EmailValidator;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Проверка почты и даты рождения без исключений на пути отказа.
+ * Дата в каноническом виде dd.MM.yyyy разбирается вручную с тем же результатом, что и
+ * DateTimeFormatter.ofPattern("dd.MM.yyyy") (ResolverStyle.SMART); форматтеру отдаются только строки длиннее
+ * канонической из допустимых символов (год больше четырех цифр со знаком).
+ * Почта сначала проходит дешевые проверки, которые отсекают заведомо неверные адреса, и только потом EmailValidator.
+ */
+@Component
+public class RegistrationValidator {
+
+    static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private static final int DATE_LENGTH = 10;
+    private static final int MAX_USER_LENGTH = 64;
+    private static final int MAX_DOMAIN_LENGTH = 253;
+
+    private final EmailValidator emailValidator = EmailValidator.getInstance();
+
+    public ValidationResult<String> validateEmail(String email) {
+
+        if (isObviouslyBadEmail(email) || !emailValidator.isValid(email)) {
+            String errMessage = String.format("Неверный формат почты %s. Пример почты: name@example.com", email);
+            return ValidationResult.invalid(ValidationError.Reason.BAD_EMAIL, errMessage);
+        }
+        return ValidationResult.valid(email);
+    }
+
+    public ValidationResult<LocalDate> validateDate(String date) {
+
+        if (date == null || date.isEmpty()) {
+            return ValidationResult.invalid(ValidationError.Reason.EMPTY_DATE, "Отсутствует дата");
+        }
+
+        LocalDate parsed = parseDate(date);
+        if (parsed == null) {
+            String errMessage = String.format("Неверный формат даты %s . Пример формата даты: 31.12.2001", date);
+            return ValidationResult.invalid(ValidationError.Reason.BAD_DATE, errMessage);
+        }
+        return ValidationResult.valid(parsed);
+    }
+
+    public ValidationResult<LocalDate> validateBirthDate(String date, LocalDate today) {
+
+        ValidationResult<LocalDate> result = validateDate(date);
+        if (result.isValid() && result.getValue().isAfter(today)) {
+            String errMessage = String.format("Дата рождения не может превышать текущую дату. Введенная дата: %s", date);
+            return ValidationResult.invalid(ValidationError.Reason.FUTURE_DATE, errMessage);
+        }
+        return result;
+    }
+
+    /**
+     * @return дата или null, если строка не разбирается
+     */
+    static LocalDate parseDate(String date) {
+
+        int length = date.length();
+        if (length < DATE_LENGTH) {
+            return null;
+        }
+
+        if (length == DATE_LENGTH) {
+            if (date.charAt(2) != '.' || date.charAt(5) != '.') {
+                return null;
+            }
+            int day = twoDigits(date, 0);
+            int month = twoDigits(date, 3);
+            int year = fourDigits(date, 6);
+            return day < 0 || month < 0 || year < 0 ? null : resolveSmart(day, month, year);
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = date.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '+' && c != '-') {
+                return null;
+            }
+        }
+
+        try {
+            return LocalDate.parse(date, DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate resolveSmart(int day, int month, int year) {
+
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+
+        int monthLength = Month.of(month).length(Year.isLeap(year));
+        return LocalDate.of(year, month, Math.min(day, monthLength));
+    }
+
+    private static int twoDigits(String s, int from) {
+        int high = digit(s.charAt(from));
+        int low = digit(s.charAt(from + 1));
+        return high < 0 || low < 0 ? -1 : high * 10 + low;
+    }
+
+    private static int fourDigits(String s, int from) {
+        int high = twoDigits(s, from);
+        int low = twoDigits(s, from + 2);
+        return high < 0 || low < 0 ? -1 : high * 100 + low;
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    /**
+     * Каждое условие здесь ведет к отказу и в EmailValidator: адрес делится по последнему '@',
+     * пользователь до 64 символов, домен без пробелов, до 253 символов и с точкой (кроме IP в скобках).
+     */
+    static boolean isObviouslyBadEmail(String email) {
+
+        if (email == null || email.isEmpty() || email.endsWith(".")) {
+            return true;
+        }
+
+        int at = email.lastIndexOf('@');
+        int domainLength = email.length() - at - 1;
+        if (at < 1 || domainLength < 1 || domainLength > MAX_DOMAIN_LENGTH || at > MAX_USER_LENGTH) {
+            return true;
+        }
+
+        boolean hasDot = false;
+        for (int i = at + 1; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c <= ' ') {
+                return true;
+            }
+            hasDot |= c == '.';
+        }
+        return !hasDot && email.charAt(at + 1) != '[';
+    }
+
+}
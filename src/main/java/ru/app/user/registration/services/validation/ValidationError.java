@@ -0,0 +1,30 @@
+package ru.app.user.registration.services.validation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import ru.app.user.registration.exceptions.RegistrationException;
+
+/**
+ * Причина отказа в проверке входных данных. Обычный объект без стека вызовов:
+ * исключение создается только там, где ошибку нужно вернуть клиенту через обработчик.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class ValidationError {
+
+    private final Reason reason;
+    private final String message;
+
+    public RegistrationException toException() {
+        return new RegistrationException(message, HttpStatus.CONFLICT);
+    }
+
+    public enum Reason {
+        BAD_EMAIL,
+        EMPTY_DATE,
+        BAD_DATE,
+        FUTURE_DATE
+    }
+
+}
@@ -0,0 +1,33 @@
+package ru.app.user.registration.services.validation;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ValidationResult<T> {
+
+    private final T value;
+    private final ValidationError error;
+
+    public static <T> ValidationResult<T> valid(T value) {
+        return new ValidationResult<>(value, null);
+    }
+
+    public static <T> ValidationResult<T> invalid(ValidationError.Reason reason, String message) {
+        return new ValidationResult<>(null, new ValidationError(reason, message));
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public T orElseThrow() {
+        if (error != null) {
+            throw error.toException();
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,17 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto: update). Базы, созданные до перехода на миграции,
+-- регистрируются с версией 0 (baseline-on-migrate) и проходят этот скрипт: все операции условные.
+CREATE TABLE IF NOT EXISTS users
+(
+    id         BIGSERIAL PRIMARY KEY,
+    name       VARCHAR(255),
+    born_date  VARCHAR(255),
+    email      VARCHAR(255),
+    new_status INT4,
+    old_status INT4
+);
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS birth_date DATE;
+
+CREATE INDEX IF NOT EXISTS users_new_status_idx ON users (new_status);
+CREATE INDEX IF NOT EXISTS users_birth_date_idx ON users (birth_date);
+CREATE INDEX IF NOT EXISTS users_email_idx ON users (email);
@@ -0,0 +1,2 @@
+-- Колонка age не пишется и не читается с перехода на birth_date.
+ALTER TABLE users DROP COLUMN IF EXISTS age;
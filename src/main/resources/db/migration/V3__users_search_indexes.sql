@@ -0,0 +1,11 @@
+-- Поиск по началу и с опечатками в name и email без учета регистра (GET /registration/search).
+-- text_pattern_ops нужен, чтобы like 'префикс%' шел по btree при любой сортировке базы.
+-- lower() следует LC_CTYPE базы: при локали C без учета регистра сравнивается только латиница.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS users_lower_email_prefix_idx ON users (lower(email) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS users_lower_name_prefix_idx ON users (lower(name) text_pattern_ops);
+
+-- Триграммы для нечеткого поиска (операторы <% и word_similarity).
+CREATE INDEX IF NOT EXISTS users_lower_email_trgm_idx ON users USING gin (lower(email) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS users_lower_name_trgm_idx ON users USING gin (lower(name) gin_trgm_ops);
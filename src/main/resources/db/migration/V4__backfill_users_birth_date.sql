@@ -0,0 +1,13 @@
+-- Заполняет birth_date у строк, созданных до появления колонки, из born_date по правилу RegistrationValidator:
+-- dd.MM.yyyy, день больше числа дней в месяце сдвигается на последний день месяца (ResolverStyle.SMART).
+-- Строки с другим форматом, в том числе с годом длиннее четырех цифр, остаются с пустой birth_date.
+UPDATE users u
+SET birth_date = v.first_day + least(v.day, date_part('day', v.first_day + interval '1 month - 1 day')::int) - 1
+FROM (SELECT id,
+             make_date(substr(born_date, 7, 4)::int, substr(born_date, 4, 2)::int, 1) AS first_day,
+             substr(born_date, 1, 2)::int AS day
+      FROM users
+      WHERE birth_date IS NULL
+        AND born_date ~ '^(0[1-9]|[12][0-9]|3[01])\.(0[1-9]|1[0-2])\.[0-9]{4}$'
+        AND substr(born_date, 7, 4) <> '0000') v
+WHERE u.id = v.id;
@@ -0,0 +1,95 @@
+package ru.app.user.registration.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сериализация и разбор StatisticsDto на USERS пользователей в JSON, Smile и CBOR с теми же настройками
+ * Jackson2ObjectMapperBuilder, что у конвертеров HTTP. Размер тела (и после gzip) печатается при подготовке.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodingBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private static final String[] NAMES = {"Борис", "Анна", "Екатерина Сергеевна", "Олег", "Вера Николаевна"};
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private StatisticsDto statistics;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        switch (format) {
+            case "smile":
+                mapper = Jackson2ObjectMapperBuilder.smile().build();
+                break;
+            case "cbor":
+                mapper = Jackson2ObjectMapperBuilder.cbor().build();
+                break;
+            default:
+                mapper = Jackson2ObjectMapperBuilder.json().build();
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+        LocalDate today = LocalDate.now();
+        List<UserDto> byStatus = new ArrayList<>(USERS / 2);
+        List<UserDto> byAge = new ArrayList<>(USERS / 2);
+        for (int i = 0; i < USERS; i++) {
+            UserDto user = new UserDto();
+            user.setName(NAMES[i % NAMES.length]);
+            user.setBornDate(today.minusDays(1 + i % (60 * 365)).format(formatter));
+            user.setAge(i % 60);
+            user.setEmail("user" + i + "@bench.ru");
+            user.setCurrentStatus((i % 2 == 0 ? Status.ONLINE : Status.OFFLINE).name());
+            (i % 2 == 0 ? byStatus : byAge).add(user);
+        }
+        statistics = new StatisticsDto();
+        statistics.setTotalUsersCount((long) USERS);
+        statistics.setUsersByStatus(byStatus);
+        statistics.setUsersByStatusNextCursor((long) USERS - 1);
+        statistics.setUsersByAge(byAge);
+        statistics.setUsersByAgeNextCursor((long) USERS);
+        statistics.setAverageAge(30);
+
+        payload = mapper.writeValueAsBytes(statistics);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        System.out.printf("%n%s: %d байт, gzip %d байт%n", format, payload.length, compressed.size());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(statistics);
+    }
+
+    @Benchmark
+    public StatisticsDto deserialize() throws IOException {
+        return mapper.readValue(payload, StatisticsDto.class);
+    }
+
+}
@@ -0,0 +1,280 @@
+package ru.app.user.registration.benchmarks;
+
+import org.springframework.data.domain.Pageable;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.StatusTransition;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.db.repositories.UserRepo;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.presence.PresenceEntry;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Таблица users в памяти для замеров сервиса без базы: UserRepo (через прокси) и UserJdbcRepo
+ * работают над одной упорядоченной по id картой. Реализованы только методы, которые вызывает сервис.
+ */
+class InMemoryUserStore {
+
+    private final ConcurrentSkipListMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    UserRepo userRepo() {
+        return (UserRepo) Proxy.newProxyInstance(UserRepo.class.getClassLoader(), new Class<?>[]{UserRepo.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "save":
+                            return save((User) args[0]);
+                        case "findById":
+                            return Optional.ofNullable(users.get((Long) args[0]));
+                        case "findAllById":
+                            return findAllById((Iterable<?>) args[0]);
+                        case "findByEmail":
+                            Long id = idByEmail.get((String) args[0]);
+                            return id == null ? null : users.get(id);
+                        case "findByNewStatusAndIdGreaterThanOrderByIdAsc":
+                            return page(user -> user.getNewStatus() == args[0], (Long) args[1],
+                                    ((Pageable) args[2]).getPageSize());
+                        case "findAdults":
+                            return page(user -> isAdult(user, (LocalDate) args[0]), (Long) args[1], (Integer) args[2]);
+                        case "findTeens":
+                            return page(user -> isTeen(user, (LocalDate) args[0]), (Long) args[1], (Integer) args[2]);
+                        case "summarize":
+                            return summarize((boolean) args[0], (int) args[1], (boolean) args[2], (boolean) args[3],
+                                    (LocalDate) args[4]);
+                        case "shiftStatus":
+                            return Optional.ofNullable(shift((Long) args[0], Status.values()[(int) args[1]]))
+                                    .map(InMemoryUserStore::transitionOf);
+                        case "count":
+                            return (long) users.size();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "InMemoryUserRepo";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    UserJdbcRepo userJdbcRepo() {
+        return new UserJdbcRepo(null) {
+
+            @Override
+            public Set<String> findExistingEmails(Collection<String> emails) {
+                Set<String> existing = new HashSet<>();
+                for (String email : emails) {
+                    if (idByEmail.containsKey(email)) {
+                        existing.add(email);
+                    }
+                }
+                return existing;
+            }
+
+            @Override
+            public long[] allocateIds(int count, int blockSize) {
+                long first = sequence.getAndAdd(count) + 1;
+                long[] ids = new long[count];
+                for (int i = 0; i < count; i++) {
+                    ids[i] = first + i;
+                }
+                return ids;
+            }
+
+            @Override
+            public void insertAll(List<User> batch, int batchSize) {
+                batch.forEach(InMemoryUserStore.this::put);
+            }
+
+            @Override
+            public void aggregateByStatusAndAge(LocalDate adultCutoff, AggregateHandler handler) {
+                for (Status status : Status.values()) {
+                    for (boolean adult : new boolean[]{false, true}) {
+                        long count = 0;
+                        long ageSum = 0;
+                        for (User user : users.values()) {
+                            if (user.getNewStatus() == status && isAdult(user, adultCutoff) == adult) {
+                                count++;
+                                ageSum += user.getAge() == null ? 0 : user.getAge();
+                            }
+                        }
+                        handler.accept(status, adult, count, ageSum);
+                    }
+                }
+            }
+
+            @Override
+            public void shiftStatuses(Map<Long, Status> statuses, TransitionHandler handler) {
+                statuses.forEach((id, status) -> {
+                    User user = shift(id, status);
+                    if (user != null) {
+                        handler.accept(id, user.getNewStatus(), user.getOldStatus(), user.getAge());
+                    }
+                });
+            }
+
+            @Override
+            public void writeStatuses(Map<Long, PresenceEntry> entries) {
+                entries.forEach((id, entry) -> {
+                    User user = users.get(id);
+                    if (user != null) {
+                        user.setNewStatus(entry.getNewStatus());
+                        user.setOldStatus(entry.getOldStatus());
+                    }
+                });
+            }
+
+            @Override
+            public List<User> findByIds(Collection<Long> ids) {
+                return findAllById(new TreeSet<>(ids));
+            }
+
+            @Override
+            public void streamByStatus(Status status, int fetchSize, Consumer<User> consumer) {
+                users.values().stream().filter(user -> user.getNewStatus() == status).forEach(consumer);
+            }
+
+            @Override
+            public void streamByAge(boolean adult, LocalDate adultCutoff, int fetchSize, Consumer<User> consumer) {
+                users.values().stream()
+                        .filter(user -> adult ? isAdult(user, adultCutoff) : isTeen(user, adultCutoff))
+                        .forEach(consumer);
+            }
+
+        };
+    }
+
+    private User save(User user) {
+        if (user.getId() == null) {
+            user.setId(sequence.incrementAndGet());
+        }
+        put(user);
+        return user;
+    }
+
+    private void put(User user) {
+        users.put(user.getId(), user);
+        idByEmail.put(user.getEmail(), user.getId());
+    }
+
+    private List<User> findAllById(Iterable<?> ids) {
+        List<User> found = new ArrayList<>();
+        for (Object id : ids) {
+            User user = users.get((Long) id);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    private List<User> page(Predicate<User> filter, Long after, int limit) {
+        List<User> page = new ArrayList<>(limit);
+        for (User user : users.tailMap(after, false).values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (filter.test(user)) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    private User shift(Long id, Status status) {
+        return users.computeIfPresent(id, (key, user) -> {
+            user.setOldStatus(user.getNewStatus());
+            user.setNewStatus(status);
+            return user;
+        });
+    }
+
+    private UserStatisticsSummary summarize(boolean byStatus, int status, boolean byAdult, boolean byTeen,
+                                            LocalDate adultCutoff) {
+        long matched = 0;
+        long ageSum = 0;
+        for (User user : users.values()) {
+            boolean matches = (byStatus && user.getNewStatus().ordinal() == status)
+                    || (byAdult && isAdult(user, adultCutoff))
+                    || (byTeen && isTeen(user, adultCutoff));
+            if (matches) {
+                matched++;
+                ageSum += user.getAge() == null ? 0 : user.getAge();
+            }
+        }
+        long total = users.size();
+        long matchedCount = matched;
+        Double averageAge = matched == 0 ? null : (double) ageSum / matched;
+        return new UserStatisticsSummary() {
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+
+            @Override
+            public Long getMatched() {
+                return matchedCount;
+            }
+
+            @Override
+            public Double getAverageAge() {
+                return averageAge;
+            }
+
+        };
+    }
+
+    private static boolean isAdult(User user, LocalDate adultCutoff) {
+        return user.getBirthDate() != null && !user.getBirthDate().isAfter(adultCutoff);
+    }
+
+    private static boolean isTeen(User user, LocalDate adultCutoff) {
+        return user.getBirthDate() != null && user.getBirthDate().isAfter(adultCutoff);
+    }
+
+    private static StatusTransition transitionOf(User user) {
+        return new StatusTransition() {
+
+            @Override
+            public Long getId() {
+                return user.getId();
+            }
+
+            @Override
+            public Integer getNewStatus() {
+                return user.getNewStatus().ordinal();
+            }
+
+            @Override
+            public Integer getOldStatus() {
+                return user.getOldStatus().ordinal();
+            }
+
+            @Override
+            public Integer getAge() {
+                return user.getAge();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,322 @@
+package ru.app.user.registration.benchmarks;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон всего стека: Tomcat, пул соединений, Hibernate и PostgreSQL за маршрутами
+ * RegistrationController. Нагрузка открытая: запросы приходят пуассоновским потоком с частотой load.rate
+ * независимо от ответов, маршрут выбирается по долям load.mix. Задержка отсчитывается от запланированного
+ * момента отправки, поэтому ожидание в очереди перед сервером входит в нее. Если ответа ждут уже
+ * load.max-in-flight запросов, очередной запрос не отправляется и учитывается как overrun.
+ * <p>
+ * По каждому маршруту выводятся пропускная способность и p50/p99/p999, полные распределения HdrHistogram
+ * сохраняются в load.output/&lt;route&gt;.hgrm для сравнения прогонов (например, в HistogramLogAnalyzer).
+ * По умолчанию сервер поднимается над встроенным PostgreSQL и заполняется load.users пользователями;
+ * load.url направляет нагрузку на уже запущенный и заполненный сервер, load.args добавляет аргументы запуска.
+ * Запуск: mvn -P load test-compile exec:exec -Dload.rate=300 -Dload.duration=60s
+ * -Dload.mix=getUser=70,changeStatus=20,create=8,statistics=2
+ */
+public class LoadGenerator {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Settings settings;
+    private final Map<Route, RouteStats> stats = new EnumMap<>(Route.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final LongAdder overruns = new LongAdder();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private LoadGenerator(Settings settings) {
+        this.settings = settings;
+        for (Route route : Route.values()) {
+            stats.put(route, new RouteStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Settings settings = Settings.fromSystemProperties();
+        if (settings.url != null) {
+            new LoadGenerator(settings).run(settings.url);
+            return;
+        }
+        try (RegistrationBackend backend = RegistrationBackend.embedded(settings.appArgs)) {
+            System.out.printf("Заполнение: %s пользователей%n", settings.users);
+            backend.seed(settings.users);
+            new LoadGenerator(settings).run(backend.baseUrl());
+        }
+    }
+
+    private void run(String baseUrl) throws Exception {
+
+        ExecutorService responses = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(responses)
+                .build();
+
+        System.out.printf("Нагрузка на %s: %s запросов/с, прогрев %s, замер %s, смесь %s%n",
+                baseUrl, settings.rate, settings.warmup, settings.duration, settings.mix);
+        SplittableRandom random = new SplittableRandom(42);
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate;
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup.toNanos();
+        long end = measureFrom + settings.duration.toNanos();
+
+        long intended = start;
+        while (true) {
+            intended += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+            if (intended >= end) {
+                break;
+            }
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            // в замер попадают только запросы, запланированные после прогрева
+            boolean measured = intended >= measureFrom;
+
+            Route route = settings.mix.pick(random);
+            if (inFlight.incrementAndGet() > settings.maxInFlight) {
+                inFlight.decrementAndGet();
+                if (measured) {
+                    overruns.increment();
+                }
+                continue;
+            }
+            long scheduled = intended;
+            RouteStats routeStats = stats.get(route);
+            client.sendAsync(request(route, baseUrl, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (measured) {
+                            routeStats.record(System.nanoTime() - scheduled, error == null ? response.statusCode() : -1);
+                        }
+                    });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        report(settings.duration.toNanos() / 1e9);
+        responses.shutdownNow();
+    }
+
+    private HttpRequest request(Route route, String baseUrl, SplittableRandom random) {
+
+        long id = random.nextLong(1, settings.users + 1);
+        switch (route) {
+            case GET_USER:
+                return get(baseUrl + "/registration/" + id);
+            case CHANGE_STATUS:
+                String status = random.nextBoolean() ? "ONLINE" : "OFFLINE";
+                return get(baseUrl + "/registration/status/" + id + "?status=" + status);
+            case CREATE:
+                String body = String.format("{\"name\":\"Нагрузка\",\"email\":\"load-%s-%s@bench.ru\",\"bornDate\":\"11.12.1999\"}",
+                        runId, created.incrementAndGet());
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/registration/create"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            default:
+                return get(baseUrl + "/registration/statistics?status=online&isAdult=true&limit=20");
+        }
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).build();
+    }
+
+    private void report(double seconds) throws IOException {
+
+        Files.createDirectories(settings.output);
+        Histogram total = new Histogram(3);
+        System.out.printf("%n%-14s %9s %8s %9s %9s %9s %9s %9s%n",
+                "route", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<Route, RouteStats> entry : stats.entrySet()) {
+            Histogram histogram = entry.getValue().latencies.getIntervalHistogram();
+            total.add(histogram);
+            print(entry.getKey().label, histogram, entry.getValue().errors(), seconds);
+            write(entry.getKey().label, histogram);
+            if (!entry.getValue().statuses.isEmpty()) {
+                System.out.printf("%14s ошибки по статусам: %s%n", "", entry.getValue().statuses);
+            }
+        }
+        print("total", total, stats.values().stream().mapToLong(RouteStats::errors).sum(), seconds);
+        write("total", total);
+        System.out.printf("overrun (не отправлено из-за load.max-in-flight): %s%nраспределения: %s%n",
+                overruns.sum(), settings.output.toAbsolutePath());
+    }
+
+    private static void print(String label, Histogram histogram, long errors, double seconds) {
+        System.out.printf("%-14s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", label,
+                histogram.getTotalCount() + errors, errors, (histogram.getTotalCount() + errors) / seconds,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private void write(String label, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(settings.output.resolve(label + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    enum Route {
+
+        GET_USER("getUser"),
+        CHANGE_STATUS("changeStatus"),
+        CREATE("create"),
+        STATISTICS("statistics");
+
+        private final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+
+        static Route byLabel(String label) {
+            for (Route route : values()) {
+                if (route.label.equalsIgnoreCase(label)) {
+                    return route;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный маршрут в load.mix: " + label);
+        }
+
+    }
+
+    /**
+     * Задержки успешных ответов (статус ниже 400) в наносекундах; остальные ответы считаются по статусу,
+     * -1 - ошибка соединения.
+     */
+    private static final class RouteStats {
+
+        private final Recorder latencies = new Recorder(3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(long latencyNanos, int status) {
+            if (status > 0 && status < 400) {
+                latencies.recordValue(latencyNanos);
+            } else {
+                statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            }
+        }
+
+        long errors() {
+            return statuses.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+    }
+
+    /**
+     * Доли маршрутов, например getUser=70,changeStatus=20,create=8,statistics=2. Сумма долей не обязана быть 100.
+     */
+    static final class Mix {
+
+        private final Route[] routes;
+        private final double[] cumulative;
+        private final String text;
+
+        private Mix(String text) {
+            this.text = text;
+            List<Route> parsedRoutes = new ArrayList<>();
+            List<Double> weights = new ArrayList<>();
+            for (String part : text.split(",")) {
+                String[] pair = part.trim().split("=");
+                parsedRoutes.add(Route.byLabel(pair[0].trim()));
+                weights.add(Double.parseDouble(pair[1].trim()));
+            }
+            double sum = weights.stream().mapToDouble(Double::doubleValue).sum();
+            routes = parsedRoutes.toArray(new Route[0]);
+            cumulative = new double[routes.length];
+            double acc = 0;
+            for (int i = 0; i < routes.length; i++) {
+                acc += weights.get(i) / sum;
+                cumulative[i] = acc;
+            }
+        }
+
+        Route pick(SplittableRandom random) {
+            double value = random.nextDouble();
+            for (int i = 0; i < cumulative.length - 1; i++) {
+                if (value < cumulative[i]) {
+                    return routes[i];
+                }
+            }
+            return routes[routes.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+    }
+
+    private static final class Settings {
+
+        private double rate;
+        private Duration warmup;
+        private Duration duration;
+        private Mix mix;
+        private int users;
+        private int maxInFlight;
+        private String url;
+        private String[] appArgs;
+        private Path output;
+
+        static Settings fromSystemProperties() {
+            Settings settings = new Settings();
+            settings.rate = Double.parseDouble(property("load.rate", "200"));
+            settings.warmup = DurationStyle.detectAndParse(property("load.warmup", "10s"));
+            settings.duration = DurationStyle.detectAndParse(property("load.duration", "60s"));
+            settings.mix = new Mix(property("load.mix", "getUser=70,changeStatus=20,create=8,statistics=2"));
+            settings.users = Integer.parseInt(property("load.users", "10000"));
+            settings.maxInFlight = Integer.parseInt(property("load.max-in-flight", "2000"));
+            settings.url = property("load.url", null);
+            String appArgs = property("load.args", null);
+            settings.appArgs = appArgs == null ? new String[0] : appArgs.trim().split("\\s+");
+            settings.output = Path.of(property("load.output", "target/load"));
+            return settings;
+        }
+
+        /**
+         * Пустое значение равносильно отсутствию: так профиль maven передает незаданные свойства.
+         */
+        private static String property(String name, String defaultValue) {
+            String value = System.getProperty(name);
+            return value == null || value.isBlank() ? defaultValue : value;
+        }
+
+    }
+
+}
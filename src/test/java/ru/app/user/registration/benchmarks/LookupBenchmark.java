@@ -0,0 +1,74 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
+import ru.app.user.registration.services.RegistrationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение batch случайных пользователей над встроенным PostgreSQL: один вызов getUsers против batch вызовов
+ * getUser. Кэш либо выключен, либо вмещает десятую часть таблицы, так что почти все id - промахи.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=LookupBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    private static final int TABLE_SIZE = 100_000;
+
+    @Param({"10", "100", "1000"})
+    public int batch;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private RegistrationBackend backend;
+    private RegistrationService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = RegistrationBackend.embedded("--registration.cache.enabled=" + cache,
+                "--registration.cache.maximum-size=" + TABLE_SIZE / 10);
+        backend.seed(TABLE_SIZE);
+        service = backend.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        backend.close();
+    }
+
+    @Benchmark
+    public List<UserLookupResultDto> getUsers() {
+        return service.getUsers(randomIds());
+    }
+
+    @Benchmark
+    public List<UserDto> getUserLoop() {
+        List<Long> ids = randomIds();
+        List<UserDto> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            users.add(service.getUser(id));
+        }
+        return users;
+    }
+
+    private List<Long> randomIds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> ids = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            ids.add(random.nextLong(1, TABLE_SIZE + 1));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,61 @@
+package ru.app.user.registration.benchmarks;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.services.RegistrationService;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена записи одного замера так, как это делают фильтр http.server.requests и метрики репозиториев:
+ * поиск таймера по тегам и запись в гистограмму с границами из application.yml.
+ * Для масштаба рядом стоит getUser из кэша над таблицей в памяти, самый быстрый путь сервиса.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private static final int TABLE_SIZE = 1000;
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    private RegistrationService service;
+
+    @Setup
+    public void setUp() {
+        RegistrationBackend backend = RegistrationBackend.inMemory();
+        backend.seed(TABLE_SIZE);
+        service = backend.service();
+    }
+
+    @Benchmark
+    public UserDto getUser() {
+        return service.getUser(ThreadLocalRandom.current().nextLong(1, TABLE_SIZE + 1));
+    }
+
+    @Benchmark
+    public UserDto getUserTimed() {
+        long start = System.nanoTime();
+        UserDto userDto = getUser();
+        Timer.builder("http.server.requests")
+                .tags(Tags.of("exception", "None", "method", "GET", "outcome", "SUCCESS", "status", "200",
+                        "uri", "/registration/{id}"))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return userDto;
+    }
+
+}
@@ -0,0 +1,189 @@
+package ru.app.user.registration.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import ru.app.Application;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.db.routing.RecentWrites;
+import ru.app.user.registration.dto.StatusChangeDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.impl.RegistrationServiceImpl;
+import ru.app.user.registration.services.lookup.UserLookup;
+import ru.app.user.registration.services.presence.PresenceTable;
+import ru.app.user.registration.services.search.UserSearchIndex;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сервис регистрации для замеров: либо собранный вручную над {@link InMemoryUserStore},
+ * либо полный контекст приложения над встроенным PostgreSQL с дополнительными аргументами запуска.
+ */
+class RegistrationBackend implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final RegistrationService service;
+    private final String baseUrl;
+    private final ConfigurableApplicationContext context;
+    private final AutoCloseable resources;
+
+    private RegistrationBackend(RegistrationService service, String baseUrl, ConfigurableApplicationContext context,
+                                AutoCloseable resources) {
+        this.service = service;
+        this.baseUrl = baseUrl;
+        this.context = context;
+        this.resources = resources;
+    }
+
+    static RegistrationBackend inMemory() {
+
+        InMemoryUserStore store = new InMemoryUserStore();
+        UserJdbcRepo userJdbcRepo = store.userJdbcRepo();
+        RegistrationProperties properties = new RegistrationProperties();
+        UserCache userCache = new UserCache(properties);
+        PresenceTable presenceTable = new PresenceTable(userJdbcRepo, properties, userCache);
+
+        RegistrationService service = new RegistrationServiceImpl(store.userRepo(), userJdbcRepo,
+                new ObjectMapper().findAndRegisterModules(), new UserMapper(), properties,
+                new UserStatisticsEngine(userJdbcRepo, presenceTable, new NoTransactionManager()), userCache,
+                presenceTable, new RegistrationValidator(),
+                new RecentWrites(properties), new StatusEventBus(properties, new SimpleMeterRegistry()),
+                new UserSearcher(userJdbcRepo, new UserSearchIndex(userJdbcRepo, properties),
+                        new UserMapper(), properties),
+                new UserLookup(userJdbcRepo, new NoTransactionManager(), properties),
+                new UserSketches(userJdbcRepo, new NoTransactionManager(), properties));
+        return new RegistrationBackend(service, null, null, () -> {
+        });
+    }
+
+    static RegistrationBackend embedded(String... arguments) throws IOException {
+
+        // при локали C lower() не меняет регистр кириллицы, и поиск по имени ее бы не находил
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().setLocaleConfig("locale", "C.UTF-8").start();
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                "--spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(arguments));
+
+        ConfigurableApplicationContext context;
+        try {
+            context = new SpringApplicationBuilder(Application.class).run(args.toArray(new String[0]));
+        } catch (RuntimeException e) {
+            postgres.close();
+            throw e;
+        }
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        return new RegistrationBackend(context.getBean(RegistrationService.class), baseUrl, context, () -> {
+            context.close();
+            postgres.close();
+        });
+    }
+
+    RegistrationService service() {
+        return service;
+    }
+
+    /**
+     * Адрес HTTP-сервера; только для встроенной БД, где поднят весь контекст.
+     */
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Бин контекста приложения; только для встроенной БД.
+     */
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Заполняет таблицу пакетной регистрацией. Почты user{i}@bench.ru, дата рождения равномерно
+     * за последние 60 лет, так что в выборке есть и совершеннолетние, и несовершеннолетние.
+     * Каждый второй пользователь переводится в ONLINE, остальные в OFFLINE.
+     */
+    void seed(int count) {
+
+        LocalDate today = LocalDate.now();
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            int to = Math.min(count, from + SEED_BATCH_SIZE);
+            List<UserDto> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(user("user" + i + "@bench.ru", today.minusDays(1 + i % (60 * 365))));
+            }
+            service.createUsers(batch);
+
+            List<StatusChangeDto> changes = new ArrayList<>(to - from);
+            for (long id = from + 1; id <= to; id++) {
+                StatusChangeDto change = new StatusChangeDto();
+                change.setUserId(id);
+                change.setStatus(id % 2 == 0 ? Status.ONLINE : Status.OFFLINE);
+                changes.add(change);
+            }
+            service.changeStatuses(changes);
+        }
+    }
+
+    static UserDto user(String email, LocalDate birthDate) {
+        UserDto userDto = new UserDto();
+        userDto.setName("Борис");
+        userDto.setEmail(email);
+        userDto.setBornDate(birthDate.format(DATE_FORMATTER));
+        return userDto;
+    }
+
+    @Override
+    public void close() throws Exception {
+        resources.close();
+    }
+
+    /**
+     * Транзакции для {@link InMemoryUserStore}: хранилищу они не нужны, а сервисы их открывают.
+     */
+    private static final class NoTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package ru.app.user.registration.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.impl.RegistrationServiceImpl;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование User в UserDto и проверки входных данных через публичные методы сервиса,
+ * включая путь с исключением на некорректных данных.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationMicroBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DateInput {
+
+        @Param({"11.12.1999", "31.02.2001", "1999-12-11"})
+        public String date;
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmailInput {
+
+        @Param({"boris@mail.ru", "not-an-email"})
+        public String email;
+
+    }
+
+    private final UserMapper userMapper = new UserMapper();
+    private final RegistrationService service = new RegistrationServiceImpl(null, null, null, userMapper,
+            new RegistrationProperties(), null, null, null, new RegistrationValidator(), null, null, null, null, null);
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new User();
+        user.setId(1L);
+        user.setName("Борис");
+        user.setBornDate("11.12.1999");
+        user.setBirthDate(LocalDate.of(1999, 12, 11));
+        user.setEmail("boris@mail.ru");
+        user.setNewStatus(Status.ONLINE);
+        user.setOldStatus(Status.OFFLINE);
+    }
+
+    @Benchmark
+    public UserDto convertToUserDto() {
+        return userMapper.toUserDto(user);
+    }
+
+    /**
+     * Прежняя реализация convertToUserDto для сравнения.
+     */
+    @Benchmark
+    public UserDto convertValueToUserDto(ConvertValueMapper convertValueMapper) {
+        return convertValueMapper.mapper.convertValue(user, UserDto.class);
+    }
+
+    @Benchmark
+    public void validateEmail(EmailInput input, Blackhole blackhole) {
+        try {
+            service.validateEmail(input.email);
+            blackhole.consume(true);
+        } catch (RegistrationException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void validateAndGetDate(DateInput input, Blackhole blackhole) {
+        try {
+            blackhole.consume(service.validateAndGetDate(input.date));
+        } catch (RegistrationException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConvertValueMapper {
+
+        final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    }
+
+}
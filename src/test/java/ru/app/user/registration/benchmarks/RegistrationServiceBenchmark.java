@@ -0,0 +1,80 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.RegistrationService;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Основные операции сервиса при разном размере таблицы, над таблицей в памяти и над встроенным PostgreSQL.
+ * Пользователи заполняются один раз на trial с id от 1 до tableSize.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=RegistrationServiceBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationServiceBenchmark {
+
+    public enum Backend { MEMORY, EMBEDDED }
+
+    @Param({"MEMORY", "EMBEDDED"})
+    public Backend backend;
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private final AtomicLong created = new AtomicLong();
+
+    private RegistrationBackend registrationBackend;
+    private RegistrationService service;
+    private LocalDate birthDate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        registrationBackend = backend == Backend.MEMORY ? RegistrationBackend.inMemory() : RegistrationBackend.embedded();
+        registrationBackend.seed(tableSize);
+        service = registrationBackend.service();
+        birthDate = LocalDate.now().minusYears(30);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        registrationBackend.close();
+    }
+
+    @Benchmark
+    public UserDto createUser() {
+        return service.createUser(RegistrationBackend.user("new" + created.incrementAndGet() + "@bench.ru", birthDate));
+    }
+
+    @Benchmark
+    public UserDto getUser() {
+        return service.getUser(randomId());
+    }
+
+    @Benchmark
+    public StatusInfoDto changeStatus() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.changeStatus(randomId(), random.nextBoolean() ? Status.ONLINE : Status.OFFLINE);
+    }
+
+    @Benchmark
+    public StatisticsDto getStatistics() {
+        return service.getStatistics("online", true);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+    }
+
+}
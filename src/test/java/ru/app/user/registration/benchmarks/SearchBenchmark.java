@@ -0,0 +1,135 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.search.UserSearchIndex;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Поиск пользователей над встроенным PostgreSQL с миллионами строк: по началу почты (редкое совпадение),
+ * по началу имени (совпадает каждый двадцатый) и нечеткий с пропущенной буквой. source=memory отвечает
+ * на поиск по началу из индекса в памяти, нечеткий всегда идет в БД. Неполные из-за бюджета
+ * времени страницы считаются отдельно и выводятся в конце. После заполнения выполняется vacuum analyze:
+ * он разбирает список ожидающих вставок GIN-индексов, как это сделал бы autovacuum.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=SearchBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final String[][] FIRST_NAMES = {
+            {"Иван", "ivan"}, {"Петр", "petr"}, {"Анна", "anna"}, {"Мария", "maria"}, {"Борис", "boris"},
+            {"Елена", "elena"}, {"Олег", "oleg"}, {"Ольга", "olga"}, {"Сергей", "sergey"}, {"Дарья", "darya"},
+            {"Алексей", "alexey"}, {"Наталья", "natalya"}, {"Дмитрий", "dmitry"}, {"Ирина", "irina"},
+            {"Николай", "nikolay"}, {"Татьяна", "tatyana"}, {"Михаил", "mikhail"}, {"Светлана", "svetlana"},
+            {"Андрей", "andrey"}, {"Юлия", "yulia"}};
+
+    private static final String[][] LAST_NAMES = {
+            {"Иванов", "ivanov"}, {"Смирнов", "smirnov"}, {"Кузнецов", "kuznetsov"}, {"Попов", "popov"},
+            {"Васильев", "vasiliev"}, {"Петров", "petrov"}, {"Соколов", "sokolov"}, {"Михайлов", "mikhailov"},
+            {"Новиков", "novikov"}, {"Федоров", "fedorov"}, {"Морозов", "morozov"}, {"Волков", "volkov"},
+            {"Алексеев", "alekseev"}, {"Лебедев", "lebedev"}, {"Семенов", "semenov"}, {"Егоров", "egorov"},
+            {"Павлов", "pavlov"}, {"Козлов", "kozlov"}, {"Степанов", "stepanov"}, {"Николаев", "nikolaev"}};
+
+    private static final String[] DOMAINS = {"mail.ru", "yandex.ru", "gmail.com", "bench.ru"};
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private static final int SAMPLES = 1000;
+
+    @Param({"database", "memory"})
+    public String source;
+
+    @Param({"1000000"})
+    public int users;
+
+    private RegistrationBackend backend;
+    private RegistrationService service;
+    private final List<String> emailPrefixes = new ArrayList<>();
+    private final List<String> misspelled = new ArrayList<>();
+    private final LongAdder partial = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = RegistrationBackend.embedded("--registration.cache.enabled=false",
+                "--registration.search.in-memory.enabled=" + "memory".equals(source));
+        service = backend.service();
+
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate birthDate = LocalDate.now().minusYears(30);
+        int sampleEvery = Math.max(1, users / SAMPLES);
+        for (int from = 0; from < users; from += SEED_BATCH_SIZE) {
+            List<UserDto> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = from; i < Math.min(users, from + SEED_BATCH_SIZE); i++) {
+                String[] first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String[] last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                String local = first[1] + "." + last[1] + i;
+                UserDto user = RegistrationBackend.user(local + "@" + DOMAINS[i % DOMAINS.length], birthDate);
+                user.setName(first[0] + " " + last[0]);
+                batch.add(user);
+                if (i % sampleEvery == 0) {
+                    emailPrefixes.add(local);
+                    int typo = first[1].length() + 2;
+                    misspelled.add(local.substring(0, typo) + local.substring(typo + 1));
+                }
+            }
+            service.createUsers(batch);
+        }
+        backend.bean(JdbcTemplate.class).execute("vacuum analyze users");
+
+        UserSearchIndex index = backend.bean(UserSearchIndex.class);
+        while ("memory".equals(source) && !index.isReady()) {
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%nнеполных страниц: %s%n", partial.sum());
+        backend.close();
+    }
+
+    @Benchmark
+    public SearchResultDto prefixEmail() {
+        return search(pick(emailPrefixes), SearchMode.PREFIX);
+    }
+
+    @Benchmark
+    public SearchResultDto prefixName() {
+        return search(FIRST_NAMES[ThreadLocalRandom.current().nextInt(FIRST_NAMES.length)][0].substring(0, 3),
+                SearchMode.PREFIX);
+    }
+
+    @Benchmark
+    public SearchResultDto fuzzy() {
+        return search(pick(misspelled), SearchMode.FUZZY);
+    }
+
+    private SearchResultDto search(String query, SearchMode mode) {
+        SearchResultDto result = service.searchUsers(query, mode, 20, null);
+        if (result.isPartial()) {
+            partial.increment();
+        }
+        return result;
+    }
+
+    private static String pick(List<String> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+}
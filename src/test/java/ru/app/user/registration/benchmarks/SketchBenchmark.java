@@ -0,0 +1,104 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.dto.SketchStatisticsDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.statistics.UserSketches;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Квантили возраста и число почтовых доменов над встроенным PostgreSQL: ответ скетчей в памяти против точного
+ * percentile_disc и count(distinct) по всей таблице, полное перестроение скетчей одним проходом и стоимость
+ * обновления скетчей при регистрации. Почты распределены по domains доменам. После замеров выводятся
+ * точные значения и ответ скетчей для сравнения.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=SketchBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SketchBenchmark {
+
+    private static final String EXACT = "select percentile_disc(array[0.25, 0.5, 0.75, 0.9, 0.99]) " +
+            "within group (order by date_part('year', age(current_date, birth_date))), " +
+            "count(distinct lower(substring(email from '@([^@]*)$'))) from users";
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"1000000"})
+    public int users;
+
+    @Param({"5000"})
+    public int domains;
+
+    private RegistrationBackend backend;
+    private UserSketches userSketches;
+    private JdbcTemplate jdbcTemplate;
+    private User created;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = RegistrationBackend.embedded("--registration.cache.enabled=false");
+        RegistrationService service = backend.service();
+        LocalDate today = LocalDate.now();
+        for (int from = 0; from < users; from += SEED_BATCH_SIZE) {
+            int to = Math.min(users, from + SEED_BATCH_SIZE);
+            List<UserDto> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(RegistrationBackend.user("user" + i + "@domain" + i % domains + ".ru",
+                        today.minusDays(1 + ThreadLocalRandom.current().nextInt(80 * 365))));
+            }
+            service.createUsers(batch);
+        }
+        userSketches = backend.bean(UserSketches.class);
+        jdbcTemplate = backend.bean(JdbcTemplate.class);
+        jdbcTemplate.execute("vacuum analyze users");
+
+        created = new User();
+        created.setBirthDate(today.minusYears(30));
+        created.setEmail("new@domain0.ru");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Map<String, Object> exact = jdbcTemplate.queryForMap(EXACT);
+        SketchStatisticsDto sketch = userSketches.getStatistics(null);
+        System.out.printf("%nточно: квантили %s, доменов %s%nскетчи: квантили %s, доменов %s (ошибка ранга %.4f, доменов %.4f)%n",
+                exact.get("percentile_disc"), exact.get("count"), sketch.getAgeQuantiles(), sketch.getEmailDomainsCount(),
+                sketch.getAgeQuantileRankError(), sketch.getEmailDomainsRelativeError());
+        backend.close();
+    }
+
+    @Benchmark
+    public SketchStatisticsDto sketch() {
+        return userSketches.getStatistics(null);
+    }
+
+    @Benchmark
+    public Map<String, Object> exact() {
+        return jdbcTemplate.queryForMap(EXACT);
+    }
+
+    @Benchmark
+    public void rebuild() {
+        userSketches.rebuild();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void onUserCreated() {
+        userSketches.onUserCreated(created);
+    }
+
+}
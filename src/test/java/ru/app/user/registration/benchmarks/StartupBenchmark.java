@@ -0,0 +1,132 @@
+package ru.app.user.registration.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время от запуска процесса до первого ответа 200 на GET /registration/statistics над встроенным PostgreSQL
+ * со схемой из миграций и TABLE_SIZE пользователями:
+ * ddl-update - прежний запуск: fat jar, Hibernate ddl-auto: update, без Flyway;
+ * jar - fat jar с настройками по умолчанию: Flyway migrate и Hibernate validate;
+ * fast-start - target/cds: application.jar с архивом AppCDS и профилем fast-start.
+ * Для сравнения с прежней сборкой путь к fat jar задается -Dstartup.jar.
+ * Запуск: mvn -P cds package -DskipTests && mvn -P jmh test-compile exec:exec -Djmh.includes=StartupBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final int TABLE_SIZE = 100_000;
+
+    private static final Path TARGET = Path.of("target").toAbsolutePath();
+
+    @Param({"ddl-update", "jar", "fast-start"})
+    public String mode;
+
+    private EmbeddedPostgres postgres;
+    private HttpClient client;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase()).load().migrate();
+        new JdbcTemplate(postgres.getPostgresDatabase()).update(
+                "insert into users (name, born_date, birth_date, email, new_status, old_status) " +
+                        "select 'Борис', to_char(d, 'DD.MM.YYYY'), d, 'user' || i || '@bench.ru', 1 + i % 2, 0 " +
+                        "from generate_series(1, ?) i, lateral (select current_date - (1 + i % 21900) as d) x",
+                TABLE_SIZE);
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        postgres.close();
+    }
+
+    @Benchmark
+    public int firstRequest() throws Exception {
+
+        int port = freePort();
+        process = new ProcessBuilder(command(port))
+                .directory(mode.equals("fast-start") ? TARGET.resolve("cds").toFile() : TARGET.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/registration/statistics"))
+                .build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Приложение завершилось с кодом " + process.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch (ConnectException e) {
+                // сервер еще не слушает порт
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+    }
+
+    private List<String> command(int port) {
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        switch (mode) {
+            case "fast-start":
+                command.addAll(List.of("-XX:SharedArchiveFile=app.jsa", "-jar", "application.jar",
+                        "--spring.profiles.active=fast-start"));
+                break;
+            case "ddl-update":
+                command.addAll(List.of("-jar", fatJar(), "--spring.flyway.enabled=false",
+                        "--spring.jpa.generate-ddl=true", "--spring.jpa.hibernate.ddl-auto=update"));
+                break;
+            default:
+                command.addAll(List.of("-jar", fatJar()));
+        }
+        command.add("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"));
+        command.add("--spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres");
+        command.add("--server.port=" + port);
+        return command;
+    }
+
+    private static String fatJar() {
+        return System.getProperty("startup.jar",
+                TARGET.resolve("user-registration-spring-boot.jar").toString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Смена статуса при тысячах открытых SSE-подписок на /registration/status/events. Каждый подписчик следит
+ * за followed случайными пользователями; каждый десятый после первой строки перестает читать поток
+ * и изображает зависшего клиента. Запись статуса не должна замедляться с ростом числа подписчиков.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=StatusEventsBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class StatusEventsBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+
+    private static final int SLOW_EVERY = 10;
+
+    @Param({"servlet", "reactive"})
+    public String mode;
+
+    @Param({"0", "1000", "5000"})
+    public int subscribers;
+
+    @Param({"100"})
+    public int followed;
+
+    private RegistrationBackend backend;
+    private HttpClient client;
+    private String baseUrl;
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final List<CompletableFuture<?>> streams = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = RegistrationBackend.embedded("--spring.main.web-application-type=" + mode,
+                "--registration.cache.enabled=false",
+                "--server.tomcat.max-connections=" + (subscribers + 1000));
+        backend.seed(TABLE_SIZE);
+        baseUrl = backend.baseUrl();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        for (int i = 0; i < subscribers; i++) {
+            String userIds = ThreadLocalRandom.current().longs(followed, 1, TABLE_SIZE + 1)
+                    .mapToObj(Long::toString)
+                    .collect(Collectors.joining(","));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/registration/status/events?userIds=" + userIds))
+                    .header("Accept", "text/event-stream")
+                    .build();
+            streams.add(client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(
+                    new EventLines(connected, delivered, i % SLOW_EVERY == 0))));
+        }
+        // заголовки ответа гарантированно уходят не позже первого пульса
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (connected.get() < subscribers) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Подключено " + connected.get() + " из " + subscribers);
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%nподписчиков %s, доставлено событий %s%n", subscribers, delivered.get());
+        streams.forEach(stream -> stream.cancel(true));
+        backend.close();
+    }
+
+    @Benchmark
+    public int changeStatus() throws Exception {
+        long id = ThreadLocalRandom.current().nextLong(1, TABLE_SIZE + 1);
+        String status = ThreadLocalRandom.current().nextBoolean() ? "ONLINE" : "OFFLINE";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/registration/status/" + id + "?status=" + status))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(id + " -> " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    /**
+     * Считает строки data: потока. Зависший подписчик запрашивает одну строку и больше не читает.
+     */
+    private static final class EventLines implements Flow.Subscriber<String> {
+
+        private final AtomicInteger connected;
+        private final AtomicLong delivered;
+        private final boolean stalled;
+
+        private EventLines(AtomicInteger connected, AtomicLong delivered, boolean stalled) {
+            this.connected = connected;
+            this.delivered = delivered;
+            this.stalled = stalled;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            connected.incrementAndGet();
+            subscription.request(stalled ? 1 : Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("data:")) {
+                delivered.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package ru.app.user.registration.benchmarks;
+
+import org.apache.commons.validator.routines.EmailValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение прежней проверки (форматтер на каждый вызов, исключение со стеком) с RegistrationValidator
+ * на корректных данных и на мусоре.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DateInput {
+
+        @Param({"11.12.1999", "2004-12-30", "garbage-date-value"})
+        public String date;
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmailInput {
+
+        @Param({"boris@mail.ru", "not-an-email", "boris@mail"})
+        public String email;
+
+    }
+
+    private final RegistrationValidator validator = new RegistrationValidator();
+
+    @Benchmark
+    public void legacyDate(DateInput input, Blackhole blackhole) {
+        try {
+            blackhole.consume(LocalDate.parse(input.date, DateTimeFormatter.ofPattern("dd.MM.yyyy")));
+        } catch (DateTimeParseException e) {
+            blackhole.consume(new LegacyRegistrationException(e.getMessage()));
+        }
+    }
+
+    @Benchmark
+    public void fastDate(DateInput input, Blackhole blackhole) {
+        blackhole.consume(validator.validateDate(input.date));
+    }
+
+    @Benchmark
+    public void legacyEmail(EmailInput input, Blackhole blackhole) {
+        if (!EmailValidator.getInstance().isValid(input.email)) {
+            blackhole.consume(new LegacyRegistrationException(input.email));
+        }
+    }
+
+    @Benchmark
+    public void fastEmail(EmailInput input, Blackhole blackhole) {
+        blackhole.consume(validator.validateEmail(input.email));
+    }
+
+    /**
+     * Прежний RegistrationException: обычное исключение с заполняемым стеком.
+     */
+    private static class LegacyRegistrationException extends RuntimeException {
+
+        LegacyRegistrationException(String message) {
+            super(message);
+        }
+
+    }
+
+}
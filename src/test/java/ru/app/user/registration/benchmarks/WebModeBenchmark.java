@@ -0,0 +1,78 @@
+package ru.app.user.registration.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность HTTP-маршрутов в режиме servlet (Tomcat + JDBC) и reactive (Netty + R2DBC)
+ * над встроенным PostgreSQL при числе клиентских потоков заметно больше пула соединений.
+ * Запуск: mvn -P jmh test-compile exec:exec -Djmh.includes=WebModeBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebModeBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"servlet", "reactive"})
+    public String mode;
+
+    private RegistrationBackend backend;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        backend = RegistrationBackend.embedded("--spring.main.web-application-type=" + mode,
+                "--registration.cache.enabled=false");
+        backend.seed(TABLE_SIZE);
+        baseUrl = backend.baseUrl();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        backend.close();
+    }
+
+    @Benchmark
+    public int getUser() throws Exception {
+        return get("/registration/" + randomId());
+    }
+
+    @Benchmark
+    public int changeStatus() throws Exception {
+        String status = ThreadLocalRandom.current().nextBoolean() ? "ONLINE" : "OFFLINE";
+        return get("/registration/status/" + randomId() + "?status=" + status);
+    }
+
+    @Benchmark
+    public int getStatistics() throws Exception {
+        return get("/registration/statistics?status=online&isAdult=true&limit=20");
+    }
+
+    private int get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " -> " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, TABLE_SIZE + 1);
+    }
+
+}
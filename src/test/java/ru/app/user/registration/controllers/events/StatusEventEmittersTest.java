@@ -0,0 +1,101 @@
+package ru.app.user.registration.controllers.events;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import ru.app.config.RegistrationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class StatusEventEmittersTest {
+
+    private StatusEventEmitters statusEventEmitters;
+
+    @Before
+    public void setup() {
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.getEvents().setSseThreads(2);
+        properties.getEvents().setWriteTimeout(Duration.ofMillis(100));
+        statusEventEmitters = new StatusEventEmitters(properties);
+    }
+
+    @After
+    public void shutdown() {
+        statusEventEmitters.shutdown();
+    }
+
+    @Test
+    public void emit_writesOnSsePool() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+
+        statusEventEmitters.emit(emitter, Flux.just(comment("a"), comment("b")));
+
+        assertNull(emitter.result.get(1, TimeUnit.SECONDS));
+        assertEquals(2, emitter.threads.size());
+        assertTrue(emitter.threads.stream().allMatch(name -> name.startsWith("registration-sse-")));
+    }
+
+    @Test
+    public void emit_closesStalledSubscriber() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(stalled);
+
+        statusEventEmitters.emit(emitter, Flux.just(comment("a"), comment("b")));
+
+        assertTrue(emitter.result.get(1, TimeUnit.SECONDS) instanceof TimeoutException);
+        stalled.countDown();
+        assertEquals(1, emitter.threads.size());
+    }
+
+    private static ServerSentEvent<Object> comment(String comment) {
+        return ServerSentEvent.builder().comment(comment).build();
+    }
+
+    /**
+     * Запоминает потоки записи и итог; при переданном stall первая запись ждет его, как зависший клиент.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final CountDownLatch stall;
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Throwable> result = new CompletableFuture<>();
+
+        private RecordingEmitter(CountDownLatch stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            threads.add(Thread.currentThread().getName());
+            if (stall != null) {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            result.complete(null);
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            result.complete(ex);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.app.user.registration.controllers.limits;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.enums.EndpointClass;
+import ru.app.user.registration.exceptions.OverloadException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RegistrationProperties.Bulkhead bulkhead =
+            new RegistrationProperties.Bulkhead(10, 2, 40, Duration.ofMillis(50));
+
+    @Test
+    public void tryAcquire_rejectsOverLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter((limit, rtt, inFlight, dropped) -> limit, 2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release(FAST, false);
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void aimd_growsUnderThresholdAndBacksOff() {
+        AimdLimit aimd = new AimdLimit(bulkhead, 0.5);
+
+        assertEquals(11, aimd.update(10, FAST, 5, false));
+        assertEquals(10, aimd.update(10, FAST, 4, false));
+        assertEquals(5, aimd.update(10, SLOW, 10, false));
+        assertEquals(5, aimd.update(10, FAST, 10, true));
+        assertEquals(2, aimd.update(3, SLOW, 3, false));
+        assertEquals(40, aimd.update(40, FAST, 40, false));
+    }
+
+    @Test
+    public void vegas_followsQueueEstimate() {
+        VegasLimit vegas = new VegasLimit(bulkhead);
+        vegas.update(10, FAST, 10, false);
+
+        assertEquals(13, vegas.update(10, FAST, 10, false));
+        assertEquals(10, vegas.update(10, FAST, 4, false));
+        assertEquals(9, vegas.update(10, SLOW, 10, false));
+        assertEquals(9, vegas.update(10, FAST, 10, true));
+    }
+
+    @Test
+    public void limiters_rejectWithRetryAfterAndCount() {
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.getLimiter().getStatistics().setInitialLimit(1);
+        properties.getLimiter().setRetryAfter(Duration.ofMillis(1500));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(properties, registry);
+
+        limiters.acquire(EndpointClass.STATISTICS);
+        try {
+            limiters.acquire(EndpointClass.STATISTICS);
+            fail();
+        } catch (OverloadException e) {
+            assertEquals(2, e.getRetryAfterSeconds());
+        }
+        limiters.acquire(EndpointClass.READ);
+
+        assertEquals(1.0, registry.get("registration.limiter.rejected").tag("bulkhead", "statistics")
+                .counter().count(), 0);
+        assertEquals(1.0, registry.get("registration.limiter.in-flight").tag("bulkhead", "read")
+                .gauge().value(), 0);
+    }
+
+}
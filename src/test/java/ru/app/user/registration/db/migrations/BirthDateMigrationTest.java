@@ -0,0 +1,64 @@
+package ru.app.user.registration.db.migrations;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+import ru.app.user.registration.services.validation.ValidationResult;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Заполнение birth_date миграцией V4 дает ту же дату, что и разбор born_date при регистрации.
+ */
+public class BirthDateMigrationTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeClass
+    public static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterClass
+    public static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    public void backfill_parsesLikeValidator() {
+        Flyway flyway = Flyway.configure().dataSource(postgres.getPostgresDatabase()).target("3").load();
+        flyway.migrate();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        List<String> bornDates = Arrays.asList("11.12.1999", "31.02.2001", "29.02.2000", "31.04.2020", "01.01.0001",
+                "1.1.2000", "00.01.2000", "01.13.2000", "32.01.2000", "01.01.0000", "01.01.+10000", "", null);
+        bornDates.forEach(bornDate -> jdbcTemplate.update("insert into users (born_date) values (?)", bornDate));
+        jdbcTemplate.update("insert into users (born_date, birth_date) values ('11.12.1999', '2000-01-01')");
+
+        Flyway.configure().dataSource(postgres.getPostgresDatabase()).load().migrate();
+
+        List<LocalDate> birthDates = jdbcTemplate.queryForList("select birth_date from users order by id", LocalDate.class);
+        RegistrationValidator validator = new RegistrationValidator();
+        for (int i = 0; i < bornDates.size(); i++) {
+            String bornDate = bornDates.get(i);
+            ValidationResult<LocalDate> expected = validator.validateDate(bornDate);
+            if (bornDate != null && bornDate.startsWith("01.01.+")) {
+                // год длиннее четырех цифр миграция не разбирает
+                assertTrue(expected.isValid());
+                assertNull(birthDates.get(i));
+            } else {
+                assertEquals(bornDate, expected.isValid() ? expected.getValue() : null, birthDates.get(i));
+            }
+        }
+        assertEquals(LocalDate.of(2000, 1, 1), birthDates.get(bornDates.size()));
+    }
+
+}
@@ -0,0 +1,134 @@
+package ru.app.user.registration.db.repositories;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.StatusTransition;
+import ru.app.user.registration.enums.Status;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * Нативные операторы смены статуса на встроенном PostgreSQL со схемой из миграций.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DirtiesContext
+public class UserRepoTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeClass
+    public static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterClass
+    public static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+    }
+
+    @Test
+    public void shiftStatus_returnsTransition() {
+        User user = saveUser("boris@mail.ru", Status.OFFLINE, Status.UNDEFINED);
+
+        StatusTransition transition = userRepo.shiftStatus(user.getId(), Status.ONLINE.ordinal()).orElseThrow();
+
+        assertEquals(user.getId(), transition.getId());
+        assertEquals(Integer.valueOf(Status.ONLINE.ordinal()), transition.getNewStatus());
+        assertEquals(Integer.valueOf(Status.OFFLINE.ordinal()), transition.getOldStatus());
+        assertEquals(Integer.valueOf(Period.between(user.getBirthDate(), LocalDate.now()).getYears()), transition.getAge());
+        assertEquals(List.of(Status.ONLINE.ordinal(), Status.OFFLINE.ordinal()), storedStatuses(user.getId()));
+    }
+
+    @Test
+    public void shiftStatus_sameStatusShiftsOnce() {
+        User user = saveUser("anna@mail.ru", Status.ONLINE, Status.OFFLINE);
+
+        StatusTransition first = userRepo.shiftStatus(user.getId(), Status.ONLINE.ordinal()).orElseThrow();
+        String version = rowVersion(user.getId());
+        StatusTransition second = userRepo.shiftStatus(user.getId(), Status.ONLINE.ordinal()).orElseThrow();
+
+        assertEquals(Integer.valueOf(Status.ONLINE.ordinal()), first.getOldStatus());
+        assertEquals(Integer.valueOf(Status.ONLINE.ordinal()), second.getNewStatus());
+        assertEquals(Integer.valueOf(Status.ONLINE.ordinal()), second.getOldStatus());
+        assertEquals(version, rowVersion(user.getId()));
+    }
+
+    @Test
+    public void shiftStatus_missingId() {
+        assertEquals(Optional.empty(), userRepo.shiftStatus(-1L, Status.ONLINE.ordinal()));
+    }
+
+    @Test
+    public void shiftStatuses_skipsMissingIds() {
+        User changed = saveUser("oleg@mail.ru", Status.OFFLINE, Status.UNDEFINED);
+        User same = saveUser("olga@mail.ru", Status.ONLINE, Status.ONLINE);
+        Map<Long, Status> statuses = new LinkedHashMap<>();
+        statuses.put(changed.getId(), Status.ONLINE);
+        statuses.put(same.getId(), Status.ONLINE);
+        statuses.put(-1L, Status.ONLINE);
+
+        Map<Long, Status[]> transitions = new LinkedHashMap<>();
+        new UserJdbcRepo(new JdbcTemplate(dataSource)).shiftStatuses(statuses,
+                (id, newStatus, oldStatus, age) -> transitions.put(id, new Status[]{newStatus, oldStatus}));
+
+        assertEquals(2, transitions.size());
+        assertArrayEquals(new Status[]{Status.ONLINE, Status.OFFLINE}, transitions.get(changed.getId()));
+        assertArrayEquals(new Status[]{Status.ONLINE, Status.ONLINE}, transitions.get(same.getId()));
+    }
+
+    private User saveUser(String email, Status newStatus, Status oldStatus) {
+        User user = new User();
+        user.setEmail(email);
+        user.setBirthDate(LocalDate.of(1999, 12, 11));
+        user.setNewStatus(newStatus);
+        user.setOldStatus(oldStatus);
+        return userRepo.saveAndFlush(user);
+    }
+
+    private List<Integer> storedStatuses(Long id) {
+        return new JdbcTemplate(dataSource).queryForObject("select new_status, old_status from users where id = ?",
+                (rs, rowNum) -> List.of(rs.getInt(1), rs.getInt(2)), id);
+    }
+
+    /**
+     * Адрес версии строки: любое обновление, даже HOT, создает новую версию.
+     */
+    private String rowVersion(Long id) {
+        return new JdbcTemplate(dataSource).queryForObject("select ctid::text from users where id = ?", String.class, id);
+    }
+
+}
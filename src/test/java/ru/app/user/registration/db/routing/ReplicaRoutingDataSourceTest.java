@@ -0,0 +1,131 @@
+package ru.app.user.registration.db.routing;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.app.config.RegistrationProperties;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Основная БД и реплика - два встроенных PostgreSQL, в каждом таблица node со своим именем.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private static final String WHO = "select name from node";
+
+    private static EmbeddedPostgres primary;
+    private static EmbeddedPostgres replica;
+
+    @BeforeClass
+    public static void startDatabases() throws Exception {
+        primary = EmbeddedPostgres.start();
+        replica = EmbeddedPostgres.start();
+        createNode(primary.getPostgresDatabase(), "primary");
+        createNode(replica.getPostgresDatabase(), "replica");
+    }
+
+    @AfterClass
+    public static void stopDatabases() throws Exception {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void readOnlyTransaction_goesToReplica() {
+        Routing routing = new Routing(new ReplicaPool(List.of(new ReplicaPool.Replica("replica-1",
+                replica.getPostgresDatabase())), RegistrationProperties.Balancing.ROUND_ROBIN, 2));
+
+        assertEquals("replica", routing.read());
+        assertEquals("primary", routing.write());
+        assertEquals("primary", routing.jdbcTemplate.queryForObject(WHO, String.class));
+    }
+
+    @Test
+    public void onPrimary_overridesReadOnly() {
+        Routing routing = new Routing(new ReplicaPool(List.of(new ReplicaPool.Replica("replica-1",
+                replica.getPostgresDatabase())), RegistrationProperties.Balancing.LOWEST_LATENCY, 2));
+
+        assertEquals("primary", ReplicaRouting.onPrimary(routing::read));
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    public void unavailableReplica_ejectedAndSkipped() {
+        ReplicaPool.Replica down = new ReplicaPool.Replica("replica-1", unreachable());
+        ReplicaPool.Replica up = new ReplicaPool.Replica("replica-2", replica.getPostgresDatabase());
+        ReplicaPool pool = new ReplicaPool(List.of(down, up), RegistrationProperties.Balancing.ROUND_ROBIN, 2);
+        Routing routing = new Routing(pool);
+
+        assertEquals("primary", routing.read());
+        assertFalse(down.isHealthy());
+        assertEquals("replica", routing.read());
+        assertEquals("replica", routing.read());
+
+        pool.checkHealth();
+        assertFalse(down.isHealthy());
+        assertTrue(up.isHealthy());
+    }
+
+    @Test
+    public void checkHealth_ejectsAfterThreshold() {
+        ReplicaPool.Replica down = new ReplicaPool.Replica("replica-1", unreachable());
+        ReplicaPool pool = new ReplicaPool(List.of(down), RegistrationProperties.Balancing.ROUND_ROBIN, 2);
+
+        pool.checkHealth();
+        assertTrue(down.isHealthy());
+        pool.checkHealth();
+        assertFalse(down.isHealthy());
+        assertEquals("primary", new Routing(pool).read());
+    }
+
+    private static void createNode(DataSource dataSource, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table node (name text)");
+        jdbcTemplate.update("insert into node values (?)", name);
+    }
+
+    private static DataSource unreachable() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setServerNames(new String[]{"localhost"});
+        dataSource.setPortNumbers(new int[]{1});
+        dataSource.setConnectTimeout(1);
+        return dataSource;
+    }
+
+    private static class Routing {
+
+        final JdbcTemplate jdbcTemplate;
+        final TransactionTemplate readOnly;
+        final TransactionTemplate readWrite;
+
+        Routing(ReplicaPool pool) {
+            DataSource dataSource = new LazyConnectionDataSourceProxy(
+                    new ReplicaRoutingDataSource(primary.getPostgresDatabase(), pool));
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readWrite = new TransactionTemplate(transactionManager);
+        }
+
+        String read() {
+            return readOnly.execute(status -> jdbcTemplate.queryForObject(WHO, String.class));
+        }
+
+        String write() {
+            return readWrite.execute(status -> jdbcTemplate.queryForObject(WHO, String.class));
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package ru.app.user.registration.mappers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserMapperTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final UserMapper userMapper = new UserMapper();
+
+    @Test
+    public void toUserDto_sameAsJackson() {
+        for (User user : new User[]{user("Борис", "11.12.1999", LocalDate.of(1999, 12, 11), "boris@mail.ru", Status.ONLINE, Status.OFFLINE),
+                user(null, null, null, null, Status.UNDEFINED, Status.UNDEFINED),
+                user("Ivan", "01.01.2010", LocalDate.of(2010, 1, 1), "ivan@mail.ru", Status.OFFLINE, Status.ONLINE)}) {
+
+            UserDto expected = objectMapper.convertValue(user, UserDto.class);
+            expected.setCurrentStatus(user.getNewStatus().name());
+
+            assertSameDto(expected, userMapper.toUserDto(user));
+        }
+    }
+
+    @Test
+    public void toUser_sameAsJackson() {
+        for (UserDto userDto : new UserDto[]{userDto("Борис", "11.12.1999", 22, "boris@mail.ru", "ONLINE"),
+                userDto(null, null, null, null, null),
+                userDto("Ivan", "01.01.2010", null, "ivan@mail.ru", "garbage")}) {
+
+            User expected = objectMapper.convertValue(userDto, User.class);
+            User actual = userMapper.toUser(userDto);
+
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getBornDate(), actual.getBornDate());
+            assertEquals(expected.getAge(), actual.getAge());
+            assertEquals(expected.getEmail(), actual.getEmail());
+            assertEquals(expected.getNewStatus(), actual.getNewStatus());
+            assertEquals(expected.getOldStatus(), actual.getOldStatus());
+        }
+    }
+
+    @Test
+    public void toUserDto_serializesLikeJackson() throws Exception {
+        User user = user("Борис", "11.12.1999", LocalDate.of(1999, 12, 11), "boris@mail.ru", Status.ONLINE, Status.OFFLINE);
+        UserDto expected = objectMapper.convertValue(user, UserDto.class);
+        expected.setCurrentStatus(user.getNewStatus().name());
+
+        assertEquals(objectMapper.writeValueAsString(expected),
+                objectMapper.writeValueAsString(userMapper.toUserDto(user)));
+    }
+
+    private static void assertSameDto(UserDto expected, UserDto actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getBornDate(), actual.getBornDate());
+        assertEquals(expected.getAge(), actual.getAge());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getCurrentStatus(), actual.getCurrentStatus());
+    }
+
+    private static User user(String name, String bornDate, LocalDate birthDate, String email,
+                             Status newStatus, Status oldStatus) {
+        User user = new User();
+        user.setId(1L);
+        user.setName(name);
+        user.setBornDate(bornDate);
+        user.setBirthDate(birthDate);
+        user.setEmail(email);
+        user.setNewStatus(newStatus);
+        user.setOldStatus(oldStatus);
+        return user;
+    }
+
+    private static UserDto userDto(String name, String bornDate, Integer age, String email, String currentStatus) {
+        UserDto userDto = new UserDto();
+        userDto.setName(name);
+        userDto.setBornDate(bornDate);
+        userDto.setAge(age);
+        userDto.setEmail(email);
+        userDto.setCurrentStatus(currentStatus);
+        return userDto;
+    }
+
+}
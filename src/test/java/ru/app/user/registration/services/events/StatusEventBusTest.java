@@ -0,0 +1,138 @@
+package ru.app.user.registration.services.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.enums.Status;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class StatusEventBusTest {
+
+    private RegistrationProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private StatusEventBus bus;
+
+    @Before
+    public void setup() {
+        properties = new RegistrationProperties();
+        properties.getEvents().setSubscriberQueueSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        bus = new StatusEventBus(properties, meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        bus.shutdown();
+    }
+
+    @Test
+    public void subscribe_filtersByUserIds() throws InterruptedException {
+        Collector all = new Collector(Long.MAX_VALUE);
+        Collector filtered = new Collector(Long.MAX_VALUE);
+        bus.subscribe(null).subscribe(all);
+        bus.subscribe(List.of(2L, 3L)).subscribe(filtered);
+
+        bus.publish(event(1L, Status.ONLINE));
+        bus.publish(event(2L, Status.ONLINE));
+        bus.publish(event(3L, Status.OFFLINE));
+
+        await(() -> all.events.size() == 3 && filtered.events.size() == 2);
+        assertEquals(List.of(2L, 3L), filtered.userIds());
+
+        filtered.dispose();
+        all.dispose();
+        assertEquals(0, bus.getSubscribers());
+    }
+
+    @Test
+    public void slowSubscriber_coalescesAndDrops() throws InterruptedException {
+        Collector slow = new Collector(0);
+        bus.subscribe(null).subscribe(slow);
+
+        bus.publish(event(1L, Status.ONLINE));
+        bus.publish(event(1L, Status.OFFLINE));
+        bus.publish(event(2L, Status.ONLINE));
+        bus.publish(event(3L, Status.ONLINE));
+        await(() -> meterRegistry.counter("registration.events.dropped", "reason", "overflow").count() == 1);
+
+        slow.request(10);
+        await(() -> slow.events.size() == 2);
+        assertEquals(List.of(1L, 2L), slow.userIds());
+        assertEquals(Status.UNDEFINED, slow.events.get(0).getOldStatus());
+        assertEquals(Status.OFFLINE, slow.events.get(0).getNewStatus());
+        assertEquals(1, meterRegistry.counter("registration.events.coalesced").count(), 0);
+        slow.dispose();
+    }
+
+    @Test
+    public void ring_skipsOverwrittenEvents() {
+        StatusEventRing ring = new StatusEventRing(4);
+        for (long id = 1; id <= 10; id++) {
+            ring.offer(event(id, Status.ONLINE));
+        }
+
+        assertEquals(7L, ring.poll().getUserId().longValue());
+        assertEquals(6, ring.lost());
+        assertEquals(8L, ring.poll().getUserId().longValue());
+        ring.poll();
+        ring.poll();
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ring_sizeMustBePowerOfTwo() {
+        new StatusEventRing(1000);
+    }
+
+    private static StatusInfoDto event(Long userId, Status newStatus) {
+        return StatusInfoDto.builder().userId(userId).oldStatus(Status.UNDEFINED).newStatus(newStatus).build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Событие не доставлено за 5 секунд", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class Collector extends BaseSubscriber<StatusInfoDto> {
+
+        private final List<StatusInfoDto> events = new CopyOnWriteArrayList<>();
+        private final long initialRequest;
+
+        private Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(StatusInfoDto event) {
+            events.add(event);
+        }
+
+        private List<Long> userIds() {
+            return events.stream().map(StatusInfoDto::getUserId).collect(Collectors.toList());
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package ru.app.user.registration.services.exports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.FileFormat;
+import ru.app.user.registration.enums.Status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserExporterTest {
+
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    private UserExporter userExporter;
+
+    @Before
+    public void setup() {
+        userExporter = new UserExporter(userJdbcRepo, new ObjectMapper(), new RegistrationProperties());
+    }
+
+    @Test
+    public void csv_quotesTextAndKeepsNulls() throws Exception {
+        ResultSet first = row(7L, "Борис \"Б\", младший", "11.12.1999", "1999-12-11", "boris@mail.ru", Status.ONLINE);
+        ResultSet second = row(8L, null, null, null, "anna@mail.ru", Status.UNDEFINED);
+        rows(41L, first, second);
+
+        String csv = export(FileFormat.CSV, 41L);
+
+        assertEquals("id,name,bornDate,birthDate,email,newStatus,oldStatus\n" +
+                "7,\"Борис \"\"Б\"\", младший\",\"11.12.1999\",1999-12-11,\"boris@mail.ru\",ONLINE,UNDEFINED\n" +
+                "8,,,,\"anna@mail.ru\",UNDEFINED,UNDEFINED\n", csv);
+    }
+
+    @Test
+    public void ndjson_onePerLine() throws Exception {
+        rows(0L, row(7L, "Борис", "11.12.1999", "1999-12-11", "boris@mail.ru", Status.OFFLINE),
+                row(8L, "Анна", "01.02.2000", "2000-02-01", "anna@mail.ru", Status.ONLINE));
+
+        String ndjson = export(FileFormat.NDJSON, 0L);
+
+        assertEquals("{\"id\":7,\"name\":\"Борис\",\"bornDate\":\"11.12.1999\",\"birthDate\":\"1999-12-11\"," +
+                "\"email\":\"boris@mail.ru\",\"newStatus\":\"OFFLINE\",\"oldStatus\":\"UNDEFINED\"}\n" +
+                "{\"id\":8,\"name\":\"Анна\",\"bornDate\":\"01.02.2000\",\"birthDate\":\"2000-02-01\"," +
+                "\"email\":\"anna@mail.ru\",\"newStatus\":\"ONLINE\",\"oldStatus\":\"UNDEFINED\"}\n", ndjson);
+    }
+
+    private String export(FileFormat format, long afterId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userExporter.exportUsers(format, afterId, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void rows(long afterId, ResultSet... rows) {
+        doAnswer(i -> {
+            RowCallbackHandler handler = i.getArgument(2);
+            for (ResultSet rs : rows) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(userJdbcRepo).exportAfter(eq(afterId), any(Integer.class), any());
+    }
+
+    private static ResultSet row(long id, String name, String bornDate, String birthDate, String email, Status status)
+            throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(id);
+        when(rs.getString(2)).thenReturn(name);
+        when(rs.getString(3)).thenReturn(bornDate);
+        when(rs.getString(4)).thenReturn(birthDate);
+        when(rs.getString(5)).thenReturn(email);
+        when(rs.getInt(6)).thenReturn(status.ordinal());
+        when(rs.getInt(7)).thenReturn(Status.UNDEFINED.ordinal());
+        return rs;
+    }
+
+}
@@ -0,0 +1,250 @@
+package ru.app.user.registration.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.db.repositories.UserReactiveRepo;
+import ru.app.user.registration.db.routing.RecentWrites;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.RegistrationService;
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.presence.PresenceEntry;
+import ru.app.user.registration.services.presence.PresenceTable;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveRegistrationServiceImplTest {
+
+    @InjectMocks
+    private ReactiveRegistrationServiceImpl registrationService;
+
+    @Mock
+    private UserReactiveRepo userReactiveRepo;
+
+    @Mock
+    private RegistrationService blockingRegistrationService;
+
+    @Mock
+    private StatusEventBus statusEventBus;
+
+    @Mock
+    private UserSearcher userSearcher;
+
+    @Spy
+    private UserMapper userMapper;
+
+    @Spy
+    private RegistrationProperties properties;
+
+    @Spy
+    private UserStatisticsEngine statisticsEngine = new UserStatisticsEngine(null, null, null);
+
+    @Spy
+    private UserCache userCache = new UserCache(new RegistrationProperties());
+
+    @Spy
+    private RegistrationValidator registrationValidator;
+
+    @Mock
+    private RecentWrites recentWrites;
+
+    @Mock
+    private UserSketches userSketches;
+
+    private final RegistrationProperties presenceProperties = new RegistrationProperties();
+
+    @Spy
+    private PresenceTable presenceTable = new PresenceTable(null, presenceProperties, null);
+
+    private UserDto userDto;
+    private User user;
+
+    @Before
+    public void setup() {
+        userDto = new UserDto();
+        userDto.setName("Boris");
+        userDto.setEmail("boris@mail.ru");
+        userDto.setBornDate("11.12.1999");
+
+        user = new User();
+        user.setId(1L);
+        user.setEmail(userDto.getEmail());
+        user.setBirthDate(LocalDate.of(1999, 12, 11));
+        user.setNewStatus(Status.ONLINE);
+    }
+
+    @Test
+    public void createUser_notExists() {
+        when(userReactiveRepo.existsByEmail(userDto.getEmail())).thenReturn(Mono.just(false));
+        when(userReactiveRepo.insert(any(User.class))).thenAnswer(i -> {
+            User inserted = i.getArgument(0);
+            inserted.setId(7L);
+            return Mono.just(inserted);
+        });
+
+        UserDto result = registrationService.createUser(userDto).block();
+
+        assertEquals(Status.UNDEFINED.name(), result.getCurrentStatus());
+        assertEquals(1L, statisticsEngine.totalCount());
+        assertSame(result, userCache.getIfPresent(7L));
+        verify(recentWrites).record(7L);
+        verify(userSketches).onUserCreated(argThat(created -> created.getId() == 7L));
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void createUser_exists() {
+        when(userReactiveRepo.existsByEmail(userDto.getEmail())).thenReturn(Mono.just(true));
+        registrationService.createUser(userDto).block();
+    }
+
+    @Test
+    public void createUser_badEmailIsErrorSignal() {
+        userDto.setEmail("boris@mail@.ru");
+
+        Mono<UserDto> result = registrationService.createUser(userDto);
+
+        assertThrows(RegistrationException.class, result::block);
+        verify(userReactiveRepo, never()).existsByEmail(any());
+    }
+
+    @Test
+    public void getUser_cached() {
+        when(userReactiveRepo.findById(1L)).thenReturn(Mono.just(user));
+
+        UserDto first = registrationService.getUser(1L).block();
+        UserDto second = registrationService.getUser(1L).block();
+
+        assertSame(first, second);
+        verify(userReactiveRepo).findById(1L);
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void getUser_fail() {
+        when(userReactiveRepo.findById(1L)).thenReturn(Mono.empty());
+        registrationService.getUser(1L).block();
+    }
+
+    @Test
+    public void changeStatus_movesStatistics() {
+        statisticsEngine.onUserCreated(1L, Status.UNDEFINED, 20);
+        User shifted = new User();
+        shifted.setId(1L);
+        shifted.setBirthDate(LocalDate.now().minusYears(20));
+        shifted.setNewStatus(Status.ONLINE);
+        shifted.setOldStatus(Status.UNDEFINED);
+        when(userReactiveRepo.shiftStatus(1L, Status.ONLINE.ordinal())).thenReturn(Mono.just(shifted));
+
+        StatusInfoDto result = registrationService.changeStatus(1L, Status.ONLINE).block();
+
+        assertEquals(Status.ONLINE, result.getNewStatus());
+        assertEquals(Status.UNDEFINED, result.getOldStatus());
+        assertEquals(20, statisticsEngine.averageAge(Status.ONLINE, null));
+        verify(recentWrites).record(1L);
+    }
+
+    @Test
+    public void changeStatus_presenceGoesThroughTable() {
+        presenceProperties.getPresence().setEnabled(true);
+        StatusInfoDto applied = StatusInfoDto.builder().userId(1L).newStatus(Status.OFFLINE).oldStatus(Status.ONLINE).build();
+        when(blockingRegistrationService.changeStatus(1L, Status.OFFLINE)).thenReturn(applied);
+
+        StatusInfoDto result = registrationService.changeStatus(1L, Status.OFFLINE).block();
+
+        assertSame(applied, result);
+        verify(userReactiveRepo, never()).shiftStatus(any(), anyInt());
+    }
+
+    @Test
+    public void getUser_presenceStatus() {
+        presenceProperties.getPresence().setEnabled(true);
+        presenceTable.change(1L, Status.OFFLINE, id -> new PresenceEntry(Status.ONLINE, Status.UNDEFINED, 20));
+        when(userReactiveRepo.findById(1L)).thenReturn(Mono.just(user));
+
+        UserDto result = registrationService.getUser(1L).block();
+
+        assertEquals(Status.OFFLINE.name(), result.getCurrentStatus());
+        assertEquals(Status.ONLINE.name(), userCache.getIfPresent(1L).getCurrentStatus());
+        assertEquals(Status.OFFLINE.name(), registrationService.getUser(1L).block().getCurrentStatus());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void changeStatus_userNotFound() {
+        when(userReactiveRepo.shiftStatus(anyLong(), anyInt())).thenReturn(Mono.empty());
+        registrationService.changeStatus(1L, Status.ONLINE).block();
+    }
+
+    @Test
+    public void getStatistics_keysetPage() {
+        when(blockingRegistrationService.validateAndGetStatus("online")).thenReturn(Status.ONLINE);
+        User second = new User();
+        second.setId(2L);
+        second.setNewStatus(Status.ONLINE);
+        when(userReactiveRepo.findByNewStatus(Status.ONLINE, 0L, 2)).thenReturn(Flux.just(user, second));
+
+        StatisticsDto result = registrationService.getStatistics("online", null, 1, null, null).block();
+
+        assertEquals(1, result.getUsersByStatus().size());
+        assertEquals(Long.valueOf(1L), result.getUsersByStatusNextCursor());
+        assertTrue(result.getUsersByAge().isEmpty());
+        verify(userReactiveRepo, never()).findByAge(any(Boolean.class), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void getStatistics_databaseSummary() {
+        properties.getStatistics().setSummarySource(RegistrationProperties.SummarySource.DATABASE);
+        when(userReactiveRepo.findByAge(eq(true), any(), eq(0L), anyInt())).thenReturn(Flux.just(user));
+        UserStatisticsSummary summary = mock(UserStatisticsSummary.class);
+        when(summary.getTotal()).thenReturn(5L);
+        when(summary.getAverageAge()).thenReturn(30.7);
+        when(userReactiveRepo.summarize(eq(false), eq(-1), eq(true), eq(false), any())).thenReturn(Mono.just(summary));
+
+        StatisticsDto result = registrationService.getStatistics(null, true, null, null, null).block();
+
+        assertEquals(Long.valueOf(5L), result.getTotalUsersCount());
+        assertEquals(Integer.valueOf(30), result.getAverageAge());
+        assertEquals(1, result.getUsersByAge().size());
+    }
+
+    @Test
+    public void streamUsersByStatus_mapsRows() {
+        when(userReactiveRepo.streamByStatus(eq(Status.ONLINE), anyInt())).thenReturn(Flux.just(user));
+
+        List<UserDto> result = registrationService.streamUsersByStatus(Status.ONLINE).collectList().block();
+
+        assertEquals(1, result.size());
+        assertEquals(user.getEmail(), result.get(0).getEmail());
+    }
+
+}
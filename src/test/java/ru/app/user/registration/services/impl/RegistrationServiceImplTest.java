@@ -8,21 +8,56 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.app.config.RegistrationProperties;
 import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.projections.StatusTransition;
+import ru.app.user.registration.db.projections.UserStatisticsSummary;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
 import ru.app.user.registration.db.repositories.UserRepo;
+import ru.app.user.registration.db.routing.RecentWrites;
 import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.dto.StatusChangeDto;
 import ru.app.user.registration.dto.StatusInfoDto;
+import ru.app.user.registration.dto.UserBatchResultDto;
 import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.dto.UserLookupResultDto;
 import ru.app.user.registration.enums.Status;
 import ru.app.user.registration.exceptions.RegistrationException;
-
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.events.StatusEventBus;
+import ru.app.user.registration.services.lookup.UserLookup;
+import ru.app.user.registration.services.presence.PresenceTable;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -34,9 +69,47 @@ public class RegistrationServiceImplTest {
     @Mock
     private UserRepo userRepo;
 
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    @Mock
+    private StatusEventBus statusEventBus;
+
+    @Mock
+    private UserSearcher userSearcher;
+
+    @Mock
+    private UserLookup userLookup;
+
+    @Mock
+    private UserSketches userSketches;
+
     @Spy
     private ObjectMapper mapper;
 
+    @Spy
+    private UserMapper userMapper;
+
+    @Spy
+    private RegistrationProperties properties;
+
+    @Spy
+    private UserStatisticsEngine statisticsEngine = new UserStatisticsEngine(null, null, null);
+
+    @Spy
+    private UserCache userCache = new UserCache(new RegistrationProperties());
+
+    @Spy
+    private RecentWrites recentWrites = new RecentWrites(new RegistrationProperties());
+
+    private final RegistrationProperties presenceProperties = new RegistrationProperties();
+
+    @Spy
+    private RegistrationValidator registrationValidator;
+
+    @Spy
+    private PresenceTable presenceTable = new PresenceTable(null, presenceProperties, null);
+
     private UserDto userDto;
     private User user;
     private long usersCount;
@@ -55,7 +128,6 @@ public class RegistrationServiceImplTest {
         user.setNewStatus(Status.UNDEFINED);
 
         usersCount = 10L;
-        when(userRepo.count()).thenReturn(usersCount);
     }
 
     @Test
@@ -64,8 +136,73 @@ public class RegistrationServiceImplTest {
         when(userRepo.save(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
 
         UserDto result = registrationService.createUser(userDto);
+        int expectedAge = Period.between(LocalDate.of(1999, 12, 11), LocalDate.now()).getYears();
         assertEquals(Status.UNDEFINED.name(), result.getCurrentStatus());
-        assertEquals(Integer.valueOf(22), result.getAge());
+        assertEquals(Integer.valueOf(expectedAge), result.getAge());
+    }
+
+    @Test
+    public void createUsers_partialFailure() {
+        UserDto badEmail = new UserDto();
+        badEmail.setEmail("boris@mail@.ru");
+        badEmail.setBornDate("11.12.1999");
+
+        UserDto duplicateInBatch = new UserDto();
+        duplicateInBatch.setEmail(userDto.getEmail());
+        duplicateInBatch.setBornDate("01.01.2000");
+
+        UserDto existing = new UserDto();
+        existing.setEmail("ivan@mail.ru");
+        existing.setBornDate("01.01.2000");
+
+        when(userJdbcRepo.findExistingEmails(any())).thenReturn(Collections.singleton(existing.getEmail()));
+        when(userJdbcRepo.allocateIds(eq(1), anyInt())).thenReturn(new long[]{42L});
+
+        List<UserBatchResultDto> result = registrationService.createUsers(
+                Arrays.asList(userDto, badEmail, duplicateInBatch, existing));
+
+        assertEquals(4, result.size());
+        assertTrue(result.get(0).isCreated());
+        assertEquals(Long.valueOf(42L), result.get(0).getUserId());
+        assertEquals(Status.UNDEFINED.name(), result.get(0).getUser().getCurrentStatus());
+        assertFalse(result.get(1).isCreated());
+        assertFalse(result.get(2).isCreated());
+        assertFalse(result.get(3).isCreated());
+        assertNotNull(result.get(3).getError());
+        int jdbcBatchSize = properties.getBatch().getJdbcBatchSize();
+        verify(userJdbcRepo).insertAll(anyList(), eq(jdbcBatchSize));
+    }
+
+    @Test
+    public void createUsers_cachesAfterCommit() {
+        when(userJdbcRepo.allocateIds(eq(1), anyInt())).thenReturn(new long[]{42L});
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            registrationService.createUsers(Collections.singletonList(userDto));
+            assertNull(userCache.getIfPresent(42L));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(userDto.getEmail(), userCache.getIfPresent(42L).getEmail());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void createUsers_nothingToInsert() {
+        when(userJdbcRepo.findExistingEmails(any())).thenReturn(Collections.singleton(userDto.getEmail()));
+
+        List<UserBatchResultDto> result = registrationService.createUsers(Collections.singletonList(userDto));
+
+        assertFalse(result.get(0).isCreated());
+        verify(userJdbcRepo, never()).insertAll(anyList(), anyInt());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void createUsers_tooLarge() {
+        properties.getBatch().setMaxSize(1);
+        registrationService.createUsers(Arrays.asList(userDto, userDto));
     }
 
     @Test(expected = RegistrationException.class)
@@ -113,12 +250,12 @@ public class RegistrationServiceImplTest {
 
     @Test
     public void changeStatus() {
-        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
-        when(userRepo.save(any(User.class))).thenAnswer(i -> i.getArguments()[0]);
+        stubShiftStatus();
 
         StatusInfoDto result = registrationService.changeStatus(1L, Status.ONLINE);
         assertEquals(Status.UNDEFINED, result.getOldStatus());
         assertEquals(Status.ONLINE, result.getNewStatus());
+        verify(statusEventBus).publish(result);
     }
 
     @Test(expected = RegistrationException.class)
@@ -133,6 +270,10 @@ public class RegistrationServiceImplTest {
 
     @Test
     public void getStatistics_noStatusNoAge() {
+        for (int i = 0; i < usersCount; i++) {
+            statisticsEngine.onUserCreated((long) i, Status.UNDEFINED, 30);
+        }
+
         StatisticsDto result = registrationService.getStatistics(null, null);
         assertTrue(result.getUsersByAge().isEmpty());
         assertTrue(result.getUsersByStatus().isEmpty());
@@ -143,8 +284,11 @@ public class RegistrationServiceImplTest {
     @Test
     public void getStatistics_statusOnly() {
         Status status = Status.ONLINE;
-        user.setAge(20);
-        when(userRepo.findAllByNewStatus(status)).thenReturn(Collections.singletonList(user));
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        user.setNewStatus(status);
+        statisticsEngine.onUserCreated(user.getId(), status, user.getAge());
+        statisticsEngine.onUserCreated(2L, Status.UNDEFINED, 50);
+        when(userRepo.findByNewStatusAndIdGreaterThanOrderByIdAsc(eq(status), eq(0L), any(Pageable.class))).thenReturn(Collections.singletonList(user));
 
         StatisticsDto result = registrationService.getStatistics(status.name(), null);
         assertTrue(result.getUsersByAge().isEmpty());
@@ -155,8 +299,11 @@ public class RegistrationServiceImplTest {
     @Test
     public void getStatistics_statusOfflineOnly() {
         Status status = Status.OFFLINE;
-        user.setAge(20);
-        when(userRepo.findAllByNewStatus(status)).thenReturn(Collections.singletonList(user));
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        user.setNewStatus(status);
+        statisticsEngine.onUserCreated(user.getId(), status, user.getAge());
+        statisticsEngine.onUserCreated(2L, Status.UNDEFINED, 50);
+        when(userRepo.findByNewStatusAndIdGreaterThanOrderByIdAsc(eq(status), eq(0L), any(Pageable.class))).thenReturn(Collections.singletonList(user));
 
         StatisticsDto result = registrationService.getStatistics(status.name(), null);
         assertTrue(result.getUsersByAge().isEmpty());
@@ -167,8 +314,10 @@ public class RegistrationServiceImplTest {
     @Test
     public void getStatistics_ageOnlyAdults() {
 
-        user.setAge(20);
-        when(userRepo.findAdults(18)).thenReturn(Collections.singletonList(user));
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+        statisticsEngine.onUserCreated(2L, Status.UNDEFINED, 12);
+        when(userRepo.findAdults(UserStatisticsEngine.adultCutoff(), 0L, 101)).thenReturn(Collections.singletonList(user));
 
         StatisticsDto result = registrationService.getStatistics(null, true);
         assertFalse(result.getUsersByAge().isEmpty());
@@ -178,8 +327,10 @@ public class RegistrationServiceImplTest {
 
     @Test
     public void getStatistics_ageOnlyTeens() {
-        user.setAge(12);
-        when(userRepo.findTeens(18)).thenReturn(Collections.singletonList(user));
+        user.setBirthDate(LocalDate.now().minusYears(12));
+        statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+        statisticsEngine.onUserCreated(2L, Status.UNDEFINED, 40);
+        when(userRepo.findTeens(UserStatisticsEngine.adultCutoff(), 0L, 101)).thenReturn(Collections.singletonList(user));
 
         StatisticsDto result = registrationService.getStatistics(null, false);
         assertFalse(result.getUsersByAge().isEmpty());
@@ -190,12 +341,15 @@ public class RegistrationServiceImplTest {
     @Test
     public void getStatistics_statusAndAge() {
         Status status = Status.OFFLINE;
-        user.setAge(20);
-        when(userRepo.findAllByNewStatus(status)).thenReturn(Collections.singletonList(user));
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        user.setNewStatus(status);
+        statisticsEngine.onUserCreated(user.getId(), status, user.getAge());
+        when(userRepo.findByNewStatusAndIdGreaterThanOrderByIdAsc(eq(status), eq(0L), any(Pageable.class))).thenReturn(Collections.singletonList(user));
 
         User teen = new User();
-        teen.setAge(12);
-        when(userRepo.findTeens(18)).thenReturn(Collections.singletonList(teen));
+        teen.setBirthDate(LocalDate.now().minusYears(12));
+        statisticsEngine.onUserCreated(2L, teen.getNewStatus(), teen.getAge());
+        when(userRepo.findTeens(UserStatisticsEngine.adultCutoff(), 0L, 101)).thenReturn(Collections.singletonList(teen));
 
         StatisticsDto result = registrationService.getStatistics(status.name(), false);
         assertFalse(result.getUsersByAge().isEmpty());
@@ -203,4 +357,236 @@ public class RegistrationServiceImplTest {
         assertEquals(Integer.valueOf((user.getAge() + teen.getAge()) / 2), result.getAverageAge());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getStatistics_statusAndAgeCountsOverlapOnce() {
+        statisticsEngine.onUserCreated(1L, Status.ONLINE, 10);
+        statisticsEngine.onUserCreated(2L, Status.ONLINE, 30);
+        statisticsEngine.onUserCreated(3L, Status.OFFLINE, 14);
+
+        StatisticsDto result = registrationService.getStatistics(Status.ONLINE.name(), false);
+        assertEquals(Long.valueOf(3), result.getTotalUsersCount());
+        assertEquals(Integer.valueOf((10 + 30 + 14) / 3), result.getAverageAge());
+    }
+
+    @Test
+    public void changeStatus_movesStatistics() {
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+        stubShiftStatus();
+
+        registrationService.changeStatus(user.getId(), Status.ONLINE);
+
+        assertEquals(20, statisticsEngine.averageAge(Status.ONLINE, null));
+        assertEquals(0, statisticsEngine.averageAge(Status.UNDEFINED, null));
+        assertEquals(1, statisticsEngine.totalCount());
+    }
+
+    @Test
+    public void getStatistics_keysetPage() {
+        User first = new User();
+        first.setId(5L);
+        User second = new User();
+        second.setId(7L);
+        User third = new User();
+        third.setId(9L);
+        when(userRepo.findAdults(UserStatisticsEngine.adultCutoff(), 3L, 3)).thenReturn(Arrays.asList(first, second, third));
+
+        StatisticsDto result = registrationService.getStatistics(null, true, 2, null, 3L);
+        assertEquals(2, result.getUsersByAge().size());
+        assertEquals(Long.valueOf(7L), result.getUsersByAgeNextCursor());
+        assertNull(result.getUsersByStatusNextCursor());
+    }
+
+    @Test
+    public void getStatistics_lastPageHasNoCursor() {
+        user.setNewStatus(Status.ONLINE);
+        when(userRepo.findByNewStatusAndIdGreaterThanOrderByIdAsc(eq(Status.ONLINE), eq(1L), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(user));
+
+        StatisticsDto result = registrationService.getStatistics("online", null, 2, 1L, null);
+        assertEquals(1, result.getUsersByStatus().size());
+        assertNull(result.getUsersByStatusNextCursor());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void getStatistics_badLimit() {
+        registrationService.getStatistics(null, true, 0, null, null);
+    }
+
+    @Test
+    public void streamUsersByStatus_writesNdjson() throws Exception {
+        user.setNewStatus(Status.ONLINE);
+        doAnswer(i -> {
+            Consumer<User> consumer = i.getArgument(2);
+            consumer.accept(user);
+            consumer.accept(user);
+            return null;
+        }).when(userJdbcRepo).streamByStatus(eq(Status.ONLINE), anyInt(), any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registrationService.streamUsersByStatus(Status.ONLINE, out);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8.name());
+        String line = mapper.writeValueAsString(mapper.readValue(ndjson.split("\n")[0], UserDto.class));
+        assertEquals(line + "\n" + line + "\n", ndjson);
+        assertEquals(user.getEmail(), mapper.readValue(line, UserDto.class).getEmail());
+    }
+
+    @Test
+    public void getStatistics_databaseSummary() {
+        properties.getStatistics().setSummarySource(RegistrationProperties.SummarySource.DATABASE);
+        UserStatisticsSummary summary = mock(UserStatisticsSummary.class);
+        when(summary.getTotal()).thenReturn(usersCount);
+        when(summary.getAverageAge()).thenReturn(27.8);
+        when(userRepo.summarize(true, Status.ONLINE.ordinal(), false, true, UserStatisticsEngine.adultCutoff())).thenReturn(summary);
+
+        StatisticsDto result = registrationService.getStatistics(Status.ONLINE.name(), false);
+        assertEquals(Long.valueOf(usersCount), result.getTotalUsersCount());
+        assertEquals(Integer.valueOf(27), result.getAverageAge());
+    }
+
+    @Test
+    public void getUser_cached() {
+        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
+
+        registrationService.getUser(user.getId());
+        UserDto result = registrationService.getUser(user.getId());
+
+        assertEquals(userDto.getEmail(), result.getEmail());
+        verify(userRepo, times(1)).findById(user.getId());
+        assertEquals(1, userCache.getStats().getHitCount());
+    }
+
+    @Test
+    public void getUser_changedDuringLoadNotCached() {
+        when(userRepo.findById(user.getId())).thenAnswer(i -> {
+            userCache.invalidate(user.getId());
+            return Optional.of(user);
+        });
+
+        registrationService.getUser(user.getId());
+
+        assertNull(userCache.getIfPresent(user.getId()));
+    }
+
+    @Test
+    public void getUsers_cacheFirstInRequestOrder() {
+        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
+        registrationService.getUser(user.getId());
+
+        User other = new User();
+        other.setId(3L);
+        other.setEmail("anna@mail.ru");
+        other.setNewStatus(Status.ONLINE);
+        when(userLookup.findUsers(List.of(3L, 2L), false)).thenReturn(Map.of(3L, other));
+
+        List<UserLookupResultDto> result = registrationService.getUsers(List.of(3L, 1L, 2L, 3L));
+
+        assertEquals(4, result.size());
+        assertEquals("anna@mail.ru", result.get(0).getUser().getEmail());
+        assertEquals(userDto.getEmail(), result.get(1).getUser().getEmail());
+        assertEquals(Long.valueOf(2L), result.get(2).getUserId());
+        assertFalse(result.get(2).isFound());
+        assertNull(result.get(2).getUser());
+        assertTrue(result.get(3).isFound());
+        verify(userLookup, times(1)).findUsers(anyList(), eq(false));
+        assertEquals(other.getEmail(), userCache.getIfPresent(3L).getEmail());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void getUsers_tooManyIds() {
+        properties.getLookup().setMaxSize(2);
+        registrationService.getUsers(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    public void changeStatus_updatesCachedUser() {
+        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
+        stubShiftStatus();
+
+        registrationService.getUser(user.getId());
+        registrationService.changeStatus(user.getId(), Status.OFFLINE);
+
+        assertEquals(Status.OFFLINE.name(), registrationService.getUser(user.getId()).getCurrentStatus());
+    }
+
+    @Test
+    public void changeStatuses_lastChangeWinsAndMissingMarked() {
+        doAnswer(i -> {
+            Map<Long, Status> statuses = i.getArgument(0);
+            assertEquals(Status.OFFLINE, statuses.get(1L));
+            UserJdbcRepo.TransitionHandler handler = i.getArgument(1);
+            handler.accept(1L, Status.OFFLINE, Status.UNDEFINED, 20);
+            return null;
+        }).when(userJdbcRepo).shiftStatuses(any(), any());
+
+        List<StatusInfoDto> result = registrationService.changeStatuses(Arrays.asList(
+                statusChange(1L, Status.ONLINE), statusChange(2L, Status.ONLINE), statusChange(1L, Status.OFFLINE)));
+
+        assertEquals(3, result.size());
+        assertEquals(Status.OFFLINE, result.get(0).getNewStatus());
+        assertEquals(Long.valueOf(2L), result.get(1).getUserId());
+        assertNull(result.get(1).getNewStatus());
+        assertEquals(Status.OFFLINE, result.get(2).getNewStatus());
+    }
+
+    private void stubShiftStatus() {
+        when(userRepo.shiftStatus(eq(user.getId()), anyInt())).thenAnswer(i -> {
+            user.setOldStatus(user.getNewStatus());
+            user.setNewStatus(Status.values()[(int) i.getArgument(1)]);
+            return Optional.of(transitionOf(user));
+        });
+    }
+
+    private static StatusTransition transitionOf(User user) {
+        Long id = user.getId();
+        Integer newStatus = user.getNewStatus().ordinal();
+        Integer oldStatus = user.getOldStatus().ordinal();
+        Integer age = user.getAge();
+        return new StatusTransition() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getNewStatus() {
+                return newStatus;
+            }
+
+            @Override
+            public Integer getOldStatus() {
+                return oldStatus;
+            }
+
+            @Override
+            public Integer getAge() {
+                return age;
+            }
+        };
+    }
+
+    private static StatusChangeDto statusChange(Long userId, Status status) {
+        StatusChangeDto change = new StatusChangeDto();
+        change.setUserId(userId);
+        change.setStatus(status);
+        return change;
+    }
+
+    @Test
+    public void changeStatus_presenceVisibleBeforeFlush() {
+        presenceProperties.getPresence().setEnabled(true);
+        user.setBirthDate(LocalDate.now().minusYears(20));
+        statisticsEngine.onUserCreated(user.getId(), user.getNewStatus(), user.getAge());
+        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
+
+        registrationService.changeStatus(user.getId(), Status.ONLINE);
+        StatusInfoDto result = registrationService.changeStatus(user.getId(), Status.OFFLINE);
+
+        assertEquals(Status.ONLINE, result.getOldStatus());
+        assertEquals(Status.OFFLINE.name(), registrationService.getUser(user.getId()).getCurrentStatus());
+        assertEquals(20, statisticsEngine.averageAge(Status.OFFLINE, null));
+        verify(userRepo, never()).shiftStatus(any(), anyInt());
+    }
+}
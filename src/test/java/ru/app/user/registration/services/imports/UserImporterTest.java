@@ -0,0 +1,151 @@
+package ru.app.user.registration.services.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.ImportResultDto;
+import ru.app.user.registration.enums.FileFormat;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+import ru.app.user.registration.services.search.UserSearcher;
+import ru.app.user.registration.services.statistics.UserSketches;
+import ru.app.user.registration.services.statistics.UserStatisticsEngine;
+import ru.app.user.registration.services.validation.RegistrationValidator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    @Mock
+    private UserSearcher userSearcher;
+
+    @Mock
+    private UserSketches userSketches;
+
+    private RegistrationProperties properties;
+    private UserStatisticsEngine statisticsEngine;
+    private UserImporter userImporter;
+    private Path report;
+
+    @Before
+    public void setup() throws IOException {
+        properties = new RegistrationProperties();
+        properties.getBulkImport().setParallelism(2);
+        statisticsEngine = new UserStatisticsEngine(null, null, null);
+        userImporter = new UserImporter(userJdbcRepo, new UserMapper(), new ObjectMapper(), properties,
+                statisticsEngine, new RegistrationValidator(), userSearcher, userSketches);
+        report = folder.newFile("errors.csv").toPath();
+        lenient().when(userJdbcRepo.allocateIds(anyInt(), anyInt()))
+                .thenAnswer(i -> LongStream.rangeClosed(1, (int) i.getArgument(0)).toArray());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void csv_loadsValidRowsAndReportsRejected() throws IOException {
+        when(userJdbcRepo.findExistingEmails(any())).thenReturn(Set.of("taken@mail.ru"));
+        String csv = "email,name,bornDate\n" +
+                "boris@mail.ru,\"Борис, младший\",11.12.1999\n" +
+                "bad-email,Иван,11.12.1999\n" +
+                "\n" +
+                "anna@mail.ru,Анна,31.12.2999\n" +
+                "boris@mail.ru,Борис,11.12.1999\n" +
+                "taken@mail.ru,Олег,11.12.1999\n" +
+                "\"oops@mail.ru,Олег,11.12.1999\n" +
+                "vera@mail.ru,,01.01.2010\n";
+
+        ImportResultDto result = userImporter.importUsers(stream(csv), FileFormat.CSV, report);
+
+        ArgumentCaptor<List<User>> loaded = ArgumentCaptor.forClass(List.class);
+        verify(userJdbcRepo).copyAll(loaded.capture());
+        assertEquals(List.of("boris@mail.ru", "vera@mail.ru"),
+                loaded.getValue().stream().map(User::getEmail).collect(Collectors.toList()));
+        assertEquals("Борис, младший", loaded.getValue().get(0).getName());
+        assertNull(loaded.getValue().get(1).getName());
+        assertEquals(2L, statisticsEngine.totalCount());
+
+        assertEquals(7, result.getRead());
+        assertEquals(2, result.getImported());
+        assertEquals(5, result.getRejected());
+        List<String> lines = Files.readAllLines(report);
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(1).startsWith("3,"));
+        assertTrue(lines.get(2).startsWith("5,"));
+        assertTrue(lines.get(3).startsWith("6,\"Почта boris@mail.ru повторяется в файле, см. строку 2\""));
+        assertTrue(lines.get(4).startsWith("7,\"Пользователь с почтой taken@mail.ru уже существует\""));
+        assertTrue(lines.get(5).startsWith("8,\"Не удалось разобрать строку"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void ndjson_loadsChunksInFileOrder() throws IOException {
+        properties.getBulkImport().setChunkSize(2);
+        properties.getBulkImport().setLoadMethod(RegistrationProperties.LoadMethod.BATCH);
+        when(userJdbcRepo.findExistingEmails(any())).thenReturn(Set.of());
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            ndjson.append("{\"email\":\"user").append(i).append("@mail.ru\",\"bornDate\":\"11.12.1999\"}\n");
+        }
+        ndjson.append("{\"email\":\n");
+
+        ImportResultDto result = userImporter.importUsers(stream(ndjson.toString()), FileFormat.NDJSON, report);
+
+        ArgumentCaptor<Collection<String>> checked = ArgumentCaptor.forClass(Collection.class);
+        verify(userJdbcRepo, times(4)).findExistingEmails(checked.capture());
+        assertEquals(List.of("user0@mail.ru", "user1@mail.ru"), List.copyOf(checked.getAllValues().get(0)));
+        assertEquals(List.of("user6@mail.ru"), List.copyOf(checked.getAllValues().get(3)));
+        verify(userJdbcRepo, times(4)).insertAll(anyList(), anyInt());
+        verify(userJdbcRepo, never()).copyAll(anyList());
+        assertEquals(7, result.getImported());
+        assertEquals(1, result.getRejected());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void csv_headerWithoutEmail() throws IOException {
+        userImporter.importUsers(stream("name,bornDate\nБорис,11.12.1999\n"), FileFormat.CSV, report);
+    }
+
+    @Test
+    public void csvRowParser_quotedFields() {
+        assertEquals(List.of("a", "b,\"c\"", ""), CsvRowParser.split("a,\"b,\"\"c\"\"\","));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
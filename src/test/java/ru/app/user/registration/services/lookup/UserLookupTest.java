@@ -0,0 +1,89 @@
+package ru.app.user.registration.services.lookup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserLookupTest {
+
+    private UserJdbcRepo userJdbcRepo;
+    private UserLookup userLookup;
+
+    @Before
+    public void setup() {
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.getLookup().setChunkSize(3);
+        properties.getLookup().setParallelism(2);
+        userJdbcRepo = mock(UserJdbcRepo.class);
+        userLookup = new UserLookup(userJdbcRepo, mock(PlatformTransactionManager.class), properties);
+    }
+
+    @After
+    public void tearDown() {
+        userLookup.shutdown();
+    }
+
+    @Test
+    public void findUsers_readsChunksAndSkipsMissing() {
+        when(userJdbcRepo.findByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id % 4 != 0).map(UserLookupTest::user).collect(Collectors.toList());
+        });
+        List<Long> ids = LongStream.rangeClosed(1, 10).boxed().collect(Collectors.toList());
+
+        Map<Long, User> found = userLookup.findUsers(ids, false);
+
+        assertEquals(8, found.size());
+        assertFalse(found.containsKey(4L));
+        assertEquals(Long.valueOf(10L), found.get(10L).getId());
+        verify(userJdbcRepo, times(4)).findByIds(anyCollection());
+    }
+
+    @Test
+    public void findUsers_rethrowsChunkFailure() {
+        List<Collection<Long>> requested = new ArrayList<>();
+        when(userJdbcRepo.findByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            synchronized (requested) {
+                requested.add(ids);
+            }
+            if (ids.contains(4L)) {
+                throw new IllegalStateException("chunk");
+            }
+            return List.of();
+        });
+
+        try {
+            userLookup.findUsers(List.of(1L, 2L, 3L, 4L, 5L), true);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("chunk", e.getMessage());
+        }
+        assertEquals(2, requested.size());
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+}
@@ -0,0 +1,107 @@
+package ru.app.user.registration.services.presence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.cache.UserCache;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PresenceTableTest {
+
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    private RegistrationProperties properties;
+    private PresenceTable presenceTable;
+
+    @Before
+    public void setup() {
+        properties = new RegistrationProperties();
+        properties.getPresence().setEnabled(true);
+        presenceTable = new PresenceTable(userJdbcRepo, properties, new UserCache(properties));
+    }
+
+    @Test
+    public void change_coalescesFlips() {
+        PresenceEntry stored = new PresenceEntry(Status.UNDEFINED, Status.UNDEFINED, 20);
+
+        assertEquals(Status.UNDEFINED, presenceTable.change(1L, Status.ONLINE, id -> stored).getNewStatus());
+        assertEquals(Status.ONLINE, presenceTable.change(1L, Status.OFFLINE, id -> stored).getNewStatus());
+        assertEquals(Status.OFFLINE, presenceTable.change(1L, Status.ONLINE, id -> stored).getNewStatus());
+
+        assertEquals(1, presenceTable.size());
+        assertEquals(Status.ONLINE, presenceTable.get(1L).getNewStatus());
+        assertEquals(Status.OFFLINE, presenceTable.get(1L).getOldStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flush_writesFinalStateOnce() {
+        PresenceEntry stored = new PresenceEntry(Status.UNDEFINED, Status.UNDEFINED, 20);
+        presenceTable.change(1L, Status.ONLINE, id -> stored);
+        presenceTable.change(1L, Status.OFFLINE, id -> stored);
+
+        presenceTable.flush();
+
+        ArgumentCaptor<Map<Long, PresenceEntry>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(userJdbcRepo, times(1)).writeStatuses(captor.capture());
+        assertEquals(Status.OFFLINE, captor.getValue().get(1L).getNewStatus());
+        assertEquals(0, presenceTable.size());
+    }
+
+    @Test
+    public void flush_keepsEntryChangedDuringWrite() {
+        PresenceEntry stored = new PresenceEntry(Status.UNDEFINED, Status.UNDEFINED, 20);
+        presenceTable.change(1L, Status.ONLINE, id -> stored);
+        doAnswer(i -> presenceTable.change(1L, Status.OFFLINE, id -> stored))
+                .doNothing()
+                .when(userJdbcRepo).writeStatuses(any());
+
+        presenceTable.flush();
+
+        assertEquals(Status.OFFLINE, presenceTable.get(1L).getNewStatus());
+        presenceTable.flush();
+        assertEquals(0, presenceTable.size());
+    }
+
+    @Test
+    public void change_flushesWhenFull() {
+        properties.getPresence().setCapacity(1);
+        PresenceEntry stored = new PresenceEntry(Status.UNDEFINED, Status.UNDEFINED, 20);
+        presenceTable.change(1L, Status.ONLINE, id -> stored);
+        presenceTable.change(1L, Status.OFFLINE, id -> stored);
+        verify(userJdbcRepo, never()).writeStatuses(any());
+
+        presenceTable.change(2L, Status.ONLINE, id -> stored);
+
+        verify(userJdbcRepo, times(1)).writeStatuses(any());
+        assertNull(presenceTable.get(1L));
+        assertNotNull(presenceTable.get(2L));
+    }
+
+    @Test
+    public void drain_flushesPending() {
+        presenceTable.change(1L, Status.ONLINE, id -> new PresenceEntry(Status.UNDEFINED, Status.UNDEFINED, 20));
+
+        presenceTable.drain();
+
+        verify(userJdbcRepo, times(1)).writeStatuses(any());
+        assertEquals(0, presenceTable.size());
+    }
+
+}
@@ -0,0 +1,118 @@
+package ru.app.user.registration.services.search;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserSearchIndexTest {
+
+    private static final String[][] USERS = {
+            {"Борис", "boris@mail.ru"},
+            {"Анна", "anna@mail.ru"},
+            {"Борислав", "bslav@mail.ru"},
+            {null, "boris.second@mail.ru"},
+    };
+
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    private RegistrationProperties properties;
+    private UserSearchIndex index;
+
+    @Before
+    public void setup() {
+        properties = new RegistrationProperties();
+        properties.getSearch().getInMemory().setEnabled(true);
+        properties.getSearch().getInMemory().setLoadBatchSize(2);
+        index = new UserSearchIndex(userJdbcRepo, properties);
+
+        when(userJdbcRepo.findSearchTerms(anyLong(), anyInt(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            UserJdbcRepo.SearchTermsHandler handler = invocation.getArgument(2);
+            long last = afterId;
+            for (long id = afterId + 1; id <= USERS.length && id <= afterId + limit; id++) {
+                handler.accept(id, USERS[(int) id - 1][0], USERS[(int) id - 1][1]);
+                last = id;
+            }
+            return last;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    public void findByPrefix_matchesNameAndEmailIgnoringCase() {
+        index.build();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(1L, 3L), ids("БОРИС", 0));
+        assertEquals(List.of(1L, 4L), ids("boris", 0));
+        assertEquals(List.of(2L), ids("ann", 0));
+        assertEquals(List.of(), ids("bz", 0));
+    }
+
+    @Test
+    public void findByPrefix_pagesById() {
+        index.build();
+
+        IndexHits first = index.findByPrefix("бор", 0, 1, deadline());
+        assertEquals(List.of(1L), first.getIds());
+        assertEquals(List.of(3L), index.findByPrefix("бор", 1, 1, deadline()).getIds());
+        assertEquals(List.of(), index.findByPrefix("бор", 3, 1, deadline()).getIds());
+    }
+
+    @Test
+    public void add_visibleBeforeAndAfterMerge() throws InterruptedException {
+        properties.getSearch().getInMemory().setMergeThreshold(4);
+        index.build();
+
+        index.add(5L, "Борис", "new@mail.ru");
+        assertEquals(List.of(1L, 3L, 5L), ids("борис", 0));
+
+        index.add(6L, "Иван", "boris.third@mail.ru");
+        for (int i = 0; i < 50; i++) {
+            assertEquals(List.of(1L, 4L, 6L), ids("boris", 0));
+            assertEquals(List.of(5L), ids("new", 0));
+            Thread.sleep(2);
+        }
+    }
+
+    @Test
+    public void add_ignoredWhenDisabled() {
+        properties.getSearch().getInMemory().setEnabled(false);
+
+        index.add(1L, "Борис", "boris@mail.ru");
+
+        assertFalse(index.isReady());
+        assertEquals(List.of(), ids("борис", 0));
+    }
+
+    private List<Long> ids(String prefix, long afterId) {
+        IndexHits hits = index.findByPrefix(prefix, afterId, 10, deadline());
+        assertFalse(hits.isPartial());
+        return hits.getIds();
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + 1_000_000_000L;
+    }
+
+}
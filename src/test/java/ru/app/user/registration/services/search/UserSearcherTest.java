@@ -0,0 +1,123 @@
+package ru.app.user.registration.services.search;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.SearchResultDto;
+import ru.app.user.registration.dto.UserDto;
+import ru.app.user.registration.enums.SearchMode;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.mappers.UserMapper;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserSearcherTest {
+
+    @InjectMocks
+    private UserSearcher userSearcher;
+
+    @Mock
+    private UserJdbcRepo userJdbcRepo;
+
+    @Mock
+    private UserSearchIndex searchIndex;
+
+    @Spy
+    private UserMapper userMapper;
+
+    @Spy
+    private RegistrationProperties properties;
+
+    @Test
+    public void search_prefixPagesByLastId() {
+        when(userJdbcRepo.searchByPrefix(eq("бор"), eq(0L), eq(3), anyLong(), any())).thenAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(4);
+            List.of(4L, 9L, 12L).forEach(id -> consumer.accept(user(id)));
+            return true;
+        });
+
+        SearchResultDto result = userSearcher.search(" Бор ", SearchMode.PREFIX, 2, null);
+
+        assertEquals(List.of("user4@mail.ru", "user9@mail.ru"), emails(result));
+        assertEquals("9", result.getNext());
+        assertFalse(result.isPartial());
+    }
+
+    @Test
+    public void search_partialPageContinuesFromCursor() {
+        when(userJdbcRepo.searchByPrefix(eq("user"), eq(10L), eq(21), anyLong(), any())).thenReturn(false);
+
+        SearchResultDto result = userSearcher.search("user", SearchMode.PREFIX, null, "10");
+
+        assertTrue(result.getUsers().isEmpty());
+        assertEquals("10", result.getNext());
+        assertTrue(result.isPartial());
+    }
+
+    @Test
+    public void search_prefixFromIndexWhenReady() {
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.findByPrefix(eq("user"), eq(0L), eq(21), anyLong())).thenReturn(new IndexHits(List.of(3L), false));
+        when(userJdbcRepo.findByIds(List.of(3L))).thenReturn(List.of(user(3L)));
+
+        SearchResultDto result = userSearcher.search("user", SearchMode.PREFIX, null, null);
+
+        assertEquals(List.of("user3@mail.ru"), emails(result));
+        assertNull(result.getNext());
+        verify(userJdbcRepo, never()).searchByPrefix(any(), anyLong(), any(Integer.class), anyLong(), any());
+    }
+
+    @Test
+    public void search_fuzzyCursorIsOffset() {
+        when(userJdbcRepo.searchFuzzy(eq("usre"), anyDouble(), eq(2), eq(3), anyLong(), any())).thenAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(5);
+            List.of(5L, 1L, 7L).forEach(id -> consumer.accept(user(id)));
+            return true;
+        });
+
+        SearchResultDto result = userSearcher.search("usre", SearchMode.FUZZY, 2, "2");
+
+        assertEquals(List.of("user5@mail.ru", "user1@mail.ru"), emails(result));
+        assertEquals("4", result.getNext());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void search_blankQuery() {
+        userSearcher.search("  ", SearchMode.PREFIX, null, null);
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void search_fuzzyQueryTooShort() {
+        userSearcher.search("us", SearchMode.FUZZY, null, null);
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("user" + id + "@mail.ru");
+        return user;
+    }
+
+    private static List<String> emails(SearchResultDto result) {
+        return result.getUsers().stream().map(UserDto::getEmail).collect(Collectors.toList());
+    }
+
+}
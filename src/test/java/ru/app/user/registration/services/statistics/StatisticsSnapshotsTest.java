@@ -0,0 +1,107 @@
+package ru.app.user.registration.services.statistics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.dto.StatisticsDto;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.exceptions.RegistrationException;
+import ru.app.user.registration.services.RegistrationService;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatisticsSnapshotsTest {
+
+    @Mock
+    private RegistrationService registrationService;
+
+    private RegistrationProperties properties;
+    private UserStatisticsEngine statisticsEngine;
+    private StatisticsSnapshots statisticsSnapshots;
+
+    @Before
+    public void setup() {
+        properties = new RegistrationProperties();
+        properties.getStatistics().getSnapshot().setEnabled(true);
+        statisticsEngine = new UserStatisticsEngine(null, null, null);
+        statisticsSnapshots = new StatisticsSnapshots(registrationService, statisticsEngine, new ObjectMapper(), properties);
+        lenient().when(registrationService.getStatistics(any(), any())).thenAnswer(i -> statistics(statisticsEngine.totalCount()));
+    }
+
+    @Test
+    public void get_beforeFirstRefresh() {
+        assertNull(statisticsSnapshots.get(null, null));
+    }
+
+    @Test
+    public void get_disabled() {
+        statisticsSnapshots.refresh();
+        properties.getStatistics().getSnapshot().setEnabled(false);
+
+        assertNull(statisticsSnapshots.get(null, null));
+    }
+
+    @Test
+    public void refresh_skippedWithoutChanges() {
+        statisticsSnapshots.refresh();
+        StatisticsSnapshot first = statisticsSnapshots.get(null, true);
+
+        statisticsSnapshots.refresh();
+        StatisticsSnapshot second = statisticsSnapshots.get(null, true);
+
+        verify(registrationService, times(9)).getStatistics(any(), any());
+        assertSame(first.getBody(), second.getBody());
+        assertEquals(first.getEtag(), second.getEtag());
+        assertEquals(first.getLastModified(), second.getLastModified());
+    }
+
+    @Test
+    public void refresh_newEtagAfterChange() {
+        statisticsSnapshots.refresh();
+        String etag = statisticsSnapshots.get(null, null).getEtag();
+
+        statisticsEngine.onUserCreated(1L, Status.UNDEFINED, 20);
+        statisticsSnapshots.refresh();
+
+        verify(registrationService, times(18)).getStatistics(any(), any());
+        assertNotEquals(etag, statisticsSnapshots.get(null, null).getEtag());
+    }
+
+    @Test
+    public void get_mapsStatus() {
+        when(registrationService.validateAndGetStatus("online")).thenReturn(Status.ONLINE);
+        when(registrationService.getStatistics("ONLINE", false)).thenReturn(statistics(42L));
+        statisticsSnapshots.refresh();
+
+        String body = new String(statisticsSnapshots.get("online", false).getBody());
+
+        assertTrue(body.contains("42"));
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void get_badStatus() {
+        when(registrationService.validateAndGetStatus("away"))
+                .thenThrow(new RegistrationException("Статус away не поддерживается", HttpStatus.BAD_REQUEST));
+        statisticsSnapshots.refresh();
+
+        statisticsSnapshots.get("away", null);
+    }
+
+    private static StatisticsDto statistics(long total) {
+        StatisticsDto statisticsDto = new StatisticsDto();
+        statisticsDto.setTotalUsersCount(total);
+        return statisticsDto;
+    }
+
+}
@@ -0,0 +1,113 @@
+package ru.app.user.registration.services.statistics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.entities.User;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.dto.SketchStatisticsDto;
+import ru.app.user.registration.exceptions.RegistrationException;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserSketchesTest {
+
+    private UserJdbcRepo userJdbcRepo;
+    private UserSketches userSketches;
+
+    @Before
+    public void setup() {
+        userJdbcRepo = mock(UserJdbcRepo.class);
+        userSketches = new UserSketches(userJdbcRepo, mock(PlatformTransactionManager.class), new RegistrationProperties());
+    }
+
+    @Test
+    public void kll_rankErrorWithinBound() {
+        SplittableRandom random = new SplittableRandom(1);
+        KllSketch left = new KllSketch(200, new SplittableRandom(2));
+        KllSketch right = new KllSketch(200, new SplittableRandom(3));
+        long[] values = new long[200_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong(0, 20_000);
+            (i % 2 == 0 ? left : right).update(values[i]);
+        }
+        left.merge(right);
+        Arrays.sort(values);
+
+        double[] fractions = {0.01, 0.25, 0.5, 0.75, 0.99};
+        long[] quantiles = left.quantiles(fractions);
+        assertEquals(values.length, left.getCount());
+        for (int i = 0; i < fractions.length; i++) {
+            double rank = (double) Arrays.binarySearch(values, quantiles[i]) / values.length;
+            assertEquals(fractions[i], rank, KllSketch.normalizedRankError(200));
+        }
+    }
+
+    @Test
+    public void hyperLogLog_ignoresDuplicatesAndMerges() {
+        HyperLogLog left = new HyperLogLog(14);
+        HyperLogLog right = new HyperLogLog(14);
+        for (int i = 0; i < 50_000; i++) {
+            left.add("domain" + i + ".ru");
+            right.add("domain" + (i + 25_000) + ".ru");
+        }
+        left.merge(right);
+
+        assertEquals(75_000, left.estimate(), 75_000 * 3 * HyperLogLog.relativeError(14));
+        assertEquals(0, new HyperLogLog(14).estimate());
+    }
+
+    @Test
+    public void rebuild_keepsUsersCreatedDuringScanOnce() {
+        LocalDate today = LocalDate.now();
+        doAnswer(invocation -> {
+            UserJdbcRepo.SketchInputHandler handler = invocation.getArgument(1);
+            handler.accept(today.minusYears(20), "anna@mail.ru");
+            userSketches.onUserCreated(user(2L, today.minusYears(40), "boris@Bench.ru"));
+            handler.accept(today.minusYears(30), "oleg@gmail.com");
+            userSketches.onUserCreated(user(3L, today.minusYears(30), "oleg@gmail.com"));
+            handler.accept(null, "olga@Mail.ru");
+            return null;
+        }).when(userJdbcRepo).scanBirthDatesAndEmails(anyInt(), any());
+        when(userJdbcRepo.findExistingIds(Set.of(2L, 3L))).thenReturn(Set.of(3L));
+        userSketches.onUserCreated(user(1L, today.minusYears(50), "anna@lost.ru"));
+
+        userSketches.rebuild();
+        SketchStatisticsDto result = userSketches.getStatistics(List.of(0.0, 0.5, 1.0));
+
+        assertEquals(Long.valueOf(3), result.getAgeCount());
+        assertEquals(Integer.valueOf(20), result.getAgeQuantiles().get("0"));
+        assertEquals(Integer.valueOf(30), result.getAgeQuantiles().get("0.5"));
+        assertEquals(Integer.valueOf(40), result.getAgeQuantiles().get("1"));
+        assertEquals(Long.valueOf(3), result.getEmailDomainsCount());
+
+        userSketches.onUserCreated(user(4L, today.minusYears(60), "ivan@yandex.ru"));
+        assertEquals(Long.valueOf(4), userSketches.getStatistics(null).getAgeCount());
+    }
+
+    @Test(expected = RegistrationException.class)
+    public void getStatistics_quantileOutOfRange() {
+        userSketches.getStatistics(List.of(0.5, 1.5));
+    }
+
+    private static User user(Long id, LocalDate birthDate, String email) {
+        User user = new User();
+        user.setId(id);
+        user.setBirthDate(birthDate);
+        user.setEmail(email);
+        return user;
+    }
+
+}
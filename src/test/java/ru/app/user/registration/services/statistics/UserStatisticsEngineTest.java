@@ -0,0 +1,106 @@
+package ru.app.user.registration.services.statistics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.app.config.RegistrationProperties;
+import ru.app.user.registration.db.repositories.UserJdbcRepo;
+import ru.app.user.registration.enums.Status;
+import ru.app.user.registration.services.cache.UserCache;
+import ru.app.user.registration.services.presence.PresenceEntry;
+import ru.app.user.registration.services.presence.PresenceTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UserStatisticsEngineTest {
+
+    private UserJdbcRepo userJdbcRepo;
+    private PresenceTable presenceTable;
+    private UserStatisticsEngine statisticsEngine;
+
+    @Before
+    public void setup() {
+        userJdbcRepo = mock(UserJdbcRepo.class);
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.getPresence().setEnabled(true);
+        presenceTable = new PresenceTable(userJdbcRepo, properties, new UserCache(properties));
+        statisticsEngine = new UserStatisticsEngine(userJdbcRepo, presenceTable, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    public void rebuild_countsEachUserOnce() {
+        doAnswer(invocation -> {
+            UserJdbcRepo.AggregateHandler handler = invocation.getArgument(1);
+            handler.accept(Status.OFFLINE, true, 1, 30);
+            handler.accept(Status.ONLINE, true, 1, 40);
+            // 1 и 2 уже в снимке, 3 сменил статус и 4 зарегистрирован после него
+            statisticsEngine.onStatusChanged(1L, Status.ONLINE, Status.OFFLINE, 30);
+            statisticsEngine.onUserCreated(2L, Status.UNDEFINED, 10);
+            statisticsEngine.onStatusChanged(3L, Status.ONLINE, Status.OFFLINE, 40);
+            statisticsEngine.onUserCreated(4L, Status.ONLINE, 20);
+            handler.accept(Status.UNDEFINED, false, 1, 10);
+            return null;
+        }).when(userJdbcRepo).aggregateByStatusAndAge(any(), any());
+        when(userJdbcRepo.findStatuses(Set.of(1L, 2L, 3L, 4L)))
+                .thenReturn(Map.of(1L, Status.OFFLINE, 2L, Status.UNDEFINED, 3L, Status.ONLINE));
+        statisticsEngine.onUserCreated(1L, Status.ONLINE, 30);
+
+        statisticsEngine.rebuild();
+
+        assertEquals(4, statisticsEngine.totalCount());
+        assertEquals(20, statisticsEngine.averageAge(Status.ONLINE, null));
+        assertEquals(35, statisticsEngine.averageAge(Status.OFFLINE, null));
+        assertEquals(10, statisticsEngine.averageAge(Status.UNDEFINED, null));
+
+        statisticsEngine.onUserCreated(5L, Status.ONLINE, 40);
+        assertEquals(5, statisticsEngine.totalCount());
+    }
+
+    @Test
+    public void rebuild_failedScanKeepsCounters() {
+        statisticsEngine.onUserCreated(1L, Status.ONLINE, 20);
+        doThrow(new IllegalStateException()).when(userJdbcRepo).aggregateByStatusAndAge(any(), any());
+
+        assertThrows(IllegalStateException.class, statisticsEngine::rebuild);
+        statisticsEngine.onUserCreated(2L, Status.ONLINE, 30);
+
+        assertEquals(2, statisticsEngine.totalCount());
+        assertEquals(25, statisticsEngine.averageAge(Status.ONLINE, null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rebuild_flushesPresenceFirst() {
+        Map<Long, Status> stored = new HashMap<>(Map.of(1L, Status.OFFLINE));
+        doAnswer(invocation -> {
+            Map<Long, PresenceEntry> chunk = invocation.getArgument(0);
+            chunk.forEach((id, entry) -> stored.put(id, entry.getNewStatus()));
+            return null;
+        }).when(userJdbcRepo).writeStatuses(any());
+        doAnswer(invocation -> {
+            UserJdbcRepo.AggregateHandler handler = invocation.getArgument(1);
+            handler.accept(stored.get(1L), true, 1, 30);
+            return null;
+        }).when(userJdbcRepo).aggregateByStatusAndAge(any(), any());
+        statisticsEngine.onUserCreated(1L, Status.OFFLINE, 30);
+        presenceTable.change(1L, Status.ONLINE, id -> new PresenceEntry(Status.OFFLINE, Status.UNDEFINED, 30));
+        statisticsEngine.onStatusChanged(1L, Status.OFFLINE, Status.ONLINE, 30);
+
+        statisticsEngine.rebuild();
+
+        assertEquals(0, presenceTable.size());
+        assertEquals(1, statisticsEngine.totalCount());
+        assertEquals(30, statisticsEngine.averageAge(Status.ONLINE, null));
+        assertEquals(0, statisticsEngine.averageAge(Status.OFFLINE, null));
+    }
+
+}
@@ -0,0 +1,91 @@
+package ru.app.user.registration.services.validation;
+
+import org.apache.commons.validator.routines.EmailValidator;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RegistrationValidatorTest {
+
+    private final RegistrationValidator validator = new RegistrationValidator();
+
+    @Test
+    public void parseDate_sameAsFormatter() {
+        List<String> dates = Arrays.asList("11.12.1999", "31.12.2001", "29.02.2000", "29.02.2001", "31.02.2001",
+                "31.04.2020", "32.01.2020", "00.01.2020", "01.00.2020", "01.13.2020", "01.01.0000", "01.01.0001",
+                "2004-12-30", "1.1.2001", "01.01.20011", "01.01.+20011", "01.01.-2001", "01-01-2001", "ab.cd.efgh",
+                "01.01.2001 ", " 01.01.2001", "01..01.2001", "01.01.200", "+1.01.2001", "31.12.9999");
+        for (String date : dates) {
+            assertEquals(date, formatterResult(date), RegistrationValidator.parseDate(date));
+        }
+
+        Random random = new Random(42);
+        char[] alphabet = "0123456789.+-a ".toCharArray();
+        for (int i = 0; i < 200_000; i++) {
+            char[] chars = new char[8 + random.nextInt(5)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = random.nextInt(4) == 0 ? alphabet[random.nextInt(alphabet.length)]
+                        : (char) ('0' + random.nextInt(10));
+            }
+            if (chars.length >= 10 && random.nextBoolean()) {
+                chars[2] = '.';
+                chars[5] = '.';
+            }
+            String date = new String(chars);
+            assertEquals(date, formatterResult(date), RegistrationValidator.parseDate(date));
+        }
+    }
+
+    @Test
+    public void validateEmail_sameAsEmailValidator() {
+        EmailValidator emailValidator = EmailValidator.getInstance();
+        List<String> emails = Arrays.asList("boris@mail.ru", "boris@mail@.ru", "boris", "@mail.ru", "boris@",
+                "boris@mail", "boris@mail.ru.", "bo ris@mail.ru", "boris@ma il.ru", "\"a@b\"@example.com",
+                "a@[127.0.0.1]", "a@[::1]", "a@[IPv6:::1]", "борис@почта.рф", "boris@почта.рф", "",
+                repeat('a', 64) + "@mail.ru", repeat('a', 65) + "@mail.ru", "a@" + repeat('b', 250) + ".ru",
+                "a@b.c", "a@localhost", "a.@mail.ru", "a@mail.ru\t", "a@mail\u0001.ru");
+        for (String email : emails) {
+            assertEquals(email, emailValidator.isValid(email), validator.validateEmail(email).isValid());
+        }
+        assertFalse(validator.validateEmail(null).isValid());
+    }
+
+    @Test
+    public void validateBirthDate_rejectsFutureWithoutException() {
+        LocalDate today = LocalDate.of(2020, 1, 1);
+
+        ValidationResult<LocalDate> result = validator.validateBirthDate("02.01.2020", today);
+
+        assertFalse(result.isValid());
+        assertEquals(ValidationError.Reason.FUTURE_DATE, result.getError().getReason());
+        assertTrue(validator.validateBirthDate("01.01.2020", today).isValid());
+        assertEquals(ValidationError.Reason.EMPTY_DATE, validator.validateBirthDate("", today).getError().getReason());
+    }
+
+    @Test
+    public void toException_hasNoStackTrace() {
+        ValidationError error = validator.validateDate("garbage").getError();
+        assertEquals(0, error.toException().getStackTrace().length);
+    }
+
+    private static LocalDate formatterResult(String date) {
+        try {
+            return LocalDate.parse(date, RegistrationValidator.DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+}